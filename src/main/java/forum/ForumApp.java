@@ -7,9 +7,22 @@ import forum.views.ErrorView;
 import forum.web.*;
 import lombok.AllArgsConstructor;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
 // główna klasa łącząca pakiety forum.logic, forum.controllers i forum.web;
 // tworzy wszystkie kontrolery i uruchamia serwer z handlerami,
-// które wykonują te kontrolery przekazując im obiekt Forum
+// które wykonują te kontrolery przekazując im obiekt Forum;
+// pobrania danych zlecane przez kontrolery (zobacz RequestContext.prefetch) są wykonywane na loadExecutor;
+// strony wyświetlane niezalogowanym użytkownikom są zapamiętywane w pageCache
 @AllArgsConstructor
 public class ForumApp {
     private final Forum forum;
@@ -17,6 +30,10 @@ public class ForumApp {
     private final Server server;
     private final SessionManager sessionManager;
     private final TemplateProcessor templateProcessor;
+    private final Executor loadExecutor;
+    private final PageCache pageCache;
+    private final Map<String, QueryStats> queryStats = new ConcurrentHashMap<>(); // nazwa kontrolera -> statystyki
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36); // szablony mogą się zmienić po restarcie
 
     // uruchamia aplikację
     public void run() {
@@ -103,13 +120,88 @@ public class ForumApp {
     private Server.Handler controllerHandler(Controller<Response> controller) {
         return errorWrapper(request -> {
             var session = sessionManager.getSession(request);
-            var context = new RequestContext(request.parameters, session.store);
-            var response = controller.control(forum, context, responses);
+            var cacheable = pageCache.enabled() && controller.type() == Controller.Type.Page
+                    && !session.store.containsKey("user");
+            var key = cacheable ? pageKey(controller.name(), request.parameters) : null;
+
+            var cached = cacheable ? pageCache.get(key) : Optional.<Response>empty();
+            if (cached.isPresent()) {
+                sessionManager.saveSession(cached.get(), session);
+                return cached.get();
+            }
+
+            var generation = cacheable ? pageCache.generation() : 0;
+            var context = new RequestContext(request.parameters, session.store, loadExecutor);
+            var response = context.countQueries(() -> controller.control(forum, context, responses));
+            queryStats.computeIfAbsent(controller.name(), name -> new QueryStats()).add(context.queries());
+
+            if (controller.type() == Controller.Type.Action && pageCache.enabled())
+                pageCache.invalidate(invalidatedTags(context));
+            else if (cacheable && response.status == Response.Status.Ok)
+                response = pageCache.store(key, response, pageTags(context), generation);
+
             sessionManager.saveSession(response, session);
             return response;
         });
     }
 
+    // klucz strony w pageCache: nazwa kontrolera i parametry w kolejności nazw
+    private static String pageKey(String controllerName, Map<String, String> parameters) {
+        var key = new StringBuilder(controllerName);
+        var separator = '?';
+        for (var entry : new TreeMap<>(parameters).entrySet()) {
+            key.append(separator)
+                    .append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8)).append('=')
+                    .append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    // znaczniki danych wyświetlanych przez stronę (ustawionych w RequestContext przez dekoratory lub kontroler);
+    // strona komentarza pokazuje jego poddrzewo, więc jest oznaczana postem jak cała jego strona
+    private static List<String> pageTags(RequestContext request) {
+        var tags = new ArrayList<String>();
+        if (request.comment != null)
+            tags.add("post:" + request.comment.post.id);
+        if (request.post != null)
+            tags.add("post:" + request.post.id);
+        if (request.community != null)
+            tags.add("community:" + request.community.id);
+        return tags;
+    }
+
+    // znaczniki stron, które mogą się zmienić po wykonaniu akcji;
+    // zmiana postu (treść, punkty, usunięcie) jest widoczna również na listach postów jego społeczności
+    private static List<String> invalidatedTags(RequestContext request) {
+        var tags = pageTags(request);
+        if (request.post != null)
+            tags.add("community:" + request.post.community.id);
+        return tags;
+    }
+
+    // średnia liczba zapytań SQL na jedno zapytanie do serwera dla każdego kontrolera (w kolejności nazw);
+    // strony wzięte z PageCache nie są liczone
+    public Map<String, Double> queriesPerRequest() {
+        var result = new TreeMap<String, Double>();
+        queryStats.forEach((name, stats) -> result.put(name, stats.average()));
+        return result;
+    }
+
+    private static class QueryStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder queries = new LongAdder();
+
+        void add(int count) {
+            requests.increment();
+            queries.add(count);
+        }
+
+        double average() {
+            return (double) queries.sum() / Math.max(1, requests.sum());
+        }
+    }
+
     // dekorator handlerów łapiący wyjątki
     private Server.Handler errorWrapper(Server.Handler handler) {
         return request -> {
@@ -118,7 +210,7 @@ public class ForumApp {
             } catch (Exception e) {
                 e.printStackTrace();
                 emailer.emailAdmin("error");
-                return new Response(Response.Status.Error, "<h1>Internal Server Error</h1>");
+                return new Response(Response.Status.Error, Content.of("<h1>Internal Server Error</h1>"));
             }
         };
     }
@@ -144,12 +236,30 @@ public class ForumApp {
         emailer.emailAdmin("stop");
     }
 
+    // zawartość strony generowana z szablonu dopiero przy zapisywaniu odpowiedzi przez serwer;
+    // błąd w trakcie generowania nie przechodzi więc przez errorWrapper i jest zgłaszany tutaj
+    private Content render(String template, Object data) {
+        return writer -> {
+            try {
+                templateProcessor.process(template, data, writer);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                emailer.emailAdmin("error");
+                throw e;
+            }
+        };
+    }
+
     // implementacja forum.controllers.Responses przekazywana kontrolerom
     private final Responses<Response> responses = new Responses<>() {
+        // wersja strony to skrót SHA-256 nazwy szablonu i danych widoku (zobacz ViewDigest),
+        // więc każda zmiana wyświetlanych danych (treść, punkty, komentarze, stan zalogowanego użytkownika)
+        // zmienia wersję, a jej obliczenie nie wymaga generowania strony, które odbywa się dopiero przy wysyłaniu
+        // (i wcale, jeśli klient ma już tę wersję)
         @Override
         public Response view(String template, Object data) {
-            var content = templateProcessor.process(template, data);
-            return new Response(Response.Status.Ok, content);
+            var etag = etagPrefix + "-" + ViewDigest.of(template, data);
+            return new Response(Response.Status.Ok, render(template, data), Optional.of(etag));
         }
 
         @Override
@@ -158,27 +268,27 @@ public class ForumApp {
             content.append(requestPath(controllerName)).append("\n");
             for (var parameter : parameters)
                 content.append(parameter).append("\n");
-            return new Response(Response.Status.Redirect, content.toString());
+            return new Response(Response.Status.Redirect, Content.of(content.toString()));
         }
 
         @Override
         public Response notFound(String what) {
             var view = new ErrorView("not-found", what);
-            var content = templateProcessor.process("error", view);
+            var content = render("error", view);
             return new Response(Response.Status.NotFound, content);
         }
 
         @Override
         public Response badRequest(String message) {
             var view = new ErrorView("bad-request", message);
-            var content = templateProcessor.process("error", view);
+            var content = render("error", view);
             return new Response(Response.Status.BadRequest, content);
         }
 
         @Override
         public Response forbidden(String message) {
             var view = new ErrorView("forbidden", message);
-            var content = templateProcessor.process("error", view);
+            var content = render("error", view);
             return new Response(Response.Status.Forbidden, content);
         }
     };
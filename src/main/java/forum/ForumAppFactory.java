@@ -11,6 +11,8 @@ import forum.web.SessionManager;
 import forum.web.TemplateProcessor;
 import lombok.AllArgsConstructor;
 
+import java.util.concurrent.Executor;
+
 // pomocnicza klasa konstruująca Forum i ForumApp
 // wstrzykując do nich odpowiednie zależności;
 // są to wszystkie zależności potrzebne do uruchomienia tej aplikacji
@@ -24,10 +26,12 @@ public class ForumAppFactory {
     private final Server server;
     private final SessionManager sessionManager;
     private final TemplateProcessor templateProcessor;
+    private final Executor loadExecutor;
+    private final PageCache pageCache;
 
     public ForumApp newForumApp() {
         var factory = new ForumFactory(database, clock, validator, authenticator, emailer);
         var forum = factory.newForum();
-        return new ForumApp(forum, emailer, server, sessionManager, templateProcessor);
+        return new ForumApp(forum, emailer, server, sessionManager, templateProcessor, loadExecutor, pageCache);
     }
 }
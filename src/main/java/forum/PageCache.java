@@ -0,0 +1,203 @@
+package forum;
+
+import forum.services.Clock;
+import forum.web.Content;
+import forum.web.Response;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// pamięć podręczna wygenerowanych stron dla niezalogowanych użytkowników (używana przez ForumApp);
+// kluczem jest nazwa kontrolera i parametry zapytania, a wpis żyje co najwyżej ttlSeconds;
+// każda strona ma znaczniki (np. "post:12") opisujące dane, które wyświetla,
+// i akcje zmieniające te dane unieważniają wszystkie strony z danym znacznikiem;
+// każde unieważnienie dostaje kolejny numer (generację), który jest zapamiętywany przy jego znacznikach;
+// numer jest odczytywany przed wykonaniem kontrolera, a strona nie jest zapamiętywana, jeśli któryś z jej znaczników
+// został unieważniony później, bo mogłaby pokazywać dane sprzed zmiany, która to unieważnienie spowodowała;
+// unieważnienia innych danych nie przeszkadzają w zapamiętaniu strony;
+// strony i znaczniki są w ConcurrentHashMap, więc odczyty, zapisy i unieważnienia nie mają wspólnej blokady;
+// przy przekroczeniu maxEntries jeden wątek usuwa najdawniej używane strony, a maxEntries = 0 wyłącza pamięć
+public class PageCache {
+    private final Clock clock;
+    private final int maxEntries;
+    private final long ttlSeconds;
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private final Map<String, Set<Page>> tagged = new ConcurrentHashMap<>(); // znacznik -> strony
+    // znacznik -> generacja jego ostatniego unieważnienia; po przekroczeniu maxEntries znaczników jest czyszczona,
+    // a strony generowane od generacji sprzed wyczyszczenia (forgottenGeneration) nie są zapamiętywane
+    private final Map<String, Long> invalidated = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong forgottenGeneration = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PageCache(Clock clock, int maxEntries, long ttlSeconds) {
+        this.clock = clock;
+        this.maxEntries = maxEntries;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public boolean enabled() {
+        return maxEntries > 0;
+    }
+
+    // liczba stron obsłużonych przez pamięć podręczną
+    public long hits() {
+        return hits.sum();
+    }
+
+    // liczba stron, które musiały zostać wygenerowane
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    // numer ostatniego unieważnienia; należy go odczytać przed wykonaniem kontrolera i przekazać do store()
+    long generation() {
+        return generation.get();
+    }
+
+    // każde trafienie dostaje nowy obiekt Response, bo menedżer sesji dopisuje do niego ciastka
+    Optional<Response> get(String key) {
+        var page = pages.get(key);
+        if (page != null && clock.time() < page.expiresTime) {
+            hits.increment();
+            page.accessTime = System.nanoTime();
+            return Optional.of(new Response(Response.Status.Ok, Content.of(page.content), page.etag));
+        }
+        if (page != null)
+            remove(page);
+        misses.increment();
+        return Optional.empty();
+    }
+
+    // odpowiedź zapisująca stronę do strumienia serwera i jednocześnie do kopii,
+    // która po wygenerowaniu całej strony jest zapamiętywana pod danym kluczem;
+    // strona jest więc nadal wysyłana w trakcie generowania, a nie dopiero po nim
+    Response store(String key, Response response, List<String> tags, long startGeneration) {
+        return new Response(response.status, writer -> {
+            var copy = new StringBuilder();
+            response.content.write(new Writer() {
+                @Override
+                public void write(char[] buffer, int offset, int length) throws IOException {
+                    writer.write(buffer, offset, length);
+                    copy.append(buffer, offset, length);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    writer.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            });
+            put(new Page(key, copy.toString(), response.etag, tags, clock.time() + ttlSeconds), startGeneration);
+        }, response.etag);
+    }
+
+    // strona jest najpierw wstawiana i oznaczana, a dopiero potem są sprawdzane unieważnienia jej znaczników;
+    // invalidate() najpierw zapisuje generację znaczników, a potem usuwa oznaczone strony,
+    // więc jednoczesne unieważnienie albo zobaczy wstawioną stronę, albo zostanie zauważone tutaj
+    private void put(Page page, long startGeneration) {
+        if (!enabled() || invalidatedSince(page.tags, startGeneration))
+            return;
+        var old = pages.put(page.key, page);
+        if (old != null)
+            untag(old);
+        for (var tag : page.tags)
+            tagged.compute(tag, (t, tagPages) -> {
+                tagPages = tagPages != null ? tagPages : new HashSet<>();
+                tagPages.add(page);
+                return tagPages;
+            });
+        if (invalidatedSince(page.tags, startGeneration))
+            remove(page);
+        else if (pages.size() > maxEntries)
+            evict();
+    }
+
+    private boolean invalidatedSince(List<String> tags, long startGeneration) {
+        for (var tag : tags)
+            if (invalidated.getOrDefault(tag, 0L) > startGeneration)
+                return true;
+        return startGeneration < forgottenGeneration.get();
+    }
+
+    // usunięcie wszystkich stron z którymkolwiek z danych znaczników
+    void invalidate(List<String> tags) {
+        var current = generation.incrementAndGet();
+        for (var tag : tags)
+            invalidated.merge(tag, current, Math::max);
+        for (var tag : tags) {
+            var removed = tagged.remove(tag);
+            if (removed != null)
+                removed.forEach(this::remove);
+        }
+        if (invalidated.size() > maxEntries) {
+            forgottenGeneration.accumulateAndGet(current, Math::max);
+            invalidated.values().removeIf(g -> g <= current);
+        }
+    }
+
+    private void remove(Page page) {
+        if (pages.remove(page.key, page))
+            untag(page);
+    }
+
+    private void untag(Page page) {
+        for (var tag : page.tags)
+            tagged.computeIfPresent(tag, (t, tagPages) -> {
+                tagPages.remove(page);
+                return tagPages.isEmpty() ? null : tagPages;
+            });
+    }
+
+    // usunięcie najdawniej używanych stron (do 90% maxEntries); wątki, które w trakcie usuwania przekroczą limit,
+    // nie czekają, bo usuwanie i tak robi miejsce także dla nich
+    private void evict() {
+        if (!evictionLock.tryLock())
+            return;
+        try {
+            var excess = pages.size() - (maxEntries - maxEntries / 10);
+            if (pages.size() <= maxEntries || excess <= 0)
+                return;
+            // czasy użycia są kopiowane przed sortowaniem, bo inne wątki mogą je w tym czasie zmieniać
+            var entries = new ArrayList<Map.Entry<Long, Page>>();
+            pages.values().forEach(page -> entries.add(Map.entry(page.accessTime, page)));
+            entries.sort(Map.Entry.comparingByKey());
+            for (var i = 0; i < excess && i < entries.size(); i++)
+                remove(entries.get(i).getValue());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static class Page {
+        private final String key;
+        private final String content;
+        private final Optional<String> etag;
+        private final List<String> tags;
+        private final long expiresTime;
+        private volatile long accessTime = System.nanoTime();
+
+        private Page(String key, String content, Optional<String> etag, List<String> tags, long expiresTime) {
+            this.key = key;
+            this.content = content;
+            this.etag = etag;
+            this.tags = tags;
+            this.expiresTime = expiresTime;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package forum;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+// skrót SHA-256 (w base64url) danych widoku, liczony bez generowania strony;
+// dane są zapisywane do skrótu jednoznacznie: każda wartość zaczyna się od znacznika rodzaju,
+// napisy i kolekcje od swojej długości, a obiekty klas z pakietu forum od nazwy klasy i wszystkich pól
+// (przez refleksję), więc różne dane nie mogą dać tego samego zapisu, nawet jeśli treść zawiera separatory;
+// obiekty innych klas są zapisywane przez toString()
+class ViewDigest {
+    private static final Map<Class<?>, Field[]> fieldCache = new ConcurrentHashMap<>();
+
+    private final MessageDigest digest;
+    private final Map<Object, Boolean> visiting = new IdentityHashMap<>(); // ochrona przed cyklami
+    private final ByteBuffer number = ByteBuffer.allocate(Long.BYTES);
+
+    private ViewDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String of(String template, Object data) {
+        var viewDigest = new ViewDigest();
+        viewDigest.add(template);
+        viewDigest.add(data);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(viewDigest.digest.digest());
+    }
+
+    private void add(Object value) {
+        if (value == null) {
+            tag('n');
+        } else if (value instanceof String) {
+            tag('s');
+            addBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum) {
+            tag('v');
+            addBytes(value.getClass().getName().getBytes(StandardCharsets.UTF_8));
+            addBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Optional) {
+            tag('o');
+            add(((Optional<?>) value).orElse(null));
+        } else if (value instanceof OptionalLong || value instanceof OptionalInt || value instanceof OptionalDouble) {
+            tag('o');
+            addBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof byte[]) {
+            tag('b');
+            addBytes((byte[]) value);
+        } else if (value.getClass().isArray()) {
+            tag('a');
+            var length = Array.getLength(value);
+            addLength(length);
+            for (var i = 0; i < length; i++)
+                add(Array.get(value, i));
+        } else if (value instanceof Collection) {
+            tag('l');
+            var collection = (Collection<?>) value;
+            addLength(collection.size());
+            collection.forEach(this::add);
+        } else if (value instanceof Map) {
+            tag('m');
+            var map = (Map<?, ?>) value;
+            addLength(map.size());
+            map.forEach((key, item) -> {
+                add(key);
+                add(item);
+            });
+        } else if (value.getClass().getName().startsWith("forum.")) {
+            addObject(value);
+        } else {
+            tag('t');
+            addBytes(value.getClass().getName().getBytes(StandardCharsets.UTF_8));
+            addBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void addObject(Object value) {
+        if (visiting.put(value, true) != null) {
+            tag('c');
+            return;
+        }
+        tag('r');
+        addBytes(value.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        try {
+            for (var field : fields(value.getClass()))
+                add(field.get(value));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        visiting.remove(value);
+    }
+
+    // pola instancji klasy i jej nadklas z pakietu forum, w stałej kolejności
+    private static Field[] fields(Class<?> cls) {
+        return fieldCache.computeIfAbsent(cls, c -> {
+            var result = new ArrayList<Field>();
+            for (Class<?> current = c; current != null && current.getName().startsWith("forum.");
+                 current = current.getSuperclass()) {
+                for (var field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+                        continue;
+                    field.setAccessible(true);
+                    result.add(field);
+                }
+            }
+            result.sort((a, b) -> (a.getDeclaringClass().getName() + "." + a.getName())
+                    .compareTo(b.getDeclaringClass().getName() + "." + b.getName()));
+            return result.toArray(new Field[0]);
+        });
+    }
+
+    private void tag(char tag) {
+        digest.update((byte) tag);
+    }
+
+    private void addLength(long length) {
+        number.clear();
+        digest.update(number.putLong(length).array());
+    }
+
+    private void addBytes(byte[] bytes) {
+        addLength(bytes.length);
+        digest.update(bytes);
+    }
+}
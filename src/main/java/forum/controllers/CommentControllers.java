@@ -9,6 +9,7 @@ import forum.views.SendReplyView;
 import lombok.AllArgsConstructor;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 // kontrolery związane z komentarzami
 @AllArgsConstructor
@@ -23,18 +24,20 @@ public class CommentControllers<R> {
     @CommentRequired
     public R comment() {
         var comment = request.comment;
-        var tree = forum.comments().getTree(comment);
-        var parent = forum.comments().getParent(comment);
-        var votes = forum.comments().countVotes(comment);
-
         var user = request.optionalLoggedInUser;
+        var tree = request.prefetch("comment-tree:" + comment.id, () -> forum.comments().getTree(comment));
+        var parent = request.prefetch("comment-parent:" + comment.id, () -> forum.comments().getParent(comment));
+        var votes = request.prefetch("comment-votes:" + comment.id, () -> forum.comments().countVotes(comment));
+        var subscriber = user.map(u -> request.prefetch("subscriber:" + comment.post.community.id,
+                () -> forum.communities().getSubscriber(u, comment.post.community)));
+        var vote = user.map(u -> request.prefetch("comment-vote:" + comment.id, () -> forum.comments().getVote(u, comment)));
+
         var loggedIn = user.isPresent();
         var sender = user.map(u -> u.equals(comment.sender)).orElse(false);
-        var subscriber = user.flatMap(u -> forum.communities().getSubscriber(u, comment.post.community));
-        var moderator = subscriber.map(s -> s.moderator).orElse(false);
-        var vote = user.flatMap(u -> forum.comments().getVote(u, comment));
+        var moderator = subscriber.flatMap(Supplier::get).map(s -> s.moderator).orElse(false);
 
-        return responses.view("comment", new CommentView(tree, parent, votes, loggedIn, sender, moderator, vote));
+        return responses.view("comment", new CommentView(tree.get(), parent.get(), votes.get(), loggedIn, sender, moderator,
+                vote.flatMap(Supplier::get)));
     }
 
     @Page
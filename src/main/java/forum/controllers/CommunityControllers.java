@@ -1,5 +1,6 @@
 package forum.controllers;
 
+import forum.entities.Cursor;
 import forum.logic.Forum;
 import forum.controllers.annotations.*;
 import forum.forms.CommunityCreateForm;
@@ -7,6 +8,9 @@ import forum.exceptions.CommunityCreateException;
 import forum.views.*;
 import lombok.AllArgsConstructor;
 
+import java.util.Optional;
+import java.util.function.Supplier;
+
 // kontrolery związane ze społecznościami
 @AllArgsConstructor
 @SuppressWarnings("unused")
@@ -16,11 +20,10 @@ public class CommunityControllers<R> {
     private final Responses<R> responses;
 
     @Page
-    @NumberRequired("page")
     public R communityList() {
-        var page = request.numbers.get("page");
-        var communities = forum.communities().getCommunities(page);
-        return responses.view("community-list", new CommunityListView(page, communities));
+        var after = Optional.ofNullable(request.parameters.get("after"));
+        var communities = request.load("communities:" + after.orElse(""), () -> forum.communities().getCommunities(after));
+        return responses.view("community-list", new CommunityListView(after.isEmpty(), communities));
     }
 
     @Page
@@ -61,28 +64,39 @@ public class CommunityControllers<R> {
     @ParameterRequired("name")
     public R community() {
         var name = request.parameters.get("name");
-        var optional = forum.communities().getByName(name);
+        var optional = request.load("community-name:" + name, () -> forum.communities().getByName(name));
         if (optional.isEmpty())
             return responses.notFound("community-name:" + name);
         var community = optional.get();
-        var popularPosts = forum.communities().getPopularPosts(community);
-        var subscribers = forum.communities().countSubscribers(community);
-        var loggedInSubscriber = request.optionalLoggedInUser.flatMap(u -> forum.communities().getSubscriber(u, community));
-        return responses.view("community", new CommunityView(community, popularPosts, subscribers, loggedInSubscriber));
+        request.community = community; // znacznik strony w pamięci podręcznej stron (ForumApp)
+
+        var user = request.optionalLoggedInUser;
+        var popularPosts = request.prefetch("popular-posts:" + community.id, () -> forum.communities().getPopularPosts(community));
+        var subscribers = request.prefetch("subscriber-count:" + community.id, () -> forum.communities().countSubscribers(community));
+        var loggedInSubscriber = user.map(u -> request.prefetch("subscriber:" + community.id,
+                () -> forum.communities().getSubscriber(u, community)));
+        return responses.view("community", new CommunityView(community, popularPosts.get(), subscribers.get(),
+                loggedInSubscriber.flatMap(Supplier::get)));
     }
 
     @Page
     @ParameterRequired("name")
-    @NumberRequired("day")
     public R communityPosts() {
         var name = request.parameters.get("name");
-        var day = request.numbers.get("day");
-        var optional = forum.communities().getByName(name);
+        var optional = request.load("community-name:" + name, () -> forum.communities().getByName(name));
         if (optional.isEmpty())
             return responses.notFound("community-name:" + name);
         var community = optional.get();
-        var posts = forum.communities().getPosts(community, day);
-        return responses.view("community-posts", new CommunityPostsView(community, day, posts));
+        request.community = community; // znacznik strony w pamięci podręcznej stron (ForumApp)
+
+        var afterParameter = Optional.ofNullable(request.parameters.get("after"));
+        var after = afterParameter.flatMap(Cursor::parse);
+        if (afterParameter.isPresent() && after.isEmpty())
+            return responses.badRequest("invalid-parameter:after");
+
+        var posts = request.load("community-posts:" + community.id + ":" + afterParameter.orElse(""),
+                () -> forum.communities().getPosts(community, after));
+        return responses.view("community-posts", new CommunityPostsView(community, after.isEmpty(), posts));
     }
 
     @Action
@@ -110,7 +124,7 @@ public class CommunityControllers<R> {
     @CommunityOwnerRequired
     public R manageCommunity() {
         var community = request.community;
-        var moderators = forum.communities().getModerators(community);
+        var moderators = request.load("moderators:" + community.id, () -> forum.communities().getModerators(community));
         var subscriberNotFound = request.parameters.containsKey("subscriber-not-found");
         return responses.view("manage-community", new ManageCommunityView(community, moderators, subscriberNotFound));
     }
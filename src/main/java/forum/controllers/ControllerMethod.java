@@ -6,30 +6,61 @@ import forum.controllers.annotations.Page;
 import forum.controllers.decorators.Decorators;
 import lombok.AllArgsConstructor;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.function.Function;
 
-// pomocnicza klasa, która "zamienia" metody na kontrolery za pomocą refleksji;
-// wykorzystywana do metod w UserControllers, CommunityControlers, PostControllers i CommentControllers
+// pomocnicza klasa, która "zamienia" metody na kontrolery;
+// wykorzystywana do metod w UserControllers, CommunityControlers, PostControllers i CommentControllers;
+// konstruktor i metoda są odnajdywane za pomocą refleksji tylko raz, przy budowaniu kontrolera,
+// a następnie LambdaMetafactory generuje dla nich klasy wywołujące je bez refleksji,
+// więc obsługa zapytania nie przechodzi przez Constructor.newInstance i Method.invoke;
+// wywołania w control() są jednak wspólne dla wszystkich kontrolerów (tak jak wywołania w dekoratorach),
+// więc w działającym serwerze są megamorficzne i JIT nie wstawia w nie metod kontrolerów
+// (porównanie z refleksją w impl.ControllerBenchmark)
 @AllArgsConstructor
 public class ControllerMethod<R> implements Controller<R> {
     private final Type type;
     private final String name;
-    private final Constructor<?> constructor;
-    private final Method method;
+    private final Instantiator instantiator;
+    private final Function<Object, Object> invoker;
 
+    // wygenerowane wywołanie konstruktora klasy z kontrolerami
+    interface Instantiator {
+        Object create(Forum forum, RequestContext request, Responses<?> responses);
+    }
+
+    @SuppressWarnings("unchecked")
     public static <R> Controller<R> build(Class<?> cls, String methodName) {
-        Constructor<?> constructor;
         Method method;
+        Instantiator instantiator;
+        Function<Object, Object> invoker;
         Type type;
 
         try {
             // argumenty przekazywane metodzie control() są polami klasy, w której znajduje się dana metoda;
             // przy każdym wykonaniu control() jest tworzony nowy obiekt tej klasy z odpowiednimi argumentami
             // i na tym obiekcie jest wykonywana dana metoda
-            constructor = cls.getConstructor(Forum.class, RequestContext.class, Responses.class);
+            var constructor = cls.getConstructor(Forum.class, RequestContext.class, Responses.class);
             method = cls.getMethod(methodName);
-        } catch (NoSuchMethodException e) {
+
+            var lookup = MethodHandles.lookup();
+            var arguments = new Class<?>[] { Forum.class, RequestContext.class, Responses.class };
+            instantiator = (Instantiator) LambdaMetafactory.metafactory(
+                    lookup, "create", MethodType.methodType(Instantiator.class),
+                    MethodType.methodType(Object.class, arguments),
+                    lookup.unreflectConstructor(constructor),
+                    MethodType.methodType(cls, arguments)
+            ).getTarget().invokeExact();
+            invoker = (Function<Object, Object>) LambdaMetafactory.metafactory(
+                    lookup, "apply", MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    lookup.unreflect(method),
+                    MethodType.methodType(Object.class, cls)
+            ).getTarget().invokeExact();
+        } catch (Throwable e) {
             throw new RuntimeException(e);
         }
 
@@ -46,7 +77,7 @@ public class ControllerMethod<R> implements Controller<R> {
         for (var chr = 'A'; chr <= 'Z'; chr++)
             name = name.replace(Character.toString(chr), "-" + Character.toLowerCase(chr));
 
-        Controller<R> controller = new ControllerMethod<>(type, name, constructor, method);
+        Controller<R> controller = new ControllerMethod<>(type, name, instantiator, invoker);
 
         // opakowanie kontrolera w dekoratory na podstawie adnotacji
         for (var annotation : method.getAnnotations())
@@ -68,11 +99,6 @@ public class ControllerMethod<R> implements Controller<R> {
     @Override
     @SuppressWarnings("unchecked")
     public R control(Forum forum, RequestContext request, Responses<R> responses) {
-        try {
-            var object = constructor.newInstance(forum, request, responses);
-            return (R) method.invoke(object);
-        } catch (ReflectiveOperationException e) {
-            throw new RuntimeException(e);
-        }
+        return (R) invoker.apply(instantiator.create(forum, request, responses));
     }
 }
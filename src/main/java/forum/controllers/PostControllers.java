@@ -1,5 +1,7 @@
 package forum.controllers;
 
+import forum.entities.CommentPage;
+import forum.entities.Cursor;
 import forum.logic.Forum;
 import forum.controllers.annotations.*;
 import forum.forms.PostSendForm;
@@ -7,6 +9,9 @@ import forum.views.PostView;
 import forum.views.SendPostView;
 import lombok.AllArgsConstructor;
 
+import java.util.Optional;
+import java.util.function.Supplier;
+
 // kontrolery związane z postami
 @AllArgsConstructor
 @SuppressWarnings("unused")
@@ -20,17 +25,31 @@ public class PostControllers<R> {
     @PostRequired
     public R post() {
         var post = request.post;
-        var comments = forum.posts().getComments(post);
-        var votes = forum.posts().countVotes(post);
 
+        var orderParameter = request.parameters.getOrDefault("order", "new");
+        if (!orderParameter.equals("new") && !orderParameter.equals("top"))
+            return responses.badRequest("invalid-parameter:order");
+        var order = orderParameter.equals("top") ? CommentPage.Order.Top : CommentPage.Order.New;
+
+        var afterParameter = Optional.ofNullable(request.parameters.get("after"));
+        var after = afterParameter.flatMap(Cursor::parse);
+        if (afterParameter.isPresent() && after.isEmpty())
+            return responses.badRequest("invalid-parameter:after");
+
+        // wszystkie pobrania są niezależne, więc są rozpoczynane razem i wykonują się równolegle
         var user = request.optionalLoggedInUser;
+        var comments = request.prefetch("post-comments:" + post.id + ":" + order + ":" + afterParameter.orElse(""), () -> forum.posts().getComments(post, order, after));
+        var votes = request.prefetch("post-votes:" + post.id, () -> forum.posts().countVotes(post));
+        var subscriber = user.map(u -> request.prefetch("subscriber:" + post.community.id,
+                () -> forum.communities().getSubscriber(u, post.community)));
+        var vote = user.map(u -> request.prefetch("post-vote:" + post.id, () -> forum.posts().getVote(u, post)));
+
         var loggedIn = user.isPresent();
         var sender = user.map(u -> u.equals(post.sender)).orElse(false);
-        var subscriber = user.flatMap(u -> forum.communities().getSubscriber(u, post.community));
-        var moderator = subscriber.map(s -> s.moderator).orElse(false);
-        var vote = user.flatMap(u -> forum.posts().getVote(u, post));
+        var moderator = subscriber.flatMap(Supplier::get).map(s -> s.moderator).orElse(false);
 
-        return responses.view("post", new PostView(post, comments, votes, loggedIn, sender, moderator, vote));
+        return responses.view("post", new PostView(post, comments.get(), order, votes.get(), loggedIn, sender, moderator,
+                vote.flatMap(Supplier::get)));
     }
 
     @Page
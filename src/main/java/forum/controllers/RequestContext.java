@@ -1,5 +1,6 @@
 package forum.controllers;
 
+import forum.databases.QueryCounter;
 import forum.entities.Comment;
 import forum.entities.Community;
 import forum.entities.Post;
@@ -8,15 +9,86 @@ import forum.entities.User;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 // dane zapytania wykorzystywane przez kontrolery
 public class RequestContext {
     public final Map<String, String> parameters;
     public final Map<String, String> sessionStore;
+    private final Executor loadExecutor;
+    private final Map<String, CompletableFuture<?>> loaded = new HashMap<>(); // klucz -> wynik pobrania
+    private final QueryCounter queries = new QueryCounter();
 
+    // pobrania są wykonywane od razu w wątku zapytania
     public RequestContext(Map<String, String> parameters, Map<String, String> sessionStore) {
+        this(parameters, sessionStore, Runnable::run);
+    }
+
+    public RequestContext(Map<String, String> parameters, Map<String, String> sessionStore, Executor loadExecutor) {
         this.parameters = parameters;
         this.sessionStore = sessionStore;
+        this.loadExecutor = loadExecutor;
+    }
+
+    // rozpoczęcie pobrania danych z forum potrzebnych dekoratorom lub kontrolerowi;
+    // pobranie jest wykonywane na loadExecutor, więc kilka niezależnych pobrań rozpoczętych przed odczytaniem
+    // pierwszego wyniku wykonuje się równolegle (na osobnych połączeniach do bazy);
+    // wynik jest zapamiętywany pod danym kluczem do końca zapytania i ponowne pobranie z tym samym kluczem
+    // nie odwołuje się już do forum; klucz powinien więc jednoznacznie opisywać pobierane dane (np. "post:12");
+    // metoda nie jest bezpieczna wątkowo - powinna być wywoływana tylko w wątku obsługującym zapytanie
+    @SuppressWarnings("unchecked")
+    public <T> Supplier<T> prefetch(String key, Supplier<T> loader) {
+        var future = (CompletableFuture<T>) loaded.get(key);
+        if (future == null) {
+            future = CompletableFuture.supplyAsync(() -> queries.run(loader), loadExecutor);
+            loaded.put(key, future);
+        }
+        var result = future;
+        return () -> join(result);
+    }
+
+    // pobranie danych i czekanie na wynik (zobacz prefetch); pobranie, którego wynik nie jest jeszcze
+    // zapamiętany, jest wykonywane od razu w bieżącym wątku, bo i tak trzeba by czekać na jego wynik
+    @SuppressWarnings("unchecked")
+    public <T> T load(String key, Supplier<T> loader) {
+        var future = (CompletableFuture<T>) loaded.get(key);
+        if (future != null)
+            return join(future);
+
+        future = new CompletableFuture<>();
+        loaded.put(key, future);
+        try {
+            var result = queries.run(loader);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    // wykonanie kontrolera (lub innej czynności) z liczeniem wykonanych przez niego zapytań do bazy
+    public <T> T countQueries(Supplier<T> action) {
+        return queries.run(action);
+    }
+
+    // liczba zapytań SQL wykonanych przez pobrania i przez czynności w countQueries
+    // (bez pobrań zapamiętanych wcześniej i bez danych z pamięci podręcznej bazy)
+    public int queries() {
+        return queries.count();
     }
 
     // poniższe pola pełnią funkcję "schowka" na różne dane,
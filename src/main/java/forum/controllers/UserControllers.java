@@ -3,6 +3,7 @@ package forum.controllers;
 import forum.logic.Forum;
 import forum.controllers.annotations.*;
 import forum.entities.CommentVote;
+import forum.entities.Cursor;
 import forum.entities.PostVote;
 import forum.forms.UserRegisterForm;
 import forum.exceptions.UserRegisterException;
@@ -11,6 +12,7 @@ import lombok.AllArgsConstructor;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 // kontrolery związane z użytkownikami
 @AllArgsConstructor
@@ -24,9 +26,11 @@ public class UserControllers<R> {
     @LoginOptional
     public R index() {
         var user = request.optionalLoggedInUser;
-        var subscriptions = user.map(u -> forum.users().getSubscriptions(u)).orElse(List.of());
-        var feed = user.map(u -> forum.users().getFeed(u)).orElse(List.of());
-        return responses.view("index", new IndexView(user, subscriptions, feed));
+        var subscriptions = user.map(u -> request.prefetch("subscriptions:" + u.id, () -> forum.users().getSubscriptions(u)));
+        var feed = user.map(u -> request.prefetch("feed:" + u.id, () -> forum.users().getFeed(u)));
+        return responses.view("index", new IndexView(user,
+                subscriptions.map(Supplier::get).orElse(List.of()),
+                feed.map(Supplier::get).orElse(List.of())));
     }
 
     @Page
@@ -106,26 +110,34 @@ public class UserControllers<R> {
     @ParameterRequired("name")
     public R user() {
         var name = request.parameters.get("name");
-        var optional = forum.users().getByName(name);
+        var optional = request.load("user-name:" + name, () -> forum.users().getByName(name));
         if (optional.isEmpty())
             return responses.notFound("user-name:" + name);
 
         var user = optional.get();
         var self = request.optionalLoggedInUser.map(u -> u.equals(user)).orElse(false);
-        var posts = forum.users().getPosts(user);
-        var comments = forum.users().getComments(user);
 
-        List<PostVote> postVotes;
-        List<CommentVote> commentVotes;
+        // posty i komentarze są stronicowane niezależnie
+        var postsAfterParameter = Optional.ofNullable(request.parameters.get("posts-after"));
+        var postsAfter = postsAfterParameter.flatMap(Cursor::parse);
+        if (postsAfterParameter.isPresent() && postsAfter.isEmpty())
+            return responses.badRequest("invalid-parameter:posts-after");
+
+        var commentsAfterParameter = Optional.ofNullable(request.parameters.get("comments-after"));
+        var commentsAfter = commentsAfterParameter.flatMap(Cursor::parse);
+        if (commentsAfterParameter.isPresent() && commentsAfter.isEmpty())
+            return responses.badRequest("invalid-parameter:comments-after");
+
+        var posts = request.prefetch("user-posts:" + user.id + ":" + postsAfterParameter.orElse(""), () -> forum.users().getPosts(user, postsAfter));
+        var comments = request.prefetch("user-comments:" + user.id + ":" + commentsAfterParameter.orElse(""), () -> forum.users().getComments(user, commentsAfter));
+        Supplier<List<PostVote>> postVotes = List::of;
+        Supplier<List<CommentVote>> commentVotes = List::of;
         if (self) {
-            postVotes = forum.users().getPostVotes(user);
-            commentVotes = forum.users().getCommentVotes(user);
-        } else {
-            postVotes = List.of();
-            commentVotes = List.of();
+            postVotes = request.prefetch("user-post-votes:" + user.id, () -> forum.users().getPostVotes(user));
+            commentVotes = request.prefetch("user-comment-votes:" + user.id, () -> forum.users().getCommentVotes(user));
         }
 
-        return responses.view("user", new UserView(user, self, posts, comments, postVotes, commentVotes));
+        return responses.view("user", new UserView(user, self, posts.get(), comments.get(), postVotes.get(), commentVotes.get()));
     }
 
     @Page
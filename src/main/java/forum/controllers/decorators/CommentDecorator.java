@@ -21,7 +21,7 @@ public class CommentDecorator<R> extends DecoratorBase<R> {
     @Override
     public R control(Forum forum, RequestContext request, Responses<R> responses) {
         var commentId = request.numbers.get("comment");
-        var optional = forum.comments().get(commentId);
+        var optional = request.load("comment:" + commentId, () -> forum.comments().get(commentId));
         if (optional.isEmpty())
             return responses.notFound("comment:" + commentId);
         request.comment = optional.get();
@@ -20,7 +20,7 @@ public class CommunityDecorator<R> extends DecoratorBase<R> {
     @Override
     public R control(Forum forum, RequestContext request, Responses<R> responses) {
         var communityId = request.numbers.get("community");
-        var optional = forum.communities().get(communityId);
+        var optional = request.load("community:" + communityId, () -> forum.communities().get(communityId));
         if (optional.isEmpty())
             return responses.notFound("community:" + communityId);
         request.community = optional.get();
@@ -21,7 +21,7 @@ public class OptionalLoginDecorator<R> extends DecoratorBase<R> {
     public R control(Forum forum, RequestContext request, Responses<R> responses) {
         if (request.sessionStore.containsKey("user")) {
             var userId = Long.parseLong(request.sessionStore.get("user"));
-            request.optionalLoggedInUser = forum.users().get(userId);
+            request.optionalLoggedInUser = request.load("user:" + userId, () -> forum.users().get(userId));
         } else
             request.optionalLoggedInUser = Optional.empty();
         return controller.control(forum, request, responses);
@@ -21,7 +21,7 @@ public class PostDecorator<R> extends DecoratorBase<R> {
     @Override
     public R control(Forum forum, RequestContext request, Responses<R> responses) {
         var postId = request.numbers.get("post");
-        var optional = forum.posts().get(postId);
+        var optional = request.load("post:" + postId, () -> forum.posts().get(postId));
         if (optional.isEmpty())
             return responses.notFound("post:" + postId);
         request.post = optional.get();
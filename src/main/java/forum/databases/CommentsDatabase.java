@@ -7,20 +7,20 @@ import java.util.Optional;
 import java.util.OptionalLong;
 
 // część interfejsu bazy danych związana z komentarzami;
-// jest ona wykorzystywana przez klasę forum.logic.Comments
+// jest ona wykorzystywana przez klasę forum.logic.Comments;
+// voteComment i unvoteComment atomowo zapisują głos razem z punktami komentarza i zwracają zmianę punktów
 public interface CommentsDatabase {
     Comment newComment(long senderId, long postId, OptionalLong parent, String content, long time);
-    void newCommentVote(long voterId, long commentId, boolean upvote, long time);
 
     Optional<Comment> getComment(long id);
     Optional<CommentVote> getCommentVote(long voterId, long commentId);
-    List<Comment> getCommentDescendants(long id);
+    List<Comment> getCommentDescendants(long id, int maxDepth, int limit);
     List<CommentVote> getCommentVotes(long id);
+    long countCommentVotes(long id);
 
     void editComment(long id, String content, long time);
-    void addCommentPoints(long id, long points);
-    void flipCommentVote(long voterId, long commentId, long time);
+    long voteComment(long voterId, long commentId, boolean upvote, long time);
 
     void deleteComment(long id);
-    void deleteCommentVote(long voterId, long commentId);
+    long unvoteComment(long voterId, long commentId);
 }
@@ -1,7 +1,8 @@
 package forum.databases;
 
 import forum.entities.Community;
-import forum.entities.Post;
+import forum.entities.Cursor;
+import forum.entities.PostSummary;
 import forum.entities.Subscriber;
 
 import java.util.List;
@@ -16,9 +17,10 @@ public interface CommunitiesDatabase {
     Optional<Community> getCommunity(long id);
     Optional<Community> getCommunityByName(String name);
     Optional<Subscriber> getSubscriber(long userId, long communityId);
-    List<Community> getCommunities(long from, long to);
+    List<Community> getCommunities(Optional<String> afterName, int limit);
     List<Subscriber> getCommunitySubscribers(long id);
-    List<Post> getCommunityPosts(long id, long newerThan, long olderThan);
+    long countCommunitySubscribers(long id);
+    List<PostSummary> getCommunityPosts(long id, long newerThan, Optional<Cursor> after, int limit);
 
     void setCommunityDescription(long id, String description);
     void addModerator(long userId, long communityId);
@@ -1,6 +1,8 @@
 package forum.databases;
 
 import forum.entities.Comment;
+import forum.entities.CommentPage;
+import forum.entities.Cursor;
 import forum.entities.Post;
 import forum.entities.PostVote;
 
@@ -8,20 +10,21 @@ import java.util.List;
 import java.util.Optional;
 
 // część interfejsu bazy danych związana z postami;
-// jest ona wykorzystywana przez klasę forum.logic.Posts
+// jest ona wykorzystywana przez klasę forum.logic.Posts;
+// votePost i unvotePost atomowo zapisują głos razem z punktami postu i zwracają zmianę punktów
 public interface PostsDatabase {
     Post newPost(long senderId, long communityId, String title, String content, long time);
-    void newPostVote(long voterId, long postId, boolean upvote, long time);
 
     Optional<Post> getPost(long id);
     Optional<PostVote> getPostVote(long voterId, long postId);
-    List<Comment> getPostComments(long id);
+    List<Comment> getPostRootComments(long id, CommentPage.Order order, Optional<Cursor> after, int limit);
+    List<Comment> getCommentReplies(List<Long> ids, CommentPage.Order order, int limitPerComment);
     List<PostVote> getPostVotes(long id);
+    long countPostVotes(long id);
 
     void editPost(long id, String content, long time);
-    void addPostPoints(long id, long points);
-    void flipPostVote(long voterId, long postId, long time);
+    long votePost(long voterId, long postId, boolean upvote, long time);
 
     void deletePost(long id);
-    void deletePostVote(long voterId, long postId);
+    long unvotePost(long voterId, long postId);
 }
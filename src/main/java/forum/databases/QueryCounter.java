@@ -0,0 +1,34 @@
+package forum.databases;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// licznik zapytań wysłanych do bazy danych w ramach jednego zapytania do serwera;
+// implementacja bazy danych wywołuje record() przy każdym wykonanym zapytaniu SQL,
+// a zliczane są one w liczniku ustawionym dla bieżącego wątku przez run();
+// zapytania obsłużone z pamięci podręcznej nie docierają do bazy, więc nie są liczone
+public class QueryCounter {
+    private static final ThreadLocal<QueryCounter> current = new ThreadLocal<>();
+    private final AtomicInteger count = new AtomicInteger(); // run() może działać jednocześnie w kilku wątkach
+
+    public static void record() {
+        var counter = current.get();
+        if (counter != null)
+            counter.count.incrementAndGet();
+    }
+
+    // wykonanie action z liczeniem zapytań wykonanych przez nią w bieżącym wątku
+    public <T> T run(Supplier<T> action) {
+        var previous = current.get();
+        current.set(this);
+        try {
+            return action.get();
+        } finally {
+            current.set(previous);
+        }
+    }
+
+    public int count() {
+        return count.get();
+    }
+}
@@ -12,12 +12,13 @@ public interface UsersDatabase {
 
     Optional<User> getUser(long id);
     Optional<User> getUserByName(String name);
-    List<Post> getUserPosts(long id);
-    List<Comment> getUserComments(long id);
+    List<PostSummary> getUserPosts(long id, Optional<Cursor> after, int limit);
+    List<CommentSummary> getUserComments(long id, Optional<Cursor> after, int limit);
     List<Subscriber> getUserSubscriptions(long id);
     List<PostVote> getUserPostVotes(long id);
     List<CommentVote> getUserCommentVotes(long id);
-    List<Post> getUserSubscriptionsPosts(long id, long newerThan);
+    List<Long> getUserSubscriptionIds(long id, long minSubscribers, long maxSubscribers);
+    List<PostSummary> getUserSubscriptionsPosts(long id, long newerThan, long maxSubscribers, int limit);
 
     void setUserEmail(long id, Optional<String> email);
     void setUserPassword(long id, byte[] passwordHash, byte[] passwordSalt);
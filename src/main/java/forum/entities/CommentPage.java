@@ -0,0 +1,19 @@
+package forum.entities;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Optional;
+
+// pomocnicza klasa reprezentująca jedną stronę komentarzy posta
+@Value
+public class CommentPage {
+    public List<CommentTree> comments;
+    public Optional<String> next; // zakodowany kursor następnej strony, jeśli istnieje
+
+    // kolejność komentarzy na stronie
+    public enum Order {
+        Top, // według liczby punktów
+        New  // według czasu wysłania
+    }
+}
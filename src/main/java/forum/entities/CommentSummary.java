@@ -0,0 +1,20 @@
+package forum.entities;
+
+import lombok.Value;
+
+// skrócone dane komentarza używane na listach komentarzy (tylko do odczytu);
+// nie zawiera treści, a z postu zawiera tylko id i tytuł
+@Value
+public class CommentSummary {
+    public long id;
+    public long postId;
+    public String postTitle;
+    public String senderName;
+    public long sentTime;
+    public long points;
+
+    public static CommentSummary of(Comment comment) {
+        return new CommentSummary(comment.id, comment.post.id, comment.post.title, comment.sender.name,
+                comment.sentTime, comment.points);
+    }
+}
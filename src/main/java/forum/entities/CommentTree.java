@@ -1,41 +1,89 @@
 package forum.entities;
 
+import lombok.AllArgsConstructor;
 import lombok.Value;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 
 // pomocnicza klasa reprezentująca drzewo komentarzy
 @Value
+@AllArgsConstructor
 public class CommentTree {
     public Comment comment;
     public List<CommentTree> children;
+    public boolean truncated; // czy komentarz ma więcej odpowiedzi niż jest w children
 
-    // konstruuje listę drzew komentarzy na podstawie listy korzeni i listy wszystkich węzłów
+    public CommentTree(Comment comment, List<CommentTree> children) {
+        this(comment, children, false);
+    }
+
+    // konstruuje listę drzew komentarzy na podstawie listy korzeni i listy wszystkich węzłów;
+    // działa w czasie liniowym, a węzły są wyszukiwane po id w mapie bez opakowywania kluczy w obiekty Long
     public static List<CommentTree> build(List<Comment> comments, List<Comment> descendants) {
-        var roots = new ArrayList<CommentTree>();
-        var map = new HashMap<Long, CommentTree>();
+        return build(comments, descendants, Set.of());
+    }
+
+    // jak wyżej, ale węzły komentarzy o id z truncated są oznaczone jako niekompletne
+    public static List<CommentTree> build(List<Comment> comments, List<Comment> descendants, Set<Long> truncated) {
+        var roots = new ArrayList<CommentTree>(comments.size());
+        var nodes = new CommentTree[descendants.size()];
+        var map = new NodeMap(comments.size() + descendants.size());
 
         for (var comment : comments) {
-            var root = new CommentTree(comment, new ArrayList<>());
+            var root = new CommentTree(comment, new ArrayList<>(), truncated.contains(comment.id));
             roots.add(root);
             map.put(comment.id, root);
         }
 
-        for (var descendant : descendants) {
-            var node = new CommentTree(descendant, new ArrayList<>());
-            map.put(descendant.id, node);
+        for (var i = 0; i < nodes.length; i++) {
+            var descendant = descendants.get(i);
+            nodes[i] = new CommentTree(descendant, new ArrayList<>(), truncated.contains(descendant.id));
+            map.put(descendant.id, nodes[i]);
         }
 
-        for (var descendant : descendants) {
-            if (descendant.parentId.isPresent()) {
-                var parentId = descendant.parentId.getAsLong();
-                if (map.containsKey(parentId))
-                    map.get(parentId).children.add(map.get(descendant.id));
+        for (var node : nodes) {
+            if (node.comment.parentId.isPresent()) {
+                var parent = map.get(node.comment.parentId.getAsLong());
+                if (parent != null)
+                    parent.children.add(node);
             }
         }
 
         return roots;
     }
+
+    // mapa z id komentarza w węzeł drzewa z adresowaniem otwartym (sondowanie liniowe);
+    // ma stały rozmiar dobrany tak, aby była wypełniona co najwyżej w połowie
+    private static class NodeMap {
+        private final long[] keys;
+        private final CommentTree[] values;
+        private final int mask;
+
+        NodeMap(int size) {
+            var capacity = Integer.highestOneBit(Math.max(2 * size, 1)) << 1;
+            keys = new long[capacity];
+            values = new CommentTree[capacity];
+            mask = capacity - 1;
+        }
+
+        private int index(long key) {
+            var hash = key * 0x9E3779B97F4A7C15L;
+            var i = (int) (hash ^ (hash >>> 32)) & mask;
+            while (values[i] != null && keys[i] != key)
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        void put(long key, CommentTree value) {
+            var i = index(key);
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        CommentTree get(long key) {
+            return values[index(key)];
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package forum.entities;
+
+import lombok.Value;
+
+import java.util.Optional;
+
+// kursor stronicowania wskazujący ostatni element poprzedniej strony;
+// key to wartość, według której lista jest uporządkowana (np. czas wysłania), a id rozstrzyga remisy
+@Value
+public class Cursor {
+    public long key;
+    public long id;
+
+    public static Cursor after(CommentPage.Order order, Comment comment) {
+        return new Cursor(order == CommentPage.Order.Top ? comment.points : comment.sentTime, comment.id);
+    }
+
+    public static Cursor after(PostSummary post) {
+        return new Cursor(post.sentTime, post.id);
+    }
+
+    public static Cursor after(CommentSummary comment) {
+        return new Cursor(comment.sentTime, comment.id);
+    }
+
+    public String encode() {
+        return key + "." + id;
+    }
+
+    public static Optional<Cursor> parse(String string) {
+        var parts = string.split("\\.", -1);
+        if (parts.length != 2)
+            return Optional.empty();
+        try {
+            return Optional.of(new Cursor(Long.parseLong(parts[0]), Long.parseLong(parts[1])));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
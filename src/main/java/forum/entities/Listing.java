@@ -0,0 +1,13 @@
+package forum.entities;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Optional;
+
+// pomocnicza klasa reprezentująca jedną stronę listy (np. postów użytkownika)
+@Value
+public class Listing<T> {
+    public List<T> items;
+    public Optional<String> next; // zakodowany kursor następnej strony, jeśli istnieje
+}
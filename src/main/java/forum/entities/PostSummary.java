@@ -0,0 +1,19 @@
+package forum.entities;
+
+import lombok.Value;
+
+// skrócone dane postu używane na listach postów (tylko do odczytu);
+// zamiast zagnieżdżonych obiektów nadawcy i społeczności zawiera tylko ich nazwy
+@Value
+public class PostSummary {
+    public long id;
+    public String title;
+    public String senderName;
+    public String communityName;
+    public long sentTime;
+    public long points;
+
+    public static PostSummary of(Post post) {
+        return new PostSummary(post.id, post.title, post.sender.name, post.community.name, post.sentTime, post.points);
+    }
+}
@@ -19,6 +19,10 @@ public class Comments {
     private final Emailer emailer;
     private final Users users;
 
+    // ograniczenia wielkości drzewa komentarzy wczytywanego na stronie komentarza
+    static final int maxTreeDepth = 100;
+    static final int maxTreeSize = 10000;
+
     public Optional<Comment> get(long id) {
         return database.getComment(id);
     }
@@ -32,12 +36,12 @@ public class Comments {
     }
 
     public CommentTree getTree(Comment comment) {
-        var descendants = database.getCommentDescendants(comment.id);
+        var descendants = database.getCommentDescendants(comment.id, maxTreeDepth, maxTreeSize);
         return CommentTree.build(List.of(comment), descendants).get(0);
     }
 
     public long countVotes(Comment comment) {
-        return database.getCommentVotes(comment.id).size();
+        return database.countCommentVotes(comment.id);
     }
 
     public Comment send(User sender, CommentSendForm form) {
@@ -59,21 +63,12 @@ public class Comments {
         database.editComment(comment.id, content, time);
     }
 
+    // zobacz Posts.vote
     private void vote(User voter, Comment comment, boolean upvote) {
-        var previous = database.getCommentVote(voter.id, comment.id);
         var time = clock.time();
-
-        if (previous.isEmpty()) {
-            database.newCommentVote(voter.id, comment.id, upvote, time);
-            database.addCommentPoints(comment.id, upvote ? +1 : -1);
-            users.addPoints(comment.sender, upvote ? +1 : -1);
-        }
-
-        else if (previous.get().upvote != upvote) {
-            database.flipCommentVote(voter.id, comment.id, time);
-            database.addCommentPoints(comment.id, upvote ? +2 : -2);
-            users.addPoints(comment.sender, upvote ? +2 : -2);
-        }
+        var points = database.voteComment(voter.id, comment.id, upvote, time);
+        if (points != 0)
+            users.addPoints(comment.sender, points);
     }
 
     public void upvote(User voter, Comment comment) {
@@ -85,9 +80,9 @@ public class Comments {
     }
 
     public void unvote(CommentVote vote) {
-        database.deleteCommentVote(vote.voter.id, vote.comment.id);
-        database.addCommentPoints(vote.comment.id, vote.upvote ? -1 : +1);
-        users.addPoints(vote.comment.sender, vote.upvote ? -1 : +1);
+        var points = database.unvoteComment(vote.voter.id, vote.comment.id);
+        if (points != 0)
+            users.addPoints(vote.comment.sender, points);
     }
 
     public void delete(Comment comment, boolean byModerator) {
@@ -6,17 +6,16 @@ import forum.services.Clock;
 import forum.services.Emailer;
 import forum.databases.CommunitiesDatabase;
 import forum.entities.Community;
-import forum.entities.Post;
+import forum.entities.Cursor;
+import forum.entities.Listing;
+import forum.entities.PostSummary;
 import forum.entities.Subscriber;
 import forum.entities.User;
 import forum.forms.CommunityCreateForm;
 import lombok.AllArgsConstructor;
 
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 import static forum.exceptions.CommunityCreateException.Cause.*;
@@ -28,6 +27,8 @@ public class Communities {
     private final Clock clock;
     private final CommunityValidator validator;
     private final Emailer emailer;
+    private final PostRanking ranking;
+    private final HomeFeeds feeds;
 
     // wzór na "popularność" postu na podstawie liczby puntków i czasu wysłania;
     // w praktyce oznacza on, że liczba punktów dzieli się przez 10 po upływie jednej doby
@@ -35,7 +36,8 @@ public class Communities {
         return 24 * 3600 * Math.log10(Math.max(1, points)) - ageSeconds;
     }
 
-    public static final long communityListPageSize = 10;
+    public static final int communityListPageSize = 10;
+    public static final int communityPostsPageSize = 20;
     public static final long popularPostsMaxAgeDays = 7;
     public static final long popularPostsMaxCount = 100;
 
@@ -51,29 +53,30 @@ public class Communities {
         return database.getSubscriber(user.id, community.id);
     }
 
-    public List<Community> getCommunities(long page) {
-        var from = page * communityListPageSize;
-        var to = (page + 1) * communityListPageSize;
-        return database.getCommunities(from, to);
+    // strona listy społeczności uporządkowanej według nazwy; kursorem jest nazwa ostatniej społeczności
+    public Listing<Community> getCommunities(Optional<String> after) {
+        var communities = database.getCommunities(after, communityListPageSize + 1);
+        var next = Optional.<String>empty();
+        if (communities.size() > communityListPageSize) {
+            communities = communities.subList(0, communityListPageSize);
+            next = Optional.of(communities.get(communityListPageSize - 1).name);
+        }
+        return new Listing<>(communities, next);
     }
 
-    public List<Post> getPosts(Community community, long day) {
-        var time = clock.time();
-        var newerThan = time - 24 * 3600 * (day + 1);
-        var olderThan = time - 24 * 3600 * day;
-        return database.getCommunityPosts(community.id, newerThan, olderThan);
+    // strona wszystkich postów społeczności od najnowszego
+    public Listing<PostSummary> getPosts(Community community, Optional<Cursor> after) {
+        var posts = database.getCommunityPosts(community.id, 0, after, communityPostsPageSize + 1);
+        var next = Optional.<String>empty();
+        if (posts.size() > communityPostsPageSize) {
+            posts = posts.subList(0, communityPostsPageSize);
+            next = Optional.of(Cursor.after(posts.get(communityPostsPageSize - 1)).encode());
+        }
+        return new Listing<>(posts, next);
     }
 
-    public List<Post> getPopularPosts(Community community) {
-        var time = clock.time();
-        var newerThan = time - 24 * 3600 * popularPostsMaxAgeDays;
-        var posts = database.getCommunityPosts(community.id, newerThan, time);
-
-        ToDoubleFunction<Post> scoreFunction = p -> -postScore(p.points, time - p.sentTime);
-        posts = new ArrayList<>(posts);
-        posts.sort(Comparator.comparingDouble(scoreFunction));
-
-        return posts.stream().limit(popularPostsMaxCount).collect(Collectors.toList());
+    public List<PostSummary> getPopularPosts(Community community) {
+        return ranking.top(community.id, (int) popularPostsMaxCount);
     }
 
     public Community create(User creator, CommunityCreateForm form) throws CommunityCreateException {
@@ -87,6 +90,7 @@ public class Communities {
 
         database.newSubscriber(creator.id, community.id, time);
         database.addModerator(creator.id, community.id);
+        feeds.invalidate(creator);
         emailer.emailAdmin("community-created:" + community.name);
         emailer.emailUser(creator, "community-created:" + community.name);
 
@@ -95,18 +99,21 @@ public class Communities {
 
     public void subscribe(User user, Community community) {
         var time = clock.time();
-        if (database.getSubscriber(user.id, community.id).isEmpty())
+        if (database.getSubscriber(user.id, community.id).isEmpty()) {
             database.newSubscriber(user.id, community.id, time);
+            feeds.invalidate(user);
+        }
     }
 
     public void unsubscribe(Subscriber subscriber) {
         if (subscriber.user.equals(subscriber.community.owner))
             return;
         database.deleteSubscriber(subscriber.user.id, subscriber.community.id);
+        feeds.invalidate(subscriber.user);
     }
 
     public long countSubscribers(Community community) {
-        return database.getCommunitySubscribers(community.id).size();
+        return database.countCommunitySubscribers(community.id);
     }
 
     public List<Subscriber> getModerators(Community community) {
@@ -136,6 +143,8 @@ public class Communities {
 
     public void delete(Community community) {
         database.deleteCommunity(community.id);
+        ranking.removeCommunity(community.id);
+        feeds.removeCommunity(community.id);
         emailer.emailAdmin("community-deleted:" + community.name);
         emailer.emailUser(community.owner, "community-deleted:" + community.name);
     }
@@ -18,9 +18,11 @@ public class ForumFactory {
     private final Emailer emailer;
 
     public Forum newForum() {
-        var users = new Users(database, clock, validator, authenticator, emailer);
-        var communities = new Communities(database, clock, validator, emailer);
-        var posts = new Posts(database, clock, emailer, users);
+        var ranking = new PostRanking(database, clock);
+        var feeds = new HomeFeeds(database, clock, ranking);
+        var users = new Users(database, clock, validator, authenticator, emailer, feeds);
+        var communities = new Communities(database, clock, validator, emailer, ranking, feeds);
+        var posts = new Posts(database, clock, emailer, users, ranking, feeds);
         var comments = new Comments(database, clock, emailer, users);
         return new Forum(users, communities, posts, comments);
     }
@@ -0,0 +1,219 @@
+package forum.logic;
+
+import forum.databases.UsersDatabase;
+import forum.entities.Post;
+import forum.entities.PostSummary;
+import forum.entities.User;
+import forum.services.Clock;
+import lombok.AllArgsConstructor;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static forum.logic.Users.feedMaxAgeDays;
+import static forum.logic.Users.feedMaxCount;
+
+// materializowane strony główne (feedy) aktywnych użytkowników;
+// feed użytkownika to ograniczony bufor cykliczny najnowszych postów z subskrybowanych społeczności,
+// do którego nowe posty są dopisywane w momencie wysłania (fan-out-on-write);
+// społeczności mające więcej niż fanOutMaxSubscribers subskrybentów są pomijane przy dopisywaniu,
+// a ich posty są brane przy odczycie z rankingu PostRanking (fan-out-on-read);
+// feed jest budowany z bazy przy pierwszym odczycie i ponownie co refreshIntervalSeconds
+// (odświeża to punkty postów, które nie są aktualizowane przy głosowaniu) oraz po zmianie subskrypcji;
+// nowy feed jest wstawiany do mapy przed wczytaniem (które odbywa się poza blokadami mapy),
+// a inne odczyty tego samego feedu czekają na jego wczytanie
+@AllArgsConstructor
+public class HomeFeeds {
+    private final UsersDatabase database;
+    private final Clock clock;
+    private final PostRanking ranking;
+    private final Map<Long, Feed> feeds = new ConcurrentHashMap<>(); // id użytkownika -> feed
+    private final Map<Long, Set<Feed>> followers = new ConcurrentHashMap<>(); // id społeczności -> feedy
+
+    public static final int ringSize = 500;
+    public static final long fanOutMaxSubscribers = 10000;
+    public static final long refreshIntervalSeconds = 600;
+    public static final int maxFeeds = 100000; // powyżej tej liczby nieaktualne feedy są usuwane z pamięci
+
+    // kandydaci na posty na stronie głównej użytkownika (bez określonej kolejności);
+    // ich liczba nie zależy od liczby subskrypcji, a jedynie od liczby dużych subskrybowanych społeczności
+    public List<PostSummary> get(User user) {
+        var time = clock.time();
+        var feed = feeds.get(user.id);
+        while (feed == null || feed.expired(time)) {
+            if (feeds.size() > maxFeeds)
+                evictExpired(time);
+            // wczytuje tylko wątek, któremu udało się wstawić nowy feed
+            var loaded = new Feed(user.id, time);
+            if (feed == null ? feeds.putIfAbsent(user.id, loaded) == null : feeds.replace(user.id, feed, loaded)) {
+                if (feed != null)
+                    unregister(feed);
+                load(user, loaded, time);
+                feed = loaded;
+            } else {
+                feed = feeds.get(user.id);
+            }
+        }
+        feed.await();
+
+        var posts = feed.posts();
+        var ids = new HashSet<Long>();
+        posts.forEach(p -> ids.add(p.id));
+        for (var communityId : feed.largeCommunities)
+            for (var post : ranking.top(communityId, (int) feedMaxCount))
+                if (ids.add(post.id))
+                    posts.add(post);
+        return posts;
+    }
+
+    public void add(Post post) {
+        var summary = PostSummary.of(post);
+        for (var feed : followers.getOrDefault(post.community.id, Set.of()))
+            feed.push(summary);
+    }
+
+    public void remove(Post post) {
+        for (var feed : followers.getOrDefault(post.community.id, Set.of()))
+            feed.remove(post.id);
+    }
+
+    // usunięcie feedu użytkownika, np. po zmianie jego subskrypcji; zostanie zbudowany od nowa przy odczycie
+    public void invalidate(User user) {
+        var feed = feeds.remove(user.id);
+        if (feed != null)
+            unregister(feed);
+    }
+
+    // usunięcie feedów zawierających posty usuniętej społeczności; feedy, w których jest ona duża,
+    // zostają, bo jej posty są brane z rankingu (który Communities również usuwa)
+    public void removeCommunity(long communityId) {
+        for (var feed : followers.getOrDefault(communityId, Set.of())) {
+            if (feeds.remove(feed.userId, feed))
+                unregister(feed);
+        }
+    }
+
+    // nowy feed jest rejestrowany jako odbiorca postów przed wczytaniem bazy,
+    // więc posty wysłane w trakcie wczytywania nie zostaną pominięte (duplikaty są usuwane w fill);
+    // w razie błędu feed jest usuwany z mapy, a czekające na niego odczyty dostają ten sam wyjątek
+    private void load(User user, Feed feed, long time) {
+        try {
+            var small = database.getUserSubscriptionIds(user.id, 0, fanOutMaxSubscribers);
+            var large = database.getUserSubscriptionIds(user.id, fanOutMaxSubscribers + 1, Long.MAX_VALUE);
+            feed.subscribe(small, large);
+            for (var communityId : small)
+                followers.computeIfAbsent(communityId, id -> ConcurrentHashMap.newKeySet()).add(feed);
+
+            var newerThan = time - 24 * 3600 * feedMaxAgeDays;
+            feed.fill(database.getUserSubscriptionsPosts(user.id, newerThan, fanOutMaxSubscribers, ringSize));
+        } catch (RuntimeException e) {
+            feeds.remove(user.id, feed);
+            unregister(feed);
+            feed.ready.completeExceptionally(e);
+            throw e;
+        }
+        // feed mógł zostać unieważniony w trakcie wczytywania, zanim został zarejestrowany
+        if (feeds.get(user.id) != feed)
+            unregister(feed);
+        feed.ready.complete(null);
+    }
+
+    private void unregister(Feed feed) {
+        for (var communityId : feed.smallCommunities)
+            followers.computeIfPresent(communityId, (id, set) -> {
+                set.remove(feed);
+                return set.isEmpty() ? null : set;
+            });
+    }
+
+    private void evictExpired(long time) {
+        for (var entry : feeds.entrySet()) {
+            if (entry.getValue().expired(time) && feeds.remove(entry.getKey(), entry.getValue()))
+                unregister(entry.getValue());
+        }
+    }
+
+    // bufor cykliczny ringSize najnowszych postów;
+    // posty usunięte w trakcie wczytywania są zapamiętywane, aby fill nie dodał ich z powrotem
+    private static class Feed {
+        private final long userId;
+        private final long loadedTime;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private volatile List<Long> smallCommunities = List.of();
+        private volatile List<Long> largeCommunities = List.of();
+        private final PostSummary[] ring = new PostSummary[ringSize];
+        private int next = 0; // pozycja, na którą trafi następny post
+        private int size = 0;
+        private Set<Long> removedWhileLoading = new HashSet<>();
+
+        private Feed(long userId, long loadedTime) {
+            this.userId = userId;
+            this.loadedTime = loadedTime;
+        }
+
+        private boolean expired(long time) {
+            return time - loadedTime >= refreshIntervalSeconds;
+        }
+
+        private void subscribe(List<Long> smallCommunities, List<Long> largeCommunities) {
+            this.smallCommunities = smallCommunities;
+            this.largeCommunities = largeCommunities;
+        }
+
+        private void await() {
+            try {
+                ready.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+
+        synchronized void push(PostSummary post) {
+            ring[next] = post;
+            next = (next + 1) % ringSize;
+            size = Math.min(size + 1, ringSize);
+        }
+
+        synchronized void remove(long postId) {
+            if (removedWhileLoading != null)
+                removedWhileLoading.add(postId);
+            var posts = posts();
+            posts.removeIf(p -> p.id == postId);
+            reset(posts);
+        }
+
+        // połączenie postów wczytanych z bazy z postami dopisanymi w trakcie wczytywania
+        synchronized void fill(List<PostSummary> loaded) {
+            var posts = new ArrayList<PostSummary>();
+            var ids = new HashSet<>(removedWhileLoading);
+            for (var post : loaded)
+                if (ids.add(post.id))
+                    posts.add(post);
+            removedWhileLoading = null;
+            for (var post : posts())
+                if (ids.add(post.id))
+                    posts.add(post);
+            posts.sort(Comparator.comparingLong((PostSummary p) -> p.sentTime).thenComparingLong(p -> p.id));
+            reset(posts.subList(Math.max(0, posts.size() - ringSize), posts.size()));
+        }
+
+        // posty od najstarszego do najnowszego
+        synchronized List<PostSummary> posts() {
+            var posts = new ArrayList<PostSummary>(size);
+            for (var i = 0; i < size; i++)
+                posts.add(ring[(next - size + i + ringSize) % ringSize]);
+            return posts;
+        }
+
+        private void reset(List<PostSummary> posts) {
+            Arrays.fill(ring, null);
+            next = 0;
+            size = 0;
+            posts.forEach(this::push);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package forum.logic;
+
+import forum.databases.CommunitiesDatabase;
+import forum.entities.Cursor;
+import forum.entities.Post;
+import forum.entities.PostSummary;
+import forum.services.Clock;
+import lombok.AllArgsConstructor;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static forum.logic.Communities.popularPostsMaxAgeDays;
+
+// trzymany w pamięci ranking popularnych postów każdej społeczności,
+// aktualizowany przy wysłaniu postu, głosowaniu i usunięciu postu;
+// postScore(points, time - sentTime) = hot(points, sentTime) - time, gdzie hot nie zależy od bieżącego czasu,
+// więc kolejność postów zmienia się tylko wraz z ich punktami i nie trzeba jej przeliczać z upływem czasu;
+// ranking społeczności jest wczytywany z bazy przy pierwszym odczycie i ponownie co refreshIntervalSeconds,
+// co poprawia go po zmianach, o których nie wie (np. posty usunięte kaskadowo razem z nadawcą);
+// nowy ranking jest wstawiany do mapy przed wczytaniem (które odbywa się poza blokadami mapy),
+// więc inne odczyty tej społeczności czekają na jego wczytanie, a aktualizacje trafiają do niego od razu;
+// zmiany punktów zgłoszone w trakcie wczytywania są odkładane i na końcu stosowane tylko do postów,
+// których strona zaczęła być czytana z bazy przed zgłoszeniem
+// (wcześniejsze głosy są już we wczytanych punktach)
+@AllArgsConstructor
+public class PostRanking {
+    private final CommunitiesDatabase database;
+    private final Clock clock;
+    private final Map<Long, CommunityRanking> rankings = new ConcurrentHashMap<>();
+
+    public static final long refreshIntervalSeconds = 600;
+    public static final int loadPageSize = 1000;
+
+    public static double hot(long points, long sentTime) {
+        return Communities.postScore(points, 0) + sentTime;
+    }
+
+    // count najpopularniejszych postów z ostatnich popularPostsMaxAgeDays dni
+    public List<PostSummary> top(long communityId, int count) {
+        var time = clock.time();
+        var newerThan = time - 24 * 3600 * popularPostsMaxAgeDays;
+        while (true) {
+            var ranking = rankings.get(communityId);
+            if (ranking != null && time - ranking.loadedTime < refreshIntervalSeconds)
+                return ranking.top(newerThan, count);
+            // wczytuje tylko wątek, któremu udało się wstawić nowy ranking
+            var loaded = new CommunityRanking(time);
+            if (ranking == null ? rankings.putIfAbsent(communityId, loaded) == null
+                    : rankings.replace(communityId, ranking, loaded)) {
+                load(communityId, loaded, newerThan);
+                return loaded.top(newerThan, count);
+            }
+        }
+    }
+
+    // społeczności, których ranking nie jest wczytany, są pomijane (ranking wczyta ich aktualny stan z bazy)
+
+    public void add(Post post) {
+        var ranking = rankings.get(post.community.id);
+        if (ranking != null)
+            ranking.put(PostSummary.of(post));
+    }
+
+    public void addPoints(Post post, long points) {
+        var ranking = rankings.get(post.community.id);
+        if (ranking != null)
+            ranking.addPoints(post.id, points);
+    }
+
+    public void remove(Post post) {
+        var ranking = rankings.get(post.community.id);
+        if (ranking != null)
+            ranking.remove(post.id);
+    }
+
+    // usunięcie rankingu usuniętej społeczności
+    public void removeCommunity(long communityId) {
+        rankings.remove(communityId);
+    }
+
+    // posty są wczytywane stronami po loadPageSize; w razie błędu ranking jest usuwany z mapy,
+    // a czekające na niego odczyty dostają ten sam wyjątek
+    private void load(long communityId, CommunityRanking ranking, long newerThan) {
+        try {
+            var after = Optional.<Cursor>empty();
+            while (true) {
+                var readEvent = ranking.events();
+                var posts = database.getCommunityPosts(communityId, newerThan, after, loadPageSize);
+                ranking.putLoaded(posts, readEvent);
+                if (posts.size() < loadPageSize)
+                    break;
+                after = Optional.of(Cursor.after(posts.get(posts.size() - 1)));
+            }
+        } catch (RuntimeException e) {
+            rankings.remove(communityId, ranking);
+            ranking.ready.completeExceptionally(e);
+            throw e;
+        }
+        ranking.loaded();
+    }
+
+    // posty jednej społeczności uporządkowane malejąco według hot (a przy remisie według id);
+    // posty usunięte w trakcie wczytywania są zapamiętywane,
+    // aby wczytany z bazy starszy stan nie dodał ich z powrotem;
+    // zmiany punktów są numerowane (events), a w trakcie wczytywania dla każdego posta zapamiętywany jest numer
+    // ostatniej zmiany zgłoszonej przed rozpoczęciem odczytu jego strony (readEvents);
+    // pola używane tylko w trakcie wczytywania są potem ustawiane na null
+    private static class CommunityRanking {
+        private final long loadedTime;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private final TreeSet<Entry> sorted = new TreeSet<>();
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private long events = 0;
+        private Set<Long> removedWhileLoading = new HashSet<>();
+        private Map<Long, Long> readEvents = new HashMap<>();
+        private List<Delta> deltasWhileLoading = new ArrayList<>();
+
+        private CommunityRanking(long loadedTime) {
+            this.loadedTime = loadedTime;
+        }
+
+        synchronized long events() {
+            return events;
+        }
+
+        synchronized void putLoaded(List<PostSummary> posts, long readEvent) {
+            for (var post : posts) {
+                if (!removedWhileLoading.contains(post.id)) {
+                    insert(post);
+                    readEvents.put(post.id, readEvent);
+                }
+            }
+        }
+
+        // zmiana punktów zgłoszona po rozpoczęciu odczytu strony posta nie mogła zostać w niej uwzględniona
+        // (głos jest zapisywany w bazie przed zgłoszeniem), a wcześniejsze zmiany już są w wczytanych punktach
+        void loaded() {
+            synchronized (this) {
+                for (var delta : deltasWhileLoading) {
+                    var readEvent = readEvents.get(delta.postId);
+                    if (readEvent != null && delta.event > readEvent)
+                        applyPoints(delta.postId, delta.points);
+                }
+                removedWhileLoading = null;
+                readEvents = null;
+                deltasWhileLoading = null;
+            }
+            ready.complete(null);
+        }
+
+        // przeglądanie od początku z pominięciem postów starszych niż newerThan,
+        // czyli w czasie proporcjonalnym do count, a nie do liczby postów
+        List<PostSummary> top(long newerThan, int count) {
+            try {
+                ready.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+            var result = new ArrayList<PostSummary>(count);
+            synchronized (this) {
+                for (var entry : sorted) {
+                    if (result.size() >= count)
+                        break;
+                    if (entry.post.sentTime > newerThan)
+                        result.add(entry.post);
+                }
+            }
+            return result;
+        }
+
+        // nowy post ma już wszystkie swoje punkty, więc w trakcie wczytywania liczą się zmiany zgłoszone po nim
+        synchronized void put(PostSummary post) {
+            if (readEvents != null)
+                readEvents.put(post.id, events);
+            insert(post);
+        }
+
+        synchronized void addPoints(long postId, long points) {
+            events++;
+            if (deltasWhileLoading != null)
+                deltasWhileLoading.add(new Delta(postId, points, events));
+            else
+                applyPoints(postId, points);
+        }
+
+        private void applyPoints(long postId, long points) {
+            var entry = entries.get(postId);
+            if (entry != null) {
+                var post = entry.post;
+                insert(new PostSummary(post.id, post.title, post.senderName, post.communityName,
+                        post.sentTime, post.points + points));
+            }
+        }
+
+        private void insert(PostSummary post) {
+            removeEntry(post.id);
+            var entry = new Entry(post);
+            sorted.add(entry);
+            entries.put(post.id, entry);
+        }
+
+        synchronized void remove(long postId) {
+            if (removedWhileLoading != null)
+                removedWhileLoading.add(postId);
+            removeEntry(postId);
+        }
+
+        private void removeEntry(long postId) {
+            var entry = entries.remove(postId);
+            if (entry != null)
+                sorted.remove(entry);
+        }
+    }
+
+    private static class Delta {
+        private final long postId;
+        private final long points;
+        private final long event;
+
+        private Delta(long postId, long points, long event) {
+            this.postId = postId;
+            this.points = points;
+            this.event = event;
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final PostSummary post;
+        private final double hot;
+
+        private Entry(PostSummary post) {
+            this.post = post;
+            this.hot = hot(post.points, post.sentTime);
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            var result = Double.compare(other.hot, hot);
+            return result != 0 ? result : Long.compare(other.post.id, post.id);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package forum.logic;
 
+import forum.entities.Comment;
+import forum.entities.CommentPage;
+import forum.entities.Cursor;
 import forum.entities.CommentTree;
 import forum.services.Clock;
 import forum.databases.PostsDatabase;
@@ -10,6 +13,9 @@ import forum.forms.PostSendForm;
 import forum.services.Emailer;
 import lombok.AllArgsConstructor;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -21,6 +27,14 @@ public class Posts {
     private final Clock clock;
     private final Emailer emailer;
     private final Users users;
+    private final PostRanking ranking;
+    private final HomeFeeds feeds;
+
+    // ograniczenia wielkości strony komentarzy posta;
+    // strona ma co najwyżej commentPageSize * (1 + repliesPerComment + ... + repliesPerComment^replyDepth) komentarzy
+    static final int commentPageSize = 20;
+    static final int replyDepth = 2;
+    static final int repliesPerComment = 5;
 
     public Optional<Post> get(long id) {
         return database.getPost(id);
@@ -30,20 +44,54 @@ public class Posts {
         return database.getPostVote(voter.id, post.id);
     }
 
-    public List<CommentTree> getComments(Post post) {
-        var comments = database.getPostComments(post.id);
-        var topComments = comments.stream().filter(x -> x.parentId.isEmpty()).collect(Collectors.toList());
-        var descendants = comments.stream().filter(x -> x.parentId.isPresent()).collect(Collectors.toList());
-        return CommentTree.build(topComments, descendants);
+    // strona komentarzy najwyższego poziomu wraz z kilkoma poziomami odpowiedzi;
+    // komentarze, pod którymi nie wczytano wszystkich odpowiedzi, są oznaczone jako niekompletne
+    // (ich pełne drzewo jest na stronie komentarza)
+    public CommentPage getComments(Post post, CommentPage.Order order, Optional<Cursor> after) {
+        var roots = database.getPostRootComments(post.id, order, after, commentPageSize + 1);
+        var next = Optional.<String>empty();
+        if (roots.size() > commentPageSize) {
+            roots = roots.subList(0, commentPageSize);
+            next = Optional.of(Cursor.after(order, roots.get(commentPageSize - 1)).encode());
+        }
+
+        var descendants = new ArrayList<Comment>();
+        var truncated = new HashSet<Long>();
+        var parents = roots;
+
+        // na ostatnim poziomie wczytujemy po jednej odpowiedzi tylko po to, aby sprawdzić, czy jakieś istnieją
+        for (var depth = 0; depth <= replyDepth && !parents.isEmpty(); depth++) {
+            var limit = depth < replyDepth ? repliesPerComment : 0;
+            var ids = parents.stream().map(x -> x.id).collect(Collectors.toList());
+            var replies = database.getCommentReplies(ids, order, limit + 1);
+
+            var counts = new HashMap<Long, Integer>();
+            var loaded = new ArrayList<Comment>();
+            for (var reply : replies) {
+                var parentId = reply.parentId.getAsLong();
+                if (counts.merge(parentId, 1, Integer::sum) <= limit)
+                    loaded.add(reply);
+                else
+                    truncated.add(parentId);
+            }
+
+            descendants.addAll(loaded);
+            parents = loaded;
+        }
+
+        return new CommentPage(CommentTree.build(roots, descendants, truncated), next);
     }
 
     public long countVotes(Post post) {
-        return database.getPostVotes(post.id).size();
+        return database.countPostVotes(post.id);
     }
 
     public Post send(User sender, PostSendForm form) {
         var time = clock.time();
-        return database.newPost(sender.id, form.community.id, form.title, form.content, time);
+        var post = database.newPost(sender.id, form.community.id, form.title, form.content, time);
+        ranking.add(post);
+        feeds.add(post);
+        return post;
     }
 
     public void edit(Post post, String content) {
@@ -51,21 +99,18 @@ public class Posts {
         database.editPost(post.id, content, time);
     }
 
+    // baza danych zapisuje głos razem z punktami postu w jednej transakcji
+    // i zwraca zmianę punktów (+1 lub -1 za nowy głos, +2 lub -2 za zmianę głosu, 0 za powtórzony głos)
     private void vote(User voter, Post post, boolean upvote) {
-        var previous = database.getPostVote(voter.id, post.id);
         var time = clock.time();
+        addPoints(post, database.votePost(voter.id, post.id, upvote, time));
+    }
 
-        if (previous.isEmpty()) {
-            database.newPostVote(voter.id, post.id, upvote, time);
-            database.addPostPoints(post.id, upvote ? +1 : -1);
-            users.addPoints(post.sender, upvote ? +1 : -1);
-        }
-
-        else if (previous.get().upvote != upvote) {
-            database.flipPostVote(voter.id, post.id, time);
-            database.addPostPoints(post.id, upvote ? +2 : -2);
-            users.addPoints(post.sender, upvote ? +2 : -2);
-        }
+    private void addPoints(Post post, long points) {
+        if (points == 0)
+            return;
+        ranking.addPoints(post, points);
+        users.addPoints(post.sender, points);
     }
 
     public void upvote(User voter, Post post) {
@@ -77,14 +122,14 @@ public class Posts {
     }
 
     public void unvote(PostVote vote) {
-        database.deletePostVote(vote.voter.id, vote.post.id);
-        database.addPostPoints(vote.post.id, vote.upvote ? -1 : +1);
-        users.addPoints(vote.post.sender, vote.upvote ? -1 : +1);
+        addPoints(vote.post, database.unvotePost(vote.voter.id, vote.post.id));
     }
 
     public void delete(Post post, boolean byModerator) {
         if (byModerator)
             emailer.emailUser(post.sender, "post-deleted:" + post.id);
         database.deletePost(post.id);
+        ranking.remove(post);
+        feeds.remove(post);
     }
 }
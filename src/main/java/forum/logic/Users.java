@@ -10,7 +10,6 @@ import forum.entities.*;
 import forum.forms.UserRegisterForm;
 import lombok.AllArgsConstructor;
 
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -27,9 +26,11 @@ public class Users {
     private final UserValidator validator;
     private final Authenticator authenticator;
     private final Emailer emailer;
+    private final HomeFeeds feeds;
 
     public static final long feedMaxAgeDays = 7;
     public static final long feedMaxCount = 100;
+    public static final int userPageSize = 20;
 
     public Optional<User> get(long id) {
         return database.getUser(id);
@@ -39,12 +40,26 @@ public class Users {
         return database.getUserByName(name);
     }
 
-    public List<Post> getPosts(User user) {
-        return database.getUserPosts(user.id);
+    // strony postów i komentarzy użytkownika od najnowszego
+
+    public Listing<PostSummary> getPosts(User user, Optional<Cursor> after) {
+        var posts = database.getUserPosts(user.id, after, userPageSize + 1);
+        var next = Optional.<String>empty();
+        if (posts.size() > userPageSize) {
+            posts = posts.subList(0, userPageSize);
+            next = Optional.of(Cursor.after(posts.get(userPageSize - 1)).encode());
+        }
+        return new Listing<>(posts, next);
     }
 
-    public List<Comment> getComments(User user) {
-        return database.getUserComments(user.id);
+    public Listing<CommentSummary> getComments(User user, Optional<Cursor> after) {
+        var comments = database.getUserComments(user.id, after, userPageSize + 1);
+        var next = Optional.<String>empty();
+        if (comments.size() > userPageSize) {
+            comments = comments.subList(0, userPageSize);
+            next = Optional.of(Cursor.after(comments.get(userPageSize - 1)).encode());
+        }
+        return new Listing<>(comments, next);
     }
 
     public List<Subscriber> getSubscriptions(User user) {
@@ -59,16 +74,17 @@ public class Users {
         return database.getUserCommentVotes(user.id);
     }
 
-    public List<Post> getFeed(User user) {
+    public List<PostSummary> getFeed(User user) {
         var time = clock.time();
         var newerThan = time - feedMaxAgeDays * 24 * 3600;
-        var posts = database.getUserSubscriptionsPosts(user.id, newerThan);
-
-        ToDoubleFunction<Post> scoreFunction = p -> -Communities.postScore(p.points, time - p.sentTime);
-        posts = new ArrayList<>(posts);
-        posts.sort(Comparator.comparingDouble(scoreFunction));
-
-        return posts.stream().limit(feedMaxCount).collect(Collectors.toList());
+        var posts = feeds.get(user);
+
+        ToDoubleFunction<PostSummary> scoreFunction = p -> -Communities.postScore(p.points, time - p.sentTime);
+        return posts.stream()
+                .filter(p -> p.sentTime > newerThan)
+                .sorted(Comparator.comparingDouble(scoreFunction))
+                .limit(feedMaxCount)
+                .collect(Collectors.toList());
     }
 
     public User register(UserRegisterForm form) throws UserRegisterException {
@@ -112,6 +128,7 @@ public class Users {
 
     public void delete(User user) {
         database.deleteUser(user.id);
+        feeds.invalidate(user);
         emailer.emailUser(user, "deleted");
     }
 }
@@ -1,12 +1,11 @@
 package forum.views;
 
 import forum.entities.Community;
+import forum.entities.Listing;
 import lombok.Value;
 
-import java.util.List;
-
 @Value
 public class CommunityListView {
-    public long pageNumber;
-    public List<Community> communities;
+    public boolean firstPage;
+    public Listing<Community> communities;
 }
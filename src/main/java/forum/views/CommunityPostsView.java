@@ -1,14 +1,13 @@
 package forum.views;
 
 import forum.entities.Community;
-import forum.entities.Post;
+import forum.entities.Listing;
+import forum.entities.PostSummary;
 import lombok.Value;
 
-import java.util.List;
-
 @Value
 public class CommunityPostsView {
     public Community community;
-    public long day;
-    public List<Post> posts;
+    public boolean firstPage;
+    public Listing<PostSummary> posts;
 }
@@ -1,7 +1,7 @@
 package forum.views;
 
 import forum.entities.Community;
-import forum.entities.Post;
+import forum.entities.PostSummary;
 import forum.entities.Subscriber;
 import lombok.Value;
 
@@ -11,7 +11,7 @@ import java.util.Optional;
 @Value
 public class CommunityView {
     public Community community;
-    public List<Post> popularPosts;
+    public List<PostSummary> popularPosts;
     public long subscribers;
     public Optional<Subscriber> loggedInSubscriber;
 }
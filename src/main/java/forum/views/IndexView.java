@@ -1,6 +1,6 @@
 package forum.views;
 
-import forum.entities.Post;
+import forum.entities.PostSummary;
 import forum.entities.Subscriber;
 import forum.entities.User;
 import lombok.Value;
@@ -12,5 +12,5 @@ import java.util.Optional;
 public class IndexView {
     public Optional<User> loggedInUser;
     public List<Subscriber> subscriptions;
-    public List<Post> feed;
+    public List<PostSummary> feed;
 }
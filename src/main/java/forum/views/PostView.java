@@ -1,17 +1,17 @@
 package forum.views;
 
-import forum.entities.CommentTree;
+import forum.entities.CommentPage;
 import forum.entities.Post;
 import forum.entities.PostVote;
 import lombok.Value;
 
-import java.util.List;
 import java.util.Optional;
 
 @Value
 public class PostView {
     public Post post;
-    public List<CommentTree> comments;
+    public CommentPage comments;
+    public CommentPage.Order order;
     public long votes;
     public boolean loggedIn;
     public boolean sender;
@@ -9,8 +9,8 @@ import java.util.List;
 public class UserView {
     public User user;
     public boolean self;
-    public List<Post> posts;
-    public List<Comment> comments;
+    public Listing<PostSummary> posts;
+    public Listing<CommentSummary> comments;
     public List<PostVote> postVotes;
     public List<CommentVote> commentVotes;
 }
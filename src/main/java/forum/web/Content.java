@@ -0,0 +1,28 @@
+package forum.web;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+// zawartość odpowiedzi;
+// jest zapisywana przez serwer bezpośrednio do strumienia wyjściowego odpowiedzi,
+// więc strona generowana z szablonu nie musi być w całości budowana w pamięci
+public interface Content {
+    void write(Writer writer) throws IOException;
+
+    // zawartość w postaci gotowego napisu
+    static Content of(String text) {
+        return writer -> writer.write(text);
+    }
+
+    // zapisanie całej zawartości do napisu
+    default String text() {
+        var writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return writer.toString();
+    }
+}
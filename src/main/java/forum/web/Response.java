@@ -1,20 +1,30 @@
 package forum.web;
 
+import lombok.AllArgsConstructor;
 import lombok.Value;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 // dane o odpowiedzi (HTTP) przekazywane serwerowi
 @Value
+@AllArgsConstructor
 public class Response {
     public Status status;
-    public String content;
+    public Content content;
+    // identyfikator wersji zawartości (w HTTP - ETag); jeśli klient ma już tę wersję,
+    // serwer może odpowiedzieć, że zawartość się nie zmieniła, bez jej generowania
+    public Optional<String> etag;
     public Map<String, String> newCookies = new HashMap<>();
 
+    public Response(Status status, Content content) {
+        this(status, content, Optional.empty());
+    }
+
     public enum Status {
         Ok,
-        Redirect, // w przypadku tego statusu pole content zawiera adres docelowy oraz parametry w oddzielnych linijkach
+        Redirect, // w przypadku tego statusu content zawiera adres docelowy oraz parametry w oddzielnych linijkach
         NotFound,
         BadRequest,
         Forbidden,
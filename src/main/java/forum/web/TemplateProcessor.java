@@ -1,10 +1,14 @@
 package forum.web;
 
+import java.io.IOException;
+import java.io.Writer;
+
 // interfejs do procesora szablonów;
 // jest on odpowiedzialny za generowanie zawartości strony na podstawie szablonu i konkretnych danych;
 // konkretne dane są obiektem z pakietu forum.views;
 // nazwy szablonów, które muszą być zrealizowane to nazwy klas z pakietu forum.views zamienione z CamelCase na hyphen-case;
-// wygląd strony i język szablonów jest częścią implementacji
+// wygląd strony i język szablonów jest częścią implementacji;
+// strona jest zapisywana do writer w trakcie generowania, a nie zwracana w całości
 public interface TemplateProcessor {
-    String process(String template, Object data); // nazwa szablonu i konkretne dane
+    void process(String template, Object data, Writer writer) throws IOException; // nazwa szablonu i konkretne dane
 }
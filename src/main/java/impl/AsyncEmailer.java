@@ -0,0 +1,246 @@
+package impl;
+
+import forum.entities.User;
+import forum.services.Emailer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// sztuczne wysyłanie e-maili (jak FakeEmailer) wykonywane przez jeden wątek piszący;
+// wysyłający wstawia wiadomość do ograniczonej kolejki, a wątek piszący zbiera wszystkie oczekujące wiadomości
+// (co najwyżej maxBatchSize) i trwale dopisuje je razem do pliku outbox (group commit);
+// wysyłający czeka tylko na ten zapis, więc po powrocie z emailUser/emailAdmin wiadomość nie zginie przy awarii,
+// a jedno wymuszenie zapisu na dysk przypada na całą grupę wysyłających;
+// następnie wątek piszący wysyła grupę (dopisuje ją do file) i czyści outbox;
+// wiadomości, które zostały w outboxie po awarii, są wysyłane przy starcie, więc mogą zostać wysłane dwa razy;
+// jeśli zapis do outboxa nie uda się maxOutboxAttempts razy, wysyłający dostają wyjątek;
+// pełna kolejka blokuje wysyłających (waits() mówi, ile razy to się zdarzyło);
+// po close() wiadomości są zapisywane i wysyłane od razu przez wysyłającego, bo wątku piszącego już nie ma
+public class AsyncEmailer implements Emailer {
+    private static final String adminAddress = "admin";
+    private static final DateTimeFormatter dateFormat =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final long pollMillis = 100;
+    private static final int maxOutboxAttempts = 3;
+    private static final long outboxRetryMillis = 100;
+
+    private final BlockingQueue<Email> queue;
+    private final int maxBatchSize;
+    private final FileChannel emails;
+    private final FileChannel outbox;
+    private final Object fileLock = new Object(); // chroni pliki i undelivered po close()
+    private final List<String> undelivered = new ArrayList<>(); // wiadomości z outboxa, których nie udało się wysłać
+    private final Thread writer;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private volatile boolean closing = false;
+
+    public AsyncEmailer(String file, String outboxFile, int queueSize, int maxBatchSize) {
+        queue = new ArrayBlockingQueue<>(queueSize);
+        this.maxBatchSize = maxBatchSize;
+        try {
+            emails = FileChannel.open(Path.of(file),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            outbox = FileChannel.open(Path.of(outboxFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            undelivered.addAll(Files.readAllLines(Path.of(outboxFile), StandardCharsets.UTF_8));
+            outbox.position(outbox.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        writer = new Thread(this::run, "email-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // liczba wysłanych wiadomości
+    public long sent() {
+        return sent.sum();
+    }
+
+    // liczba grup, w których zostały wysłane
+    public long batches() {
+        return batches.sum();
+    }
+
+    // liczba wysyłających, którzy musieli czekać na miejsce w pełnej kolejce
+    public long waits() {
+        return waits.sum();
+    }
+
+    // liczba wiadomości czekających w kolejce
+    public int queued() {
+        return queue.size();
+    }
+
+    // zatrzymanie wątku piszącego po zapisaniu i wysłaniu wiadomości, które są już w kolejce
+    public void close() {
+        closing = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void emailUser(User user, String message) {
+        user.email.ifPresent(s -> send(s, message));
+    }
+
+    @Override
+    public void emailAdmin(String message) {
+        send(adminAddress, message);
+    }
+
+    private void send(String address, String message) {
+        var time = dateFormat.format(Instant.now());
+        // wiadomość jest zapisywana w jednej linii, bo outbox jest czytany linia po linii
+        var email = new Email(time + "\t" + address + "\t" + message.replace('\n', ' '));
+        if (closing) {
+            sendNow(email);
+            return;
+        }
+        if (!queue.offer(email)) {
+            waits.increment();
+            try {
+                queue.put(email);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        // wątek piszący mógł sprawdzić po raz ostatni, że kolejka jest pusta, zanim wiadomość do niej trafiła
+        if (closing && queue.remove(email)) {
+            sendNow(email);
+            return;
+        }
+
+        join(email);
+    }
+
+    private void sendNow(Email email) {
+        var batch = List.of(email);
+        synchronized (fileLock) {
+            if (persist(batch))
+                deliver();
+        }
+        join(email);
+    }
+
+    private static void join(Email email) {
+        try {
+            email.persisted.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<Email>(maxBatchSize);
+        synchronized (fileLock) {
+            if (!undelivered.isEmpty())
+                deliver();
+        }
+        while (!closing || !queue.isEmpty()) {
+            try {
+                var email = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (email == null)
+                    continue;
+                batch.add(email);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            synchronized (fileLock) {
+                if (persist(batch))
+                    deliver();
+            }
+            batch.clear();
+        }
+    }
+
+    // trwałe dopisanie grupy do outboxa i powiadomienie czekających wysyłających;
+    // po nieudanej próbie częściowo zapisana grupa jest obcinana, aby ponowna próba jej nie powieliła
+    private boolean persist(List<Email> batch) {
+        var lines = new ArrayList<String>(batch.size());
+        batch.forEach(email -> lines.add(email.line));
+        for (var attempt = 1; ; attempt++) {
+            var position = -1L;
+            try {
+                position = outbox.position();
+                write(outbox, lines);
+                break;
+            } catch (IOException e) {
+                e.printStackTrace();
+                try {
+                    if (position >= 0)
+                        outbox.truncate(position);
+                } catch (IOException ignored) { }
+                if (attempt == maxOutboxAttempts) {
+                    var error = new RuntimeException("email outbox write failed", e);
+                    batch.forEach(email -> email.persisted.completeExceptionally(error));
+                    return false;
+                }
+                try {
+                    Thread.sleep(outboxRetryMillis);
+                } catch (InterruptedException ignored) { }
+            }
+        }
+        undelivered.addAll(lines);
+        batch.forEach(email -> email.persisted.complete(null));
+        return true;
+    }
+
+    private void deliver() {
+        try {
+            write(emails, undelivered);
+            outbox.truncate(0);
+            outbox.force(false);
+        } catch (IOException e) {
+            // wiadomości zostają w outboxie i zostaną wysłane razem z następną grupą albo przy starcie
+            e.printStackTrace();
+            return;
+        }
+        sent.add(undelivered.size());
+        batches.increment();
+        undelivered.clear();
+    }
+
+    private static void write(FileChannel channel, List<String> lines) throws IOException {
+        var text = new StringBuilder();
+        for (var line : lines)
+            text.append(line).append(System.lineSeparator());
+        var buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        channel.force(false);
+    }
+
+    private static class Email {
+        private final String line;
+        private final CompletableFuture<Void> persisted = new CompletableFuture<>();
+
+        private Email(String line) {
+            this.line = line;
+        }
+    }
+}
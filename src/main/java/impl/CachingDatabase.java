@@ -0,0 +1,160 @@
+package impl;
+
+import forum.databases.Database;
+import forum.entities.Community;
+import forum.entities.Post;
+import forum.entities.User;
+
+import java.util.Optional;
+
+// dekorator bazy danych z pamięcią podręczną użytkowników, społeczności i postów,
+// czyli obiektów czytanych przy prawie każdym zapytaniu (np. przez dekoratory kontrolerów), a rzadko zmienianych;
+// każda metoda zmieniająca dane unieważnia odpowiednie wpisy (usunięcie użytkownika albo społeczności,
+// które kaskadowo usuwa inne rekordy, czyści całą pamięć);
+// zagnieżdżeni nadawcy, właściciele i społeczności są przy odczycie brani z pamięci podręcznej,
+// więc zmiana np. punktów użytkownika nie wymaga unieważniania jego postów
+public class CachingDatabase extends DelegatingDatabase {
+    private final LruCache<Long, User> users;
+    private final LruCache<String, Long> userIds; // nazwy użytkowników i społeczności nie zmieniają się
+    private final LruCache<Long, Community> communities;
+    private final LruCache<String, Long> communityIds;
+    private final LruCache<Long, Post> posts;
+
+    public CachingDatabase(Database database, int capacity) {
+        super(database);
+        users = new LruCache<>(capacity);
+        userIds = new LruCache<>(capacity);
+        communities = new LruCache<>(capacity);
+        communityIds = new LruCache<>(capacity);
+        posts = new LruCache<>(capacity);
+    }
+
+    // liczba odczytów obsłużonych przez pamięć podręczną
+    public long hits() {
+        return users.hits() + userIds.hits() + communities.hits() + communityIds.hits() + posts.hits();
+    }
+
+    // liczba odczytów, które musiały sięgnąć do bazy
+    public long misses() {
+        return users.misses() + userIds.misses() + communities.misses() + communityIds.misses() + posts.misses();
+    }
+
+    private void clear() {
+        users.clear();
+        userIds.clear();
+        communities.clear();
+        communityIds.clear();
+        posts.clear();
+    }
+
+    // podmiana zagnieżdżonych obiektów na aktualne obiekty z pamięci podręcznej;
+    // jeśli nic się nie zmieniło, zwracany jest ten sam obiekt
+
+    private Community resolve(Community community) {
+        var owner = getUser(community.owner.id).orElse(community.owner);
+        if (owner == community.owner)
+            return community;
+        return new Community(community.id, community.name, community.description, owner, community.createdTime);
+    }
+
+    private Post resolve(Post post) {
+        var sender = getUser(post.sender.id).orElse(post.sender);
+        var community = getCommunity(post.community.id).orElse(post.community);
+        if (sender == post.sender && community == post.community)
+            return post;
+        return new Post(post.id, post.title, post.content, sender, community, post.sentTime, post.points, post.editedTime);
+    }
+
+    // użytkownicy
+
+    @Override
+    public Optional<User> getUser(long id) {
+        return users.get(id, database::getUser);
+    }
+
+    @Override
+    public Optional<User> getUserByName(String name) {
+        return userIds.get(name, n -> database.getUserByName(n).map(u -> u.id)).flatMap(this::getUser);
+    }
+
+    @Override
+    public void setUserEmail(long id, Optional<String> email) {
+        super.setUserEmail(id, email);
+        users.invalidate(id);
+    }
+
+    @Override
+    public void setUserPassword(long id, byte[] passwordHash, byte[] passwordSalt) {
+        super.setUserPassword(id, passwordHash, passwordSalt);
+        users.invalidate(id);
+    }
+
+    @Override
+    public void addUserPoints(long id, long points) {
+        super.addUserPoints(id, points);
+        users.invalidate(id);
+    }
+
+    @Override
+    public void deleteUser(long id) {
+        super.deleteUser(id);
+        clear();
+    }
+
+    // społeczności
+
+    @Override
+    public Optional<Community> getCommunity(long id) {
+        return communities.get(id, i -> database.getCommunity(i).map(this::resolve)).map(this::resolve);
+    }
+
+    @Override
+    public Optional<Community> getCommunityByName(String name) {
+        return communityIds.get(name, n -> database.getCommunityByName(n).map(c -> c.id)).flatMap(this::getCommunity);
+    }
+
+    @Override
+    public void setCommunityDescription(long id, String description) {
+        super.setCommunityDescription(id, description);
+        communities.invalidate(id);
+    }
+
+    @Override
+    public void deleteCommunity(long id) {
+        super.deleteCommunity(id);
+        clear();
+    }
+
+    // posty
+
+    @Override
+    public Optional<Post> getPost(long id) {
+        return posts.get(id, i -> database.getPost(i).map(this::resolve)).map(this::resolve);
+    }
+
+    @Override
+    public void editPost(long id, String content, long time) {
+        super.editPost(id, content, time);
+        posts.invalidate(id);
+    }
+
+    @Override
+    public long votePost(long voterId, long postId, boolean upvote, long time) {
+        var points = super.votePost(voterId, postId, upvote, time);
+        posts.invalidate(postId);
+        return points;
+    }
+
+    @Override
+    public long unvotePost(long voterId, long postId) {
+        var points = super.unvotePost(voterId, postId);
+        posts.invalidate(postId);
+        return points;
+    }
+
+    @Override
+    public void deletePost(long id) {
+        super.deletePost(id);
+        posts.invalidate(id);
+    }
+}
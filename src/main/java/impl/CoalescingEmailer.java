@@ -0,0 +1,130 @@
+package impl;
+
+import forum.entities.User;
+import forum.services.Emailer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// dekorator wysyłania e-maili łączący powiadomienia do jednego użytkownika w zbiorczą wiadomość;
+// wiadomości do użytkowników, których rodzaj (część przed ':', np. "reply") jest w kinds, są zbierane
+// przez windowMillis od pierwszej z nich, a potem wysyłane jako jedna wiadomość
+// "digest:" + lista "wiadomość*liczba" (np. "digest:reply:12*40,comment:3*2");
+// pojedyncza wiadomość z okna jest wysyłana bez zmian, a pozostałe wiadomości (również do administratora) od razu
+public class CoalescingEmailer implements Emailer {
+    private final Emailer emailer;
+    private final Set<String> kinds;
+    private final long windowMillis;
+    private final ScheduledExecutorService flusher;
+    private final Map<Long, Digest> digests = new ConcurrentHashMap<>(); // id użytkownika -> zebrane wiadomości
+    private final LongAdder eventsIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    public CoalescingEmailer(Emailer emailer, Set<String> kinds, long windowMillis) {
+        this.emailer = emailer;
+        this.kinds = kinds;
+        this.windowMillis = windowMillis;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "email-digest");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // liczba wiadomości przekazanych do wysłania
+    public long eventsIn() {
+        return eventsIn.sum();
+    }
+
+    // liczba faktycznie wysłanych wiadomości
+    public long messagesOut() {
+        return messagesOut.sum();
+    }
+
+    // liczba wiadomości pominiętych, bo użytkownik nie podał adresu e-mail (są wliczone w eventsIn)
+    public long skipped() {
+        return skipped.sum();
+    }
+
+    // wysłanie wszystkich zebranych wiadomości bez czekania na koniec ich okien
+    public void close() {
+        flusher.shutdownNow();
+        try {
+            // wysyłanie, które właśnie trwa w wątku okien, musi się zakończyć przed powrotem
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        digests.keySet().forEach(this::flush);
+    }
+
+    @Override
+    public void emailUser(User user, String message) {
+        eventsIn.increment();
+        if (user.email.isEmpty()) {
+            skipped.increment();
+            return;
+        }
+        if (!kinds.contains(message.split(":", 2)[0])) {
+            messagesOut.increment();
+            emailer.emailUser(user, message);
+            return;
+        }
+
+        // compute blokuje wpis, więc wiadomość nie może trafić do zbioru, który właśnie jest wysyłany
+        try {
+            digests.compute(user.id, (id, digest) -> {
+                if (digest == null) {
+                    digest = new Digest();
+                    flusher.schedule(() -> flush(id), windowMillis, TimeUnit.MILLISECONDS);
+                }
+                digest.user = user;
+                digest.counts.merge(message, 1, Integer::sum);
+                return digest;
+            });
+        } catch (RejectedExecutionException e) {
+            // po close() nie ma już okien, więc wiadomość jest wysyłana od razu
+            messagesOut.increment();
+            emailer.emailUser(user, message);
+        }
+    }
+
+    @Override
+    public void emailAdmin(String message) {
+        eventsIn.increment();
+        messagesOut.increment();
+        emailer.emailAdmin(message);
+    }
+
+    private void flush(long id) {
+        var digest = digests.remove(id);
+        if (digest == null)
+            return;
+        messagesOut.increment();
+        if (digest.counts.size() == 1 && digest.counts.values().iterator().next() == 1) {
+            emailer.emailUser(digest.user, digest.counts.keySet().iterator().next());
+            return;
+        }
+
+        var message = new StringBuilder("digest:");
+        digest.counts.forEach((event, count) -> {
+            if (message.length() > "digest:".length())
+                message.append(',');
+            message.append(event).append('*').append(count);
+        });
+        emailer.emailUser(digest.user, message.toString());
+    }
+
+    private static class Digest {
+        private User user; // najnowsze dane użytkownika, bo mógł w międzyczasie zmienić adres
+        private final Map<String, Integer> counts = new LinkedHashMap<>(); // wiadomość -> liczba wystąpień
+    }
+}
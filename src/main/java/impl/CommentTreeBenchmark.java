@@ -0,0 +1,106 @@
+package impl;
+
+import forum.entities.Comment;
+import forum.entities.CommentTree;
+import forum.logic.Comments;
+import forum.logic.ForumFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Random;
+
+// czas wczytania drzewa komentarzy (Comments.getTree) dla wątku z 10000 odpowiedzi pod jednym komentarzem;
+// wątek "wide" ma odpowiedzi do losowych wcześniejszych komentarzy (płytkie, rozgałęzione drzewo),
+// a wątek "deep" odpowiedzi do jednego z kilku ostatnich komentarzy, więc drzewo jest przycinane na maxTreeDepth;
+// program wypisuje medianę i 99. percentyl czasu getTree oraz osobno czas samego CommentTree.build;
+// uruchamiany przez zadanie gradle commentTreeBenchmark
+class CommentTreeBenchmark {
+    private static final int replies = 10000;
+    private static final int maxTreeDepth = 100; // jak Comments.maxTreeDepth
+    private static final int warmupRuns = 20;
+    private static final int runs = 100;
+
+    public static void main(String[] args) throws IOException {
+        var directory = Files.createTempDirectory("forum-comment-tree-benchmark");
+        try {
+            var database = new SQLiteDatabase(directory.resolve("forum.db").toString(), 1);
+            var wide = setup(database, "wide", replies);
+            var deep = setup(database, "deep", 5);
+            var comments = new ForumFactory(database, new SystemClock(), new DefaultValidator(),
+                    new SHA1Authenticator(), new FakeEmailer()).newForum().comments();
+
+            run("wide thread", comments, database, wide);
+            run("deep thread", comments, database, deep);
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (var file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // komentarz z replies odpowiedziami; każda odpowiada na jeden z parentWindow ostatnich komentarzy wątku
+    private static Comment setup(SQLiteDatabase database, String name, int parentWindow) {
+        var random = new Random(1);
+        var root = new Comment[1];
+        database.batch(() -> {
+            var user = database.getUserByName("user")
+                    .orElseGet(() -> database.newUser("user", Optional.empty(), 0, new byte[0], new byte[0]));
+            var community = database.newCommunity(name, "", user.id, 0);
+            var post = database.newPost(user.id, community.id, name, "content", 0);
+            root[0] = database.newComment(user.id, post.id, OptionalLong.empty(), "root", 0);
+            var ids = new ArrayList<Long>();
+            ids.add(root[0].id);
+            for (var i = 1; i <= replies; i++) {
+                var parent = ids.get(Math.max(0, ids.size() - 1 - random.nextInt(parentWindow)));
+                ids.add(database.newComment(user.id, post.id, OptionalLong.of(parent), "reply " + i, i).id);
+            }
+        });
+        return root[0];
+    }
+
+    private static void run(String name, Comments comments, SQLiteDatabase database, Comment root) {
+        for (var i = 0; i < warmupRuns; i++)
+            comments.getTree(root);
+
+        var times = new long[runs];
+        var size = 0;
+        for (var i = 0; i < runs; i++) {
+            var start = System.nanoTime();
+            size = size(comments.getTree(root));
+            times[i] = System.nanoTime() - start;
+        }
+
+        var descendants = database.getCommentDescendants(root.id, maxTreeDepth, replies);
+        var buildTimes = new long[runs];
+        for (var i = 0; i < warmupRuns + runs; i++) {
+            var start = System.nanoTime();
+            CommentTree.build(List.of(root), descendants);
+            if (i >= warmupRuns)
+                buildTimes[i - warmupRuns] = System.nanoTime() - start;
+        }
+
+        System.out.printf("%s: %d comments in tree, getTree p50 %.2f ms, p99 %.2f ms, build p50 %.2f ms%n",
+                name, size, percentile(times, 50), percentile(times, 99), percentile(buildTimes, 50));
+    }
+
+    private static int size(CommentTree tree) {
+        var size = 1;
+        for (var child : tree.children)
+            size += size(child);
+        return size;
+    }
+
+    private static double percentile(long[] times, int percent) {
+        var sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)] / 1e6;
+    }
+}
@@ -0,0 +1,154 @@
+package impl;
+
+import forum.services.Clock;
+import forum.web.Request;
+import forum.web.Response;
+import forum.web.Session;
+import forum.web.SessionManager;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// menedżer sesji trzymający je w pamięci (jak SimpleSessionManager), ale bez wspólnej blokady:
+// sesje są w ConcurrentHashMap, a identyfikatory losuje osobny SecureRandom w każdym wątku;
+// sesja wygasa idleTtlSeconds po ostatnim użyciu albo absoluteTtlSeconds po utworzeniu,
+// a wygasłe sesje co sweepIntervalSeconds usuwa wątek w tle;
+// po przekroczeniu maxSessions usuwane są najdawniej używane sesje (do 90% maxSessions naraz,
+// aby sortowanie po czasie użycia nie odbywało się przy każdej nowej sesji)
+public class ConcurrentSessionManager implements SessionManager {
+    private final Clock clock;
+    private final long idleTtlSeconds;
+    private final long absoluteTtlSeconds;
+    private final int maxSessions;
+    private final Map<Long, Entry> sessions = new ConcurrentHashMap<>();
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder created = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public ConcurrentSessionManager(Clock clock, long idleTtlSeconds, long absoluteTtlSeconds,
+                                    int maxSessions, long sweepIntervalSeconds) {
+        this.clock = clock;
+        this.idleTtlSeconds = idleTtlSeconds;
+        this.absoluteTtlSeconds = absoluteTtlSeconds;
+        this.maxSessions = maxSessions;
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    // liczba utworzonych sesji
+    public long created() {
+        return created.sum();
+    }
+
+    // liczba sesji usuniętych po wygaśnięciu
+    public long expired() {
+        return expired.sum();
+    }
+
+    // liczba sesji usuniętych z powodu przekroczenia maxSessions
+    public long evicted() {
+        return evicted.sum();
+    }
+
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    @Override
+    public Session getSession(Request request) {
+        var now = clock.time();
+        if (request.cookies.containsKey("session")) { // odczytanie identyfikatora sesji z ciastka
+            try {
+                var id = Long.parseLong(request.cookies.get("session"));
+                var entry = sessions.get(id);
+                if (entry != null && !isExpired(entry, now)) {
+                    if (entry.accessTime != now) // czas jest w sekundach, więc zwykle nie trzeba go zapisywać
+                        entry.accessTime = now;
+                    return entry.session;
+                }
+                if (entry != null && sessions.remove(id, entry))
+                    expired.increment();
+            } catch (NumberFormatException ignored) { }
+        }
+
+        Entry entry;
+        do { // znalezienie wolnego losowego identyfikatora sesji
+            entry = new Entry(new Session(random.get().nextLong()), now);
+        } while (sessions.putIfAbsent(entry.session.id, entry) != null);
+        created.increment();
+
+        if (sessions.size() > maxSessions)
+            evict();
+        return entry.session;
+    }
+
+    // tak jak w SimpleSessionManager dane sesji są już w pamięci, więc wystarczy zapisać identyfikator
+    @Override
+    public void saveSession(Response response, Session session) {
+        response.newCookies.put("session", Long.toString(session.id)); // zapisanie identyfikatora sesji do ciastka
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.accessTime >= idleTtlSeconds || now - entry.createdTime >= absoluteTtlSeconds;
+    }
+
+    private void sweep() {
+        var now = clock.time();
+        sessions.forEach((id, entry) -> {
+            if (isExpired(entry, now) && sessions.remove(id, entry))
+                expired.increment();
+        });
+    }
+
+    // tylko jeden wątek naraz usuwa sesje, a pozostałe, które w tym czasie przekroczą limit, nie czekają na niego
+    private void evict() {
+        if (!evictionLock.tryLock())
+            return;
+        try {
+            var excess = sessions.size() - maxSessions * 9 / 10;
+            if (sessions.size() <= maxSessions || excess <= 0)
+                return;
+            // czasy użycia są kopiowane przed sortowaniem, bo inne wątki mogą je w tym czasie zmieniać
+            var entries = new ArrayList<Map.Entry<Long, Entry>>();
+            sessions.values().forEach(entry -> entries.add(Map.entry(entry.accessTime, entry)));
+            entries.sort(Map.Entry.comparingByKey());
+            for (var i = 0; i < excess && i < entries.size(); i++) {
+                var entry = entries.get(i).getValue();
+                if (sessions.remove(entry.session.id, entry))
+                    evicted.increment();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static class Entry {
+        private final Session session;
+        private final long createdTime;
+        private volatile long accessTime;
+
+        private Entry(Session session, long time) {
+            this.session = session;
+            createdTime = time;
+            accessTime = time;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package impl;
+
+import forum.controllers.CommentControllers;
+import forum.controllers.CommunityControllers;
+import forum.controllers.Controller;
+import forum.controllers.ControllerMethod;
+import forum.controllers.PostControllers;
+import forum.controllers.RequestContext;
+import forum.controllers.Responses;
+import forum.controllers.UserControllers;
+import forum.controllers.annotations.Action;
+import forum.controllers.decorators.Decorators;
+import forum.logic.Forum;
+import forum.logic.ForumFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+// porównanie obsługi zapytań przez pełne łańcuchy dekoratorów (Decorators.decorate) zakończone kontrolerem
+// wywoływanym przez refleksję (tak jak przed wprowadzeniem wygenerowanych wywołań) i przez ControllerMethod;
+// zapytania są kierowane na przemian do kilku kontrolerów, tak jak w działającym serwerze,
+// a dane potrzebne dekoratorom są w CachingDatabase, aby czas zapytań do bazy nie przesłaniał różnicy;
+// program wypisuje czas obsługi jednego zapytania; uruchamiany przez zadanie gradle controllerBenchmark
+class ControllerBenchmark {
+    private static final int rounds = 5;
+    private static final int warmupRequests = 200000;
+    private static final int requests = 2000000;
+
+    public static void main(String[] args) throws IOException {
+        var directory = Files.createTempDirectory("forum-controller-benchmark");
+        try {
+            var sqlite = new SQLiteDatabase(directory.resolve("forum.db").toString(), 1);
+            setup(sqlite);
+            var database = new CachingDatabase(sqlite, 100);
+            var forum = new ForumFactory(database, new SystemClock(), new DefaultValidator(),
+                    new SHA1Authenticator(), new FakeEmailer()).newForum();
+
+            var reflective = new ArrayList<Route>();
+            var generated = new ArrayList<Route>();
+            addRoute(reflective, generated, UserControllers.class, "login", Map.of());
+            addRoute(reflective, generated, PostControllers.class, "sendPost", Map.of("community", "1"));
+            addRoute(reflective, generated, CommentControllers.class, "sendComment", Map.of("post", "1"));
+            addRoute(reflective, generated, CommentControllers.class, "sendReply", Map.of("comment", "1"));
+            addRoute(reflective, generated, CommunityControllers.class, "createCommunity", Map.of());
+
+            for (var round = 1; round <= rounds; round++) {
+                run("round " + round + ", reflection", forum, reflective);
+                run("round " + round + ", generated invokers", forum, generated);
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (var file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // użytkownik 1, jego społeczność 1, post 1 i komentarz 1
+    private static void setup(SQLiteDatabase database) {
+        database.batch(() -> {
+            database.newUser("user", Optional.empty(), 0, new byte[0], new byte[0]);
+            database.newCommunity("benchmark", "", 1, 0);
+            database.newPost(1, 1, "post", "content", 0);
+            database.newComment(1, 1, OptionalLong.empty(), "comment", 0);
+        });
+    }
+
+    private static void addRoute(List<Route> reflective, List<Route> generated, Class<?> cls, String methodName,
+                                 Map<String, String> parameters) {
+        reflective.add(new Route(ReflectiveController.build(cls, methodName), parameters));
+        generated.add(new Route(ControllerMethod.build(cls, methodName), parameters));
+    }
+
+    private static void run(String name, Forum forum, List<Route> routes) {
+        handle(forum, routes, warmupRequests);
+        var start = System.nanoTime();
+        var result = handle(forum, routes, requests);
+        var nanos = System.nanoTime() - start;
+        System.out.printf("%s: %.0f ns per request (%d)%n", name, (double) nanos / requests, result);
+    }
+
+    // wynik jest zwracany, aby JIT nie mógł pominąć obsługi zapytań
+    private static long handle(Forum forum, List<Route> routes, int count) {
+        var responses = new BenchmarkResponses();
+        var result = 0L;
+        for (var i = 0; i < count; i++) {
+            var route = routes.get(i % routes.size());
+            var sessionStore = new HashMap<String, String>();
+            sessionStore.put("user", "1");
+            var request = new RequestContext(route.parameters, sessionStore);
+            result += route.controller.control(forum, request, responses).hashCode();
+        }
+        return result;
+    }
+
+    private static class Route {
+        private final Controller<Object> controller;
+        private final Map<String, String> parameters;
+
+        private Route(Controller<Object> controller, Map<String, String> parameters) {
+            this.controller = controller;
+            this.parameters = parameters;
+        }
+    }
+
+    // dawna implementacja ControllerMethod: Constructor.newInstance i Method.invoke przy każdym zapytaniu
+    private static class ReflectiveController<R> implements Controller<R> {
+        private final Constructor<?> constructor;
+        private final Method method;
+
+        private ReflectiveController(Constructor<?> constructor, Method method) {
+            this.constructor = constructor;
+            this.method = method;
+        }
+
+        static <R> Controller<R> build(Class<?> cls, String methodName) {
+            try {
+                var constructor = cls.getConstructor(Forum.class, RequestContext.class, Responses.class);
+                var method = cls.getMethod(methodName);
+                Controller<R> controller = new ReflectiveController<>(constructor, method);
+                for (var annotation : method.getAnnotations())
+                    controller = Decorators.decorate(controller, annotation);
+                return controller;
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Type type() {
+            return method.isAnnotationPresent(Action.class) ? Type.Action : Type.Page;
+        }
+
+        @Override
+        public String name() {
+            return method.getName();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public R control(Forum forum, RequestContext request, Responses<R> responses) {
+            try {
+                var object = constructor.newInstance(forum, request, responses);
+                return (R) method.invoke(object);
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // odpowiedzi nie są renderowane; mierzona jest tylko obsługa zapytania przez dekoratory i kontroler
+    private static class BenchmarkResponses implements Responses<Object> {
+        @Override
+        public Object view(String template, Object data) {
+            return template;
+        }
+
+        @Override
+        public Object redirect(String controllerName, String... parameters) {
+            return controllerName;
+        }
+
+        @Override
+        public Object notFound(String what) {
+            return what;
+        }
+
+        @Override
+        public Object badRequest(String message) {
+            return message;
+        }
+
+        @Override
+        public Object forbidden(String message) {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package impl;
+
+import forum.services.Clock;
+import forum.web.Request;
+import forum.web.Response;
+import forum.web.Session;
+import forum.web.SessionManager;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+// menedżer sesji bez stanu po stronie serwera: całe Session.store jest zapisywane w ciastku,
+// więc dowolny serwer może obsłużyć dowolne zapytanie;
+// ciastko zawiera identyfikator sesji, czas jej utworzenia, czas zapisu i dane (w postaci k=v&k=v),
+// opcjonalnie zaszyfrowane AES/CTR, a na końcu podpis HMAC-SHA256 całości, więc użytkownik nie może go zmienić;
+// sesja wygasa idleTtlSeconds po ostatnim zapisie albo absoluteTtlSeconds po utworzeniu;
+// czas utworzenia jest przenoszony od getSession do saveSession w Session.store pod kluczem createdKey;
+// ciastka dłuższe niż maxCookieLength są odrzucane
+// (zapisanie zbyt dużej sesji to błąd, bo przeglądarki i tak by takiego ciastka nie przyjęły);
+// sesji nie da się unieważnić przed wygaśnięciem - po wylogowaniu stare ciastko nadal jest ważne
+public class CookieSessionManager implements SessionManager {
+    private static final String cookieName = "session";
+    private static final int macLength = 32;
+    private static final int ivLength = 16;
+    private static final int headerLength = 3 * Long.BYTES; // identyfikator sesji, czas utworzenia i czas zapisu
+    static final String createdKey = "sessionCreated";
+
+    private final Clock clock;
+    private final long idleTtlSeconds;
+    private final long absoluteTtlSeconds;
+    private final int maxCookieLength;
+    private final boolean encrypt;
+    private final SecretKeySpec macKey;
+    private final SecretKeySpec encryptionKey;
+    private final ThreadLocal<Mac> mac;
+    private final ThreadLocal<Cipher> cipher;
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+
+    // klucze do podpisu i szyfrowania są wyprowadzane z secret, który musi być wspólny dla wszystkich serwerów
+    public CookieSessionManager(byte[] secret, Clock clock, long idleTtlSeconds, long absoluteTtlSeconds,
+                                int maxCookieLength, boolean encrypt) {
+        this.clock = clock;
+        this.idleTtlSeconds = idleTtlSeconds;
+        this.absoluteTtlSeconds = absoluteTtlSeconds;
+        this.maxCookieLength = maxCookieLength;
+        this.encrypt = encrypt;
+        try {
+            var derive = Mac.getInstance("HmacSHA256");
+            derive.init(new SecretKeySpec(secret, "HmacSHA256"));
+            macKey = new SecretKeySpec(derive.doFinal("mac".getBytes(StandardCharsets.UTF_8)), "HmacSHA256");
+            var encryptionBytes = derive.doFinal("encryption".getBytes(StandardCharsets.UTF_8));
+            encryptionKey = new SecretKeySpec(Arrays.copyOf(encryptionBytes, 16), "AES");
+            Cipher.getInstance("AES/CTR/NoPadding"); // sprawdzenie dostępności algorytmów przy starcie
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+        mac = ThreadLocal.withInitial(() -> {
+            try {
+                var mac = Mac.getInstance("HmacSHA256");
+                mac.init(macKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        cipher = ThreadLocal.withInitial(() -> {
+            try {
+                return Cipher.getInstance("AES/CTR/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Override
+    public Session getSession(Request request) {
+        return Optional.ofNullable(request.cookies.get(cookieName))
+                .flatMap(this::decode)
+                .orElseGet(() -> new Session(random.get().nextLong()));
+    }
+
+    @Override
+    public void saveSession(Response response, Session session) {
+        var cookie = encode(session);
+        if (cookie.length() > maxCookieLength)
+            throw new RuntimeException("session cookie too large: " + cookie.length() + " characters");
+        response.newCookies.put(cookieName, cookie);
+    }
+
+    private String encode(Session session) {
+        var now = clock.time();
+        var store = new HashMap<>(session.store);
+        var created = createdTime(store.remove(createdKey), now);
+        var dataBytes = encodeStore(store).getBytes(StandardCharsets.UTF_8);
+
+        var payload = ByteBuffer.allocate(headerLength + dataBytes.length)
+                .putLong(session.id).putLong(created).putLong(now).put(dataBytes).array();
+        if (encrypt)
+            payload = crypt(Cipher.ENCRYPT_MODE, payload);
+
+        var signature = mac.get().doFinal(payload);
+        var cookie = Arrays.copyOf(payload, payload.length + macLength);
+        System.arraycopy(signature, 0, cookie, payload.length, macLength);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cookie);
+    }
+
+    private Optional<Session> decode(String cookie) {
+        if (cookie.length() > maxCookieLength)
+            return Optional.empty();
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cookie);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (bytes.length < headerLength + macLength + (encrypt ? ivLength : 0))
+            return Optional.empty();
+
+        var payload = Arrays.copyOf(bytes, bytes.length - macLength);
+        var signature = Arrays.copyOfRange(bytes, payload.length, bytes.length);
+        if (!MessageDigest.isEqual(signature, mac.get().doFinal(payload))) // porównanie w stałym czasie
+            return Optional.empty();
+        if (encrypt)
+            payload = crypt(Cipher.DECRYPT_MODE, payload);
+
+        var buffer = ByteBuffer.wrap(payload);
+        var session = new Session(buffer.getLong());
+        var created = buffer.getLong();
+        var saved = buffer.getLong();
+        var now = clock.time();
+        if (now - saved >= idleTtlSeconds || now - created >= absoluteTtlSeconds)
+            return Optional.empty();
+        decodeStore(new String(payload, headerLength, payload.length - headerLength, StandardCharsets.UTF_8),
+                session.store);
+        session.store.put(createdKey, Long.toString(created));
+        return Optional.of(session);
+    }
+
+    // nowa sesja (albo taka, z której usunięto czas utworzenia) jest tworzona teraz
+    private static long createdTime(String created, long now) {
+        if (created == null)
+            return now;
+        try {
+            return Long.parseLong(created);
+        } catch (NumberFormatException e) {
+            return now;
+        }
+    }
+
+    // zapis danych sesji w postaci k=v&k=v (używany też przez SQLiteSessionManager);
+    // klucze są sortowane, aby te same dane zawsze dawały ten sam tekst
+    static String encodeStore(Map<String, String> store) {
+        var data = new StringBuilder();
+        new TreeMap<>(store).forEach((key, value) -> {
+            if (data.length() > 0)
+                data.append('&');
+            data.append(URLEncoder.encode(key, StandardCharsets.UTF_8)).append('=')
+                    .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        });
+        return data.toString();
+    }
+
+    static void decodeStore(String data, Map<String, String> store) {
+        for (var entry : data.split("&")) {
+            var parts = entry.split("=", 2);
+            if (parts.length == 2)
+                store.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                        URLDecoder.decode(parts[1], StandardCharsets.UTF_8));
+        }
+    }
+
+    // szyfrowanie zwraca losowy wektor początkowy i szyfrogram, a odszyfrowanie przyjmuje to samo
+    private byte[] crypt(int mode, byte[] input) {
+        try {
+            var cipher = this.cipher.get();
+            if (mode == Cipher.ENCRYPT_MODE) {
+                var iv = new byte[ivLength];
+                random.get().nextBytes(iv);
+                cipher.init(mode, encryptionKey, new IvParameterSpec(iv));
+                var output = Arrays.copyOf(iv, ivLength + input.length);
+                cipher.doFinal(input, 0, input.length, output, ivLength);
+                return output;
+            }
+            cipher.init(mode, encryptionKey, new IvParameterSpec(input, 0, ivLength));
+            return cipher.doFinal(input, ivLength, input.length - ivLength);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package impl;
+
+// przeliczenie od nowa liczników głosów i subskrybentów w istniejącej bazie danych;
+// liczniki są aktualizowane na bieżąco przez wyzwalacze, a przy migracji bazy są wypełniane automatycznie,
+// więc ten program jest potrzebny tylko po ręcznych zmianach w bazie;
+// uruchamiany przez zadanie gradle backfillCounters
+class CounterBackfill {
+    public static void main(String[] args) {
+        var database = new SQLiteDatabase();
+        database.backfillCounters();
+        System.out.println("counters backfilled");
+    }
+}
@@ -0,0 +1,271 @@
+package impl;
+
+import forum.databases.Database;
+import forum.entities.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+// bazowa klasa dla dekoratorów bazy danych;
+// domyślnie przekazuje wszystkie wywołania do dekorowanej bazy, a podklasy nadpisują tylko wybrane metody
+public abstract class DelegatingDatabase implements Database {
+    protected final Database database;
+
+    public DelegatingDatabase(Database database) {
+        this.database = database;
+    }
+
+    // użytkownicy
+
+    @Override
+    public User newUser(String name, Optional<String> email, long time, byte[] passwordHash, byte[] passwordSalt) {
+        return database.newUser(name, email, time, passwordHash, passwordSalt);
+    }
+
+    @Override
+    public Optional<User> getUser(long id) {
+        return database.getUser(id);
+    }
+
+    @Override
+    public Optional<User> getUserByName(String name) {
+        return database.getUserByName(name);
+    }
+
+    @Override
+    public List<PostSummary> getUserPosts(long id, Optional<Cursor> after, int limit) {
+        return database.getUserPosts(id, after, limit);
+    }
+
+    @Override
+    public List<CommentSummary> getUserComments(long id, Optional<Cursor> after, int limit) {
+        return database.getUserComments(id, after, limit);
+    }
+
+    @Override
+    public List<Subscriber> getUserSubscriptions(long id) {
+        return database.getUserSubscriptions(id);
+    }
+
+    @Override
+    public List<PostVote> getUserPostVotes(long id) {
+        return database.getUserPostVotes(id);
+    }
+
+    @Override
+    public List<CommentVote> getUserCommentVotes(long id) {
+        return database.getUserCommentVotes(id);
+    }
+
+    @Override
+    public List<Long> getUserSubscriptionIds(long id, long minSubscribers, long maxSubscribers) {
+        return database.getUserSubscriptionIds(id, minSubscribers, maxSubscribers);
+    }
+
+    @Override
+    public List<PostSummary> getUserSubscriptionsPosts(long id, long newerThan, long maxSubscribers, int limit) {
+        return database.getUserSubscriptionsPosts(id, newerThan, maxSubscribers, limit);
+    }
+
+    @Override
+    public void setUserEmail(long id, Optional<String> email) {
+        database.setUserEmail(id, email);
+    }
+
+    @Override
+    public void setUserPassword(long id, byte[] passwordHash, byte[] passwordSalt) {
+        database.setUserPassword(id, passwordHash, passwordSalt);
+    }
+
+    @Override
+    public void addUserPoints(long id, long points) {
+        database.addUserPoints(id, points);
+    }
+
+    @Override
+    public void deleteUser(long id) {
+        database.deleteUser(id);
+    }
+
+    // społeczności
+
+    @Override
+    public Community newCommunity(String name, String description, long creatorId, long time) {
+        return database.newCommunity(name, description, creatorId, time);
+    }
+
+    @Override
+    public void newSubscriber(long userId, long communityId, long time) {
+        database.newSubscriber(userId, communityId, time);
+    }
+
+    @Override
+    public Optional<Community> getCommunity(long id) {
+        return database.getCommunity(id);
+    }
+
+    @Override
+    public Optional<Community> getCommunityByName(String name) {
+        return database.getCommunityByName(name);
+    }
+
+    @Override
+    public Optional<Subscriber> getSubscriber(long userId, long communityId) {
+        return database.getSubscriber(userId, communityId);
+    }
+
+    @Override
+    public List<Community> getCommunities(Optional<String> afterName, int limit) {
+        return database.getCommunities(afterName, limit);
+    }
+
+    @Override
+    public List<Subscriber> getCommunitySubscribers(long id) {
+        return database.getCommunitySubscribers(id);
+    }
+
+    @Override
+    public long countCommunitySubscribers(long id) {
+        return database.countCommunitySubscribers(id);
+    }
+
+    @Override
+    public List<PostSummary> getCommunityPosts(long id, long newerThan, Optional<Cursor> after, int limit) {
+        return database.getCommunityPosts(id, newerThan, after, limit);
+    }
+
+    @Override
+    public void setCommunityDescription(long id, String description) {
+        database.setCommunityDescription(id, description);
+    }
+
+    @Override
+    public void addModerator(long userId, long communityId) {
+        database.addModerator(userId, communityId);
+    }
+
+    @Override
+    public void removeModerator(long userId, long communityId) {
+        database.removeModerator(userId, communityId);
+    }
+
+    @Override
+    public void deleteCommunity(long id) {
+        database.deleteCommunity(id);
+    }
+
+    @Override
+    public void deleteSubscriber(long userId, long communityId) {
+        database.deleteSubscriber(userId, communityId);
+    }
+
+    // posty
+
+    @Override
+    public Post newPost(long senderId, long communityId, String title, String content, long time) {
+        return database.newPost(senderId, communityId, title, content, time);
+    }
+
+    @Override
+    public Optional<Post> getPost(long id) {
+        return database.getPost(id);
+    }
+
+    @Override
+    public Optional<PostVote> getPostVote(long voterId, long postId) {
+        return database.getPostVote(voterId, postId);
+    }
+
+    @Override
+    public List<Comment> getPostRootComments(long id, CommentPage.Order order, Optional<Cursor> after, int limit) {
+        return database.getPostRootComments(id, order, after, limit);
+    }
+
+    @Override
+    public List<Comment> getCommentReplies(List<Long> ids, CommentPage.Order order, int limitPerComment) {
+        return database.getCommentReplies(ids, order, limitPerComment);
+    }
+
+    @Override
+    public List<PostVote> getPostVotes(long id) {
+        return database.getPostVotes(id);
+    }
+
+    @Override
+    public long countPostVotes(long id) {
+        return database.countPostVotes(id);
+    }
+
+    @Override
+    public void editPost(long id, String content, long time) {
+        database.editPost(id, content, time);
+    }
+
+    @Override
+    public long votePost(long voterId, long postId, boolean upvote, long time) {
+        return database.votePost(voterId, postId, upvote, time);
+    }
+
+    @Override
+    public void deletePost(long id) {
+        database.deletePost(id);
+    }
+
+    @Override
+    public long unvotePost(long voterId, long postId) {
+        return database.unvotePost(voterId, postId);
+    }
+
+    // komentarze
+
+    @Override
+    public Comment newComment(long senderId, long postId, OptionalLong parent, String content, long time) {
+        return database.newComment(senderId, postId, parent, content, time);
+    }
+
+    @Override
+    public Optional<Comment> getComment(long id) {
+        return database.getComment(id);
+    }
+
+    @Override
+    public Optional<CommentVote> getCommentVote(long voterId, long commentId) {
+        return database.getCommentVote(voterId, commentId);
+    }
+
+    @Override
+    public List<Comment> getCommentDescendants(long id, int maxDepth, int limit) {
+        return database.getCommentDescendants(id, maxDepth, limit);
+    }
+
+    @Override
+    public List<CommentVote> getCommentVotes(long id) {
+        return database.getCommentVotes(id);
+    }
+
+    @Override
+    public long countCommentVotes(long id) {
+        return database.countCommentVotes(id);
+    }
+
+    @Override
+    public void editComment(long id, String content, long time) {
+        database.editComment(id, content, time);
+    }
+
+    @Override
+    public long voteComment(long voterId, long commentId, boolean upvote, long time) {
+        return database.voteComment(voterId, commentId, upvote, time);
+    }
+
+    @Override
+    public void deleteComment(long id) {
+        database.deleteComment(id);
+    }
+
+    @Override
+    public long unvoteComment(long voterId, long commentId) {
+        return database.unvoteComment(voterId, commentId);
+    }
+}
@@ -4,7 +4,7 @@ import forum.web.TemplateProcessor;
 import freemarker.template.*;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Optional;
 import java.util.OptionalLong;
 
@@ -12,21 +12,24 @@ import java.util.OptionalLong;
 public class FreeMarkerTemplateProcessor implements TemplateProcessor {
     private final Configuration config;
     
-    public FreeMarkerTemplateProcessor() {
+    public FreeMarkerTemplateProcessor(StaticAssets assets) {
         config = new Configuration(Configuration.VERSION_2_3_31);
         config.setClassForTemplateLoading(getClass(), "/templates"); // szablony znajdują się w zasobach projektu
         config.setObjectWrapper(new Wrapper()); // poprawka na specjalną obsługę obiektów typu Optional<> i OptionalLong
         config.setDateTimeFormat("yyyy-MM-dd HH:mm");
+        try {
+            config.setSharedVariable("assets", assets.paths()); // adresy plików statycznych, np. ${assets["style.css"]}
+        } catch (TemplateModelException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
-    public String process(String templateName, Object data) {
+    public void process(String templateName, Object data, Writer writer) throws IOException {
+        var template = config.getTemplate(templateName + ".ftlh"); // FreeMarker cache'uje szablony
         try {
-            var template = config.getTemplate(templateName + ".ftlh"); // FreeMarker cache'uje szablony
-            var writer = new StringWriter();
             template.process(data, writer);
-            return writer.toString();
-        } catch (IOException | TemplateException e) {
+        } catch (TemplateException e) {
             throw new RuntimeException(e);
         }
     }
@@ -0,0 +1,167 @@
+package impl;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// dekorator bazy danych zapisujący głosy grupami (group commit);
+// wątek oddający głos wstawia go do ograniczonej kolejki i czeka na jego zapisanie,
+// a jeden wątek zapisujący wykonuje wszystkie oczekujące głosy (co najwyżej maxBatchSize) w jednej transakcji,
+// więc wiele jednoczesnych głosów kosztuje jedno zatwierdzenie zmian zamiast wielu;
+// głosujący dostaje wynik dopiero po zatwierdzeniu transakcji, więc głos nie może zostać utracony,
+// a pełna kolejka blokuje kolejnych głosujących;
+// jeśli transakcja się nie powiedzie, głosy z niej są wykonywane ponownie pojedynczo,
+// aby błąd jednego głosu nie dotknął pozostałych;
+// po rozpoczęciu zamykania głosy są zapisywane od razu przez database, bo nikt już nie odbierze ich z kolejki
+public class GroupCommitDatabase extends DelegatingDatabase {
+    private final SQLiteDatabase sqlite;
+    private final BlockingQueue<Vote> queue;
+    private final int maxBatchSize;
+    private final Thread writer;
+    private final LongAdder votes = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile boolean closing = false;
+
+    public GroupCommitDatabase(SQLiteDatabase database, int queueSize, int maxBatchSize) {
+        super(database);
+        sqlite = database;
+        queue = new ArrayBlockingQueue<>(queueSize);
+        this.maxBatchSize = maxBatchSize;
+        writer = new Thread(this::run, "vote-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // liczba zapisanych głosów
+    public long votes() {
+        return votes.sum();
+    }
+
+    // liczba transakcji, w których zostały zapisane
+    public long batches() {
+        return batches.sum();
+    }
+
+    // zatrzymanie wątku zapisującego po zapisaniu głosów, które są już w kolejce
+    public void close() {
+        closing = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public long votePost(long voterId, long postId, boolean upvote, long time) {
+        return submit(() -> database.votePost(voterId, postId, upvote, time));
+    }
+
+    @Override
+    public long unvotePost(long voterId, long postId) {
+        return submit(() -> database.unvotePost(voterId, postId));
+    }
+
+    @Override
+    public long voteComment(long voterId, long commentId, boolean upvote, long time) {
+        return submit(() -> database.voteComment(voterId, commentId, upvote, time));
+    }
+
+    @Override
+    public long unvoteComment(long voterId, long commentId) {
+        return submit(() -> database.unvoteComment(voterId, commentId));
+    }
+
+    private long submit(Supplier<Long> operation) {
+        if (closing)
+            return commitNow(operation);
+        var vote = new Vote(operation);
+        try {
+            queue.put(vote);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        // wątek zapisujący mógł zakończyć się przed wstawieniem głosu; jeśli go nie odebrał, głos jest zapisywany tutaj
+        if (closing && queue.remove(vote))
+            return commitNow(operation);
+
+        try {
+            return vote.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private long commitNow(Supplier<Long> operation) {
+        var result = operation.get();
+        votes.increment();
+        batches.increment();
+        return result;
+    }
+
+    private void run() {
+        var batch = new ArrayList<Vote>(maxBatchSize);
+        var running = true;
+        while (running || !queue.isEmpty()) {
+            try {
+                if (running)
+                    batch.add(queue.take());
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            if (!batch.isEmpty())
+                commit(batch);
+            batch.clear();
+        }
+    }
+
+    // liczniki są zwiększane przed powiadomieniem głosujących, aby po powrocie widzieli już swoje głosy
+    private void commit(ArrayList<Vote> batch) {
+        var results = new long[batch.size()];
+        try {
+            sqlite.batch(() -> {
+                for (var i = 0; i < results.length; i++)
+                    results[i] = batch.get(i).operation.get();
+            });
+        } catch (RuntimeException e) {
+            for (var vote : batch) {
+                long result;
+                try {
+                    result = vote.operation.get();
+                } catch (RuntimeException voteException) {
+                    votes.increment();
+                    batches.increment();
+                    vote.result.completeExceptionally(voteException);
+                    continue;
+                }
+                votes.increment();
+                batches.increment();
+                vote.result.complete(result);
+            }
+            return;
+        }
+
+        votes.add(batch.size());
+        batches.increment();
+        for (var i = 0; i < results.length; i++)
+            batch.get(i).result.complete(results[i]);
+    }
+
+    private static class Vote {
+        private final Supplier<Long> operation;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        private Vote(Supplier<Long> operation) {
+            this.operation = operation;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package impl;
 
+import forum.web.Content;
 import forum.web.Request;
 import forum.web.Response;
 import forum.web.Server;
@@ -10,37 +11,84 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
 
-// serwer Jetty
+// serwer Jetty;
+// odpowiedzi są kompresowane gzipem (GzipHandler), jeśli klient to obsługuje (Accept-Encoding)
+// i odpowiedź ma co najmniej minGzipSize bajtów; kompresja działa w trakcie strumieniowego wysyłania strony,
+// a obiekty Deflater są brane z puli o rozmiarze deflaterPoolSize zamiast tworzenia ich dla każdej odpowiedzi;
+// pliki statyczne (StaticAssets) są wysyłane od razu skompresowane i z nagłówkami pozwalającymi na długie cache'owanie;
+// sposób wykonywania handlerów (które blokują się na bazie danych i na emailerze) wybiera Mode
 public class JettyServer implements Server {
     private final org.eclipse.jetty.server.Server server;
     private final ServletContextHandler context;
+    private final Optional<ExecutorService> handlerExecutor; // tylko w trybie Async
 
     private static final int port = 8080;
+    private static final int bufferSize = 16 * 1024; // po zapełnieniu bufora odpowiedź jest wysyłana fragmentami (chunked)
+    private static final int minGzipSize = 512; // mniejsze odpowiedzi prawie nie zyskują na kompresji
+    private static final int deflaterPoolSize = 64;
+    private static final int handlerQueueSize = 1000; // w trybie Async zapytania ponad kolejkę dostają 503
 
-    public JettyServer() {
-        server = new org.eclipse.jetty.server.Server(port);
-        context = new ServletContextHandler(server, "/");
+    public enum Mode {
+        // każde zapytanie zajmuje wątek z puli Jetty o rozmiarze threads na cały czas obsługi,
+        // więc wolna baza albo wolni klienci mogą wyczerpać pulę
+        Pool,
+        // każde zapytanie dostaje nowy wirtualny wątek, a blokowanie się na bazie nie zajmuje wątku systemowego;
+        // wymaga JDK 21 lub nowszego (program nadal jest kompilowany dla Javy 11, więc wątki są tworzone przez refleksję)
+        Virtual,
+        // wątki Jetty tylko przyjmują zapytania (asynchroniczne serwlety), a handlery są wykonywane
+        // na osobnej puli o rozmiarze threads z ograniczoną kolejką, więc liczba jednoczesnych zapytań do bazy
+        // jest ograniczona niezależnie od liczby otwartych połączeń
+        Async
+    }
+
+    public JettyServer(StaticAssets assets, Mode mode, int threads) {
+        server = new org.eclipse.jetty.server.Server(threadPool(mode, threads));
+        var connector = new ServerConnector(server);
+        connector.setPort(port);
+        server.addConnector(connector);
+        handlerExecutor = mode == Mode.Async
+                ? Optional.of(new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(handlerQueueSize)))
+                : Optional.empty();
+
+        context = new ServletContextHandler();
+        context.setContextPath("/");
+        context.addServlet(new ServletHolder(new AssetServlet(assets)), StaticAssets.pathPrefix + "*");
+
+        var gzip = new GzipHandler();
+        gzip.setMinGzipSize(minGzipSize);
+        // nowrap, bo nagłówek i sumę kontrolną gzipa zapisuje sam GzipHandler
+        gzip.setDeflaterPool(new DeflaterPool(deflaterPoolSize, Deflater.DEFAULT_COMPRESSION, true));
+        gzip.setIncludedMethods("GET", "POST");
+        gzip.setIncludedMimeTypes("text/html");
+        gzip.setHandler(context);
+        server.setHandler(gzip);
     }
 
     @Override
     public void addHandler(Request.Method method, String path, Handler handler) {
         var acceptGet = method == Request.Method.Get;
         var acceptPost = method == Request.Method.Post;
-        var servlet = new ServletHolder(new Servlet(acceptGet, acceptPost, handler));
-        context.addServlet(servlet, path.equals("/") ? "" : path); // Jetty specjalnie traktuje ścieżkę /
+        context.addServlet(servletHolder(acceptGet, acceptPost, handler), path.equals("/") ? "" : path); // Jetty specjalnie traktuje ścieżkę /
     }
 
     @Override
     public void run(Handler defaultHandler) {
-        var servlet = new ServletHolder(new Servlet(true, true, defaultHandler));
-        context.addServlet(servlet, "/*");
+        context.addServlet(servletHolder(true, true, defaultHandler), "/*");
 
         try {
             server.start();
@@ -51,12 +99,70 @@ public class JettyServer implements Server {
         }
     }
 
-    // serwlet wykonujący dany handler
+    private ServletHolder servletHolder(boolean acceptGet, boolean acceptPost, Handler handler) {
+        var holder = new ServletHolder(new Servlet(acceptGet, acceptPost, handler, handlerExecutor));
+        holder.setAsyncSupported(handlerExecutor.isPresent());
+        return holder;
+    }
+
+    private static ThreadPool threadPool(Mode mode, int threads) {
+        switch (mode) {
+            case Pool:
+            case Async:
+                return new QueuedThreadPool(threads);
+            case Virtual:
+                return new VirtualThreadPool();
+            default:
+                throw new RuntimeException();
+        }
+    }
+
+    // pula wątków Jetty tworząca nowy wirtualny wątek dla każdego zadania
+    private static class VirtualThreadPool implements ThreadPool {
+        private final ExecutorService executor;
+
+        private VirtualThreadPool() {
+            try {
+                executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("virtual threads require JDK 21 or newer", e);
+            }
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            executor.execute(task);
+        }
+
+        @Override
+        public void join() throws InterruptedException {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        // wirtualnych wątków nie brakuje, więc Jetty nie musi oszczędzać wątków
+        @Override
+        public int getThreads() {
+            return 0;
+        }
+
+        @Override
+        public int getIdleThreads() {
+            return 0;
+        }
+
+        @Override
+        public boolean isLowOnThreads() {
+            return false;
+        }
+    }
+
+    // serwlet wykonujący dany handler (w wątku Jetty albo, w trybie Async, na handlerExecutor)
     @AllArgsConstructor
     private static class Servlet extends HttpServlet {
         private final boolean acceptGet;
         private final boolean acceptPost;
         private final Server.Handler handler;
+        private final Optional<ExecutorService> handlerExecutor;
 
         @Override
         protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -74,8 +180,34 @@ public class JettyServer implements Server {
                 super.doPost(req, resp);
         }
 
-        // konstruuje Request na podstawie HttpServletRequest, wykonuje handler, i zapisuje Response do HttpServletResponse
+        // w trybie Async wątek Jetty tylko zleca obsługę zapytania i wraca do przyjmowania kolejnych;
+        // odpowiedź jest zamykana (complete) przez wątek, który ją zapisał
         private void handle(boolean get, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            if (handlerExecutor.isEmpty()) {
+                handleNow(get, req, resp);
+                return;
+            }
+
+            var async = req.startAsync();
+            async.setTimeout(0); // czas obsługi ogranicza baza danych, a nie serwer
+            try {
+                handlerExecutor.get().execute(() -> {
+                    try {
+                        handleNow(get, req, resp);
+                    } catch (IOException | RuntimeException e) {
+                        e.printStackTrace();
+                    } finally {
+                        async.complete();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                resp.sendError(HttpStatus.Code.SERVICE_UNAVAILABLE.getCode());
+                async.complete();
+            }
+        }
+
+        // konstruuje Request na podstawie HttpServletRequest, wykonuje handler, i zapisuje Response do HttpServletResponse
+        private void handleNow(boolean get, HttpServletRequest req, HttpServletResponse resp) throws IOException {
             var method = get ? Request.Method.Get : Request.Method.Post;
             var path = req.getRequestURI();
 
@@ -96,14 +228,54 @@ public class JettyServer implements Server {
                 resp.addCookie(new Cookie(entry.getKey(), entry.getValue()));
 
             if (response.status == Response.Status.Redirect) { // specjalne traktowanie statusu Redirect
-                var lines = response.content.lines().toArray(String[]::new);
+                var lines = response.content.text().lines().toArray(String[]::new);
                 var location = redirectLocation(lines);
                 resp.sendRedirect(location);
             } else {
                 var status = httpStatus(response.status);
+                if (response.etag.isPresent()) {
+                    var etag = '"' + response.etag.get() + '"';
+                    resp.setHeader("ETag", etag);
+                    resp.setHeader("Cache-Control", "no-cache"); // przeglądarka ma zawsze pytać, czy strona się zmieniła
+                    if (get && notModified(req.getHeader("If-None-Match"), etag)) {
+                        resp.setStatus(HttpStatus.Code.NOT_MODIFIED.getCode()); // zawartość nie jest generowana
+                        return;
+                    }
+                }
                 resp.setStatus(status.getCode());
                 resp.setContentType("text/html");
-                resp.getWriter().write(response.content);
+                write(response.content, resp);
+            }
+        }
+
+        // czy nagłówek If-None-Match zawiera daną wersję (lub *); słabe porównanie, więc prefiks W/ jest pomijany
+        private boolean notModified(String ifNoneMatch, String etag) {
+            if (ifNoneMatch == null)
+                return false;
+            for (var tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/"))
+                    tag = tag.substring(2);
+                if (tag.equals(etag) || tag.equals("*"))
+                    return true;
+            }
+            return false;
+        }
+
+        // zawartość jest zapisywana prosto do odpowiedzi przez bufor o rozmiarze bufferSize,
+        // więc niezależnie od rozmiaru strony w pamięci jest trzymany tylko jej fragment;
+        // jeśli generowanie strony się nie powiedzie, zanim cokolwiek zostało wysłane, to zamiast niej jest wysyłany błąd,
+        // a w przeciwnym wypadku pozostaje tylko przerwanie odpowiedzi
+        private void write(Content content, HttpServletResponse resp) throws IOException {
+            resp.setBufferSize(bufferSize);
+            try {
+                content.write(resp.getWriter());
+            } catch (RuntimeException e) {
+                if (resp.isCommitted())
+                    throw e;
+                resp.resetBuffer();
+                resp.setStatus(HttpStatus.Code.INTERNAL_SERVER_ERROR.getCode());
+                resp.getWriter().write("<h1>Internal Server Error</h1>");
             }
         }
 
@@ -135,4 +307,62 @@ public class JettyServer implements Server {
             }
         }
     }
+
+    // serwlet wysyłający pliki statyczne; skompresowana wersja jest wysyłana, jeśli klient akceptuje gzip
+    @AllArgsConstructor
+    private static class AssetServlet extends HttpServlet {
+        private final StaticAssets assets;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            var name = req.getRequestURI().substring(StaticAssets.pathPrefix.length());
+            var optional = assets.get(name);
+            if (optional.isEmpty()) {
+                resp.sendError(HttpStatus.Code.NOT_FOUND.getCode());
+                return;
+            }
+            var asset = optional.get();
+
+            // adres zawiera wersję pliku, więc jego zawartość pod danym adresem nigdy się nie zmienia
+            resp.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+            resp.setHeader("Vary", "Accept-Encoding");
+            resp.setContentType(asset.contentType);
+            var content = asset.content;
+            if (acceptsGzip(req.getHeader("Accept-Encoding"))) {
+                resp.setHeader("Content-Encoding", "gzip");
+                content = asset.gzipped;
+            }
+            resp.setContentLength(content.length);
+            resp.getOutputStream().write(content);
+        }
+    }
+
+    // czy nagłówek Accept-Encoding dopuszcza gzip: wartość to lista kodowań z opcjonalnymi wagami (np. "gzip;q=0.5"),
+    // waga 0 oznacza odmowę, a "*" dotyczy kodowań niewymienionych z nazwy; błędne wagi są traktowane jak 0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return false;
+        var gzip = -1.0;
+        var any = -1.0;
+        for (var coding : acceptEncoding.split(",")) {
+            var parts = coding.split(";");
+            var name = parts[0].trim().toLowerCase();
+            var quality = 1.0;
+            for (var i = 1; i < parts.length; i++) {
+                var parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip"))
+                gzip = Math.max(gzip, quality);
+            else if (name.equals("*"))
+                any = Math.max(any, quality);
+        }
+        return (gzip >= 0 ? gzip : any) > 0;
+    }
 }
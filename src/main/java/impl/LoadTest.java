@@ -0,0 +1,68 @@
+package impl;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// prosty test obciążeniowy działającego serwera: clients wątków wysyła po requests zapytań GET
+// pod podane adresy (po kolei, w pętli) i program wypisuje medianę, 99. percentyl i maksimum czasu odpowiedzi
+// oraz liczbę zapytań na sekundę; służy do porównania trybów serwera (JettyServer.Mode) -
+// należy uruchomić forum z wybranym -Dforum.serverMode, a następnie zadanie gradle loadTest;
+// argumenty: liczba wątków, liczba zapytań na wątek i adresy (domyślnie lista społeczności)
+class LoadTest {
+    private static final int defaultClients = 64;
+    private static final int defaultRequests = 200;
+    private static final String defaultUrl = "http://localhost:8080/community-list";
+
+    public static void main(String[] args) throws InterruptedException {
+        var clients = args.length > 0 ? Integer.parseInt(args[0]) : defaultClients;
+        var requests = args.length > 1 ? Integer.parseInt(args[1]) : defaultRequests;
+        var urls = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : List.of(defaultUrl);
+
+        var http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        var latencies = new long[clients * requests];
+        var errors = new AtomicInteger();
+        var workers = new ArrayList<Thread>();
+        for (var i = 0; i < clients; i++) {
+            var client = i;
+            workers.add(new Thread(() -> {
+                for (var j = 0; j < requests; j++) {
+                    var url = urls.get((client + j) % urls.size());
+                    var request = HttpRequest.newBuilder(URI.create(url)).header("Accept-Encoding", "gzip").build();
+                    var start = System.nanoTime();
+                    try {
+                        var response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 500)
+                            errors.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[client * requests + j] = System.nanoTime() - start;
+                }
+            }));
+        }
+
+        var start = System.nanoTime();
+        workers.forEach(Thread::start);
+        for (var worker : workers)
+            worker.join();
+        var seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%d requests, %d errors, %.0f requests/s%n", latencies.length, errors.get(), latencies.length / seconds);
+        System.out.printf("p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+    }
+
+    // percentyl posortowanych czasów w milisekundach
+    private static double percentile(long[] sorted, double fraction) {
+        var index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
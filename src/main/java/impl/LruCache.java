@@ -0,0 +1,115 @@
+package impl;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// ograniczona rozmiarem pamięć podręczna usuwająca najdawniej używane wpisy (w przybliżeniu LRU);
+// każdy klucz ma własny wpis z wczytywaną wartością (CompletableFuture), więc jednoczesne odczyty tego samego
+// brakującego klucza wczytują go tylko raz, a odczyty różnych kluczy nie mają wspólnej blokady;
+// unieważnienie usuwa wpis tylko danego klucza, więc wartość wczytywana w trakcie unieważnienia
+// (czyli być może sprzed zapisu) nie zostaje w pamięci, a wczytywanie innych kluczy nie jest zakłócane;
+// unieważniać należy więc dopiero po zapisie do bazy;
+// po przekroczeniu capacity jeden wątek usuwa najdawniej używane wpisy (do 90% capacity naraz)
+class LruCache<K, V> {
+    private final int capacity;
+    private final Map<K, Slot<V>> map = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    LruCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // brakujące wartości (puste Optional) nie są zapamiętywane
+    Optional<V> get(K key, Function<K, Optional<V>> loader) {
+        var slot = map.get(key);
+        if (slot == null) {
+            var created = new Slot<V>();
+            slot = map.putIfAbsent(key, created);
+            if (slot == null)
+                return load(key, created, loader);
+        }
+
+        hits.increment();
+        slot.accessTime = System.nanoTime();
+        try {
+            return slot.value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private Optional<V> load(K key, Slot<V> slot, Function<K, Optional<V>> loader) {
+        misses.increment();
+        Optional<V> value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException e) {
+            map.remove(key, slot);
+            slot.value.completeExceptionally(e);
+            throw e;
+        }
+        if (value.isEmpty())
+            map.remove(key, slot);
+        slot.value.complete(value);
+        if (map.size() > capacity)
+            evict();
+        return value;
+    }
+
+    void invalidate(K key) {
+        map.remove(key);
+    }
+
+    void clear() {
+        map.clear();
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    // wątki, które w trakcie usuwania przekroczą limit, nie czekają, bo usuwanie i tak robi miejsce także dla nich
+    private void evict() {
+        if (!evictionLock.tryLock())
+            return;
+        try {
+            var excess = map.size() - capacity * 9 / 10;
+            if (map.size() <= capacity || excess <= 0)
+                return;
+            // czasy użycia są kopiowane przed sortowaniem, bo inne wątki mogą je w tym czasie zmieniać
+            var entries = new ArrayList<Map.Entry<Long, Map.Entry<K, Slot<V>>>>();
+            map.entrySet().forEach(entry -> entries.add(Map.entry(entry.getValue().accessTime, entry)));
+            entries.sort(Map.Entry.comparingByKey());
+            for (var i = 0; i < excess && i < entries.size(); i++) {
+                var entry = entries.get(i).getValue();
+                map.remove(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static class Slot<V> {
+        private final CompletableFuture<Optional<V>> value = new CompletableFuture<>();
+        private volatile long accessTime = System.nanoTime();
+    }
+}
@@ -1,18 +1,142 @@
 package impl;
 
 import forum.ForumAppFactory;
+import forum.PageCache;
+import forum.databases.Database;
+import forum.services.Clock;
+import forum.services.Emailer;
+import forum.web.SessionManager;
 
-// uruchomienie aplikacji z implementacjami w tym pakiecie
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// uruchomienie aplikacji z implementacjami w tym pakiecie;
+// opcjonalne ustawienia są czytane z właściwości systemowych (java -Dnazwa=wartość):
+// - forum.entityCache=true włącza pamięć podręczną encji (CachingDatabase)
+// - forum.entityCacheSize to maksymalna liczba wpisów w każdej z jej map
+// - forum.groupCommit=true włącza zapisywanie głosów grupami (GroupCommitDatabase)
+// - forum.voteQueueSize i forum.voteBatchSize to rozmiar jego kolejki i maksymalna liczba głosów w transakcji
+// - forum.writeBehindPoints=true włącza odkładanie zmian punktów użytkowników (WriteBehindPointsDatabase)
+// - forum.pointsFlushMillis to odstęp między zapisami tych zmian
+// - forum.loadThreads to liczba wątków wykonujących równolegle pobrania danych zlecane przez kontrolery;
+//   domyślnie tyle, ile połączeń do odczytu ma SQLiteDatabase, a 0 wykonuje je po kolei w wątku zapytania
+// - forum.pageCache=true włącza pamięć podręczną stron dla niezalogowanych użytkowników (PageCache)
+// - forum.pageCacheSize to maksymalna liczba zapamiętanych stron, a forum.pageCacheTtl to czas ich życia w sekundach
+// - forum.serverMode=pool|virtual|async wybiera sposób wykonywania zapytań przez serwer (JettyServer.Mode)
+// - forum.serverThreads to rozmiar puli wątków Jetty (pool) albo puli wykonującej handlery (async)
+// - forum.asyncEmail=true włącza wysyłanie e-maili w tle przez outbox (AsyncEmailer)
+// - forum.emailQueueSize i forum.emailBatchSize to rozmiar jego kolejki i maksymalna liczba wiadomości w grupie
+// - forum.emailDigest=true łączy powiadomienia o odpowiedziach i komentarzach do jednego użytkownika
+//   w zbiorcze wiadomości (CoalescingEmailer), a forum.emailDigestMillis to czas zbierania jednej wiadomości
+// - forum.sessionManager=simple|concurrent|cookie|sqlite wybiera menedżer sesji (domyślnie SimpleSessionManager)
+// - forum.sessionIdleTtl i forum.sessionTtl to czas życia sesji w sekundach od ostatniego użycia i od utworzenia,
+//   a forum.maxSessions to maksymalna liczba sesji w pamięci (dla sqlite - w pamięci podręcznej przed bazą)
+// - forum.sessionSecret to wspólny dla wszystkich serwerów klucz podpisujący ciastka sesji (CookieSessionManager),
+//   a forum.sessionCookieEncrypt=true dodatkowo je szyfruje
+// przy zamykaniu programu dekoratory są zamykane od wewnętrznego, więc najpierw są zapisywane oczekujące głosy,
+// a dopiero potem wynikające z nich zmiany punktów
 class Program {
+    private static final int defaultEntityCacheSize = 10000;
+    private static final int defaultVoteQueueSize = 1024;
+    private static final int defaultVoteBatchSize = 256;
+    private static final long defaultPointsFlushMillis = 1000;
+    private static final int defaultPageCacheSize = 1000;
+    private static final long defaultPageCacheTtl = 10;
+    private static final int defaultPoolThreads = 200; // jak domyślnie w Jetty
+    private static final int defaultAsyncThreadsPerProcessor = 4;
+    private static final int defaultEmailQueueSize = 1024;
+    private static final int defaultEmailBatchSize = 256;
+    private static final long defaultEmailDigestMillis = 60000;
+    private static final long defaultSessionIdleTtl = 30 * 60;
+    private static final long defaultSessionTtl = 24 * 60 * 60;
+    private static final int defaultMaxSessions = 100000;
+    private static final long sessionSweepSeconds = 60;
+    private static final int sessionSweepBatchSize = 1000;
+    private static final int maxSessionCookieLength = 4096; // najmniejszy limit, który przeglądarki muszą obsługiwać
+
     public static void main(String[] args) {
-        var database = new SQLiteDatabase();
+        var shutdown = new ArrayList<Runnable>();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown.forEach(Runnable::run)));
+
+        var sqlite = new SQLiteDatabase();
+        shutdown.add(() -> System.out.println("statement cache: " + sqlite.statementCacheHits() + " hits, " +
+                sqlite.statementCacheMisses() + " misses"));
+        Database database = sqlite;
+        if (Boolean.getBoolean("forum.groupCommit")) {
+            var groupCommit = new GroupCommitDatabase(sqlite,
+                    Integer.getInteger("forum.voteQueueSize", defaultVoteQueueSize),
+                    Integer.getInteger("forum.voteBatchSize", defaultVoteBatchSize));
+            shutdown.add(() -> {
+                groupCommit.close();
+                System.out.println("group commit: " + groupCommit.votes() + " votes in " + groupCommit.batches() + " transactions");
+            });
+            database = groupCommit;
+        }
+        if (Boolean.getBoolean("forum.entityCache")) {
+            var cache = new CachingDatabase(database, Integer.getInteger("forum.entityCacheSize", defaultEntityCacheSize));
+            shutdown.add(() ->
+                    System.out.println("entity cache: " + cache.hits() + " hits, " + cache.misses() + " misses"));
+            database = cache;
+        }
+        if (Boolean.getBoolean("forum.writeBehindPoints")) {
+            var writeBehind = new WriteBehindPointsDatabase(database, sqlite,
+                    Long.getLong("forum.pointsFlushMillis", defaultPointsFlushMillis));
+            shutdown.add(() -> {
+                writeBehind.close();
+                System.out.println("write-behind points: " + writeBehind.flushedDeltas() + " deltas flushed, " +
+                        writeBehind.pendingDeltas() + " pending, " + writeBehind.failedFlushes() + " failed flushes");
+            });
+            database = writeBehind;
+        }
+
         var clock = new SystemClock();
         var validator = new DefaultValidator();
         var authenticator = new SHA1Authenticator();
-        var emailer = new FakeEmailer();
-        var server = new JettyServer();
-        var sessionManager = new SimpleSessionManager();
-        var templateProcessor = new FreeMarkerTemplateProcessor();
+        Emailer emailer = new FakeEmailer();
+        var emailerShutdown = shutdown.size();
+        if (Boolean.getBoolean("forum.asyncEmail")) {
+            var asyncEmailer = new AsyncEmailer("emails.txt", "emails-outbox.txt",
+                    Integer.getInteger("forum.emailQueueSize", defaultEmailQueueSize),
+                    Integer.getInteger("forum.emailBatchSize", defaultEmailBatchSize));
+            shutdown.add(() -> {
+                asyncEmailer.close();
+                System.out.println("async email: " + asyncEmailer.sent() + " emails in " + asyncEmailer.batches() +
+                        " batches, " + asyncEmailer.waits() + " waits on a full queue");
+            });
+            emailer = asyncEmailer;
+        }
+        if (Boolean.getBoolean("forum.emailDigest")) {
+            var coalescing = new CoalescingEmailer(emailer, Set.of("reply", "comment"),
+                    Long.getLong("forum.emailDigestMillis", defaultEmailDigestMillis));
+            // zamykany przed AsyncEmailer, aby zebrane wiadomości zdążyły trafić do jego kolejki
+            shutdown.add(emailerShutdown, () -> {
+                coalescing.close();
+                System.out.println("email digest: " + coalescing.eventsIn() + " notifications in " +
+                        coalescing.messagesOut() + " emails, " + coalescing.skipped() + " skipped");
+            });
+            emailer = coalescing;
+        }
+        var assets = new StaticAssets("style.css");
+        var serverMode = serverMode(System.getProperty("forum.serverMode", "pool"));
+        var serverThreads = Integer.getInteger("forum.serverThreads", serverMode == JettyServer.Mode.Async
+                ? defaultAsyncThreadsPerProcessor * Runtime.getRuntime().availableProcessors()
+                : defaultPoolThreads);
+        var server = new JettyServer(assets, serverMode, serverThreads);
+        var sessionManager = sessionManager(System.getProperty("forum.sessionManager", "simple"),
+                clock, sqlite, shutdown);
+        var templateProcessor = new FreeMarkerTemplateProcessor(assets);
+        var pageCache = Boolean.getBoolean("forum.pageCache")
+                ? new PageCache(clock, Integer.getInteger("forum.pageCacheSize", defaultPageCacheSize),
+                        Long.getLong("forum.pageCacheTtl", defaultPageCacheTtl))
+                : new PageCache(clock, 0, 0);
+        if (pageCache.enabled())
+            shutdown.add(() -> System.out.println("page cache: " + pageCache.hits() + " hits, " + pageCache.misses() + " misses"));
+        var loadExecutor = loadExecutor(Integer.getInteger("forum.loadThreads", Runtime.getRuntime().availableProcessors()));
 
         var factory = new ForumAppFactory(
                 database,
@@ -22,8 +146,81 @@ class Program {
                 emailer,
                 server,
                 sessionManager,
-                templateProcessor);
+                templateProcessor,
+                loadExecutor,
+                pageCache);
+
+        var app = factory.newForumApp();
+        shutdown.add(() -> app.queriesPerRequest().forEach((name, queries) ->
+                System.out.printf("queries per request: %s %.2f%n", name, queries)));
+        app.run();
+    }
+
+    private static JettyServer.Mode serverMode(String name) {
+        for (var mode : JettyServer.Mode.values())
+            if (mode.name().equalsIgnoreCase(name))
+                return mode;
+        throw new RuntimeException("unknown server mode: " + name);
+    }
+
+    private static SessionManager sessionManager(String name, Clock clock, SQLiteDatabase sqlite, List<Runnable> shutdown) {
+        switch (name) {
+            case "simple":
+                return new SimpleSessionManager();
+            case "concurrent":
+                var manager = new ConcurrentSessionManager(clock,
+                        Long.getLong("forum.sessionIdleTtl", defaultSessionIdleTtl),
+                        Long.getLong("forum.sessionTtl", defaultSessionTtl),
+                        Integer.getInteger("forum.maxSessions", defaultMaxSessions),
+                        sessionSweepSeconds);
+                shutdown.add(() -> {
+                    manager.close();
+                    System.out.println("sessions: " + manager.created() + " created, " + manager.expired() +
+                            " expired, " + manager.evicted() + " evicted");
+                });
+                return manager;
+            case "cookie":
+                return new CookieSessionManager(sessionSecret(), clock,
+                        Long.getLong("forum.sessionIdleTtl", defaultSessionIdleTtl),
+                        Long.getLong("forum.sessionTtl", defaultSessionTtl),
+                        maxSessionCookieLength,
+                        Boolean.getBoolean("forum.sessionCookieEncrypt"));
+            case "sqlite":
+                var persistent = new SQLiteSessionManager(sqlite, clock,
+                        Long.getLong("forum.sessionIdleTtl", defaultSessionIdleTtl),
+                        Long.getLong("forum.sessionTtl", defaultSessionTtl),
+                        Integer.getInteger("forum.maxSessions", defaultMaxSessions),
+                        sessionSweepSeconds,
+                        sessionSweepBatchSize);
+                shutdown.add(() -> {
+                    persistent.close();
+                    System.out.println("sessions: " + persistent.writes() + " writes, " + persistent.skippedWrites() +
+                            " skipped writes, " + persistent.loads() + " loads, " + persistent.deleted() + " deleted");
+                });
+                return persistent;
+            default:
+                throw new RuntimeException("unknown session manager: " + name);
+        }
+    }
+
+    private static byte[] sessionSecret() {
+        var secret = System.getProperty("forum.sessionSecret");
+        if (secret != null)
+            return secret.getBytes(StandardCharsets.UTF_8);
+        // bez wspólnego klucza ciastka są ważne tylko na tym serwerze i tylko do jego restartu
+        System.out.println("forum.sessionSecret not set, using a random key");
+        var random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
 
-        factory.newForumApp().run();
+    private static Executor loadExecutor(int threads) {
+        if (threads == 0)
+            return Runnable::run;
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, "forum-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
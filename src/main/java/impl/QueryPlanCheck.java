@@ -0,0 +1,97 @@
+package impl;
+
+import forum.entities.CommentPage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// sprawdzenie, czy zapytania odczytujące w SQLiteDatabase korzystają z indeksów;
+// program tworzy pustą bazę danych w pliku tymczasowym, wykonuje na niej wszystkie zapytania odczytujące
+// (i usuwanie wygasłych sesji, które wybiera wiersze tak samo jak odczyt),
+// a następnie sprawdza ich plany wykonania (EXPLAIN QUERY PLAN);
+// kończy się błędem, jeśli któryś plan przegląda całą tabelę (krok "SCAN tabela" bez "USING INDEX");
+// uruchamiany przez zadanie gradle checkQueryPlans
+class QueryPlanCheck {
+    private static final Pattern fullScan = Pattern.compile("SCAN (TABLE )?(\\w+)( AS \\w+)?");
+
+    // tabele tymczasowe z zapytań rekurencyjnych (with recursive), które z definicji są przeglądane w całości
+    private static final Set<String> recursiveTables = Set.of("descendants");
+
+    public static void main(String[] args) throws IOException {
+        var directory = Files.createTempDirectory("forum-query-plans");
+        var failed = false;
+
+        try {
+            var database = new SQLiteDatabase(directory.resolve("forum.db").toString(), 1);
+            runQueries(database);
+
+            for (var entry : database.queryPlans().entrySet()) {
+                var sql = entry.getKey();
+                for (var step : entry.getValue()) {
+                    var matcher = fullScan.matcher(step);
+                    if (matcher.matches() && !recursiveTables.contains(matcher.group(2))) {
+                        System.err.println("full scan: " + step);
+                        System.err.println("    in query: " + sql);
+                        failed = true;
+                    }
+                }
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (var file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+
+        if (failed)
+            System.exit(1);
+        System.out.println("all queries use indexes");
+    }
+
+    // wykonanie wszystkich zapytań odczytujących (na pustej bazie zwracają one puste wyniki)
+    private static void runQueries(SQLiteDatabase database) {
+        database.getUser(1);
+        database.getUserByName("");
+        database.getUserPosts(1, Optional.empty(), 10);
+        database.getUserComments(1, Optional.empty(), 10);
+        database.getUserSubscriptions(1);
+        database.getUserPostVotes(1);
+        database.getUserCommentVotes(1);
+        database.getUserSubscriptionIds(1, 0, 100);
+        database.getUserSubscriptionsPosts(1, 0, 100, 10);
+
+        database.getCommunity(1);
+        database.getCommunityByName("");
+        database.getSubscriber(1, 1);
+        database.getCommunities(Optional.empty(), 10);
+        database.getCommunitySubscribers(1);
+        database.countCommunitySubscribers(1);
+        database.getCommunityPosts(1, 0, Optional.empty(), 10);
+
+        database.getPost(1);
+        database.getPostVote(1, 1);
+        for (var order : CommentPage.Order.values()) {
+            database.getPostRootComments(1, order, Optional.empty(), 10);
+            database.getCommentReplies(List.of(1L, 2L), order, 5);
+        }
+        database.getPostVotes(1);
+        database.countPostVotes(1);
+        database.unvotePost(1, 1); // na pustej bazie tylko odczytuje poprzedni głos
+
+        database.getComment(1);
+        database.getCommentVote(1, 1);
+        database.getCommentDescendants(1, 10, 100);
+        database.getCommentVotes(1);
+        database.countCommentVotes(1);
+        database.unvoteComment(1, 1);
+
+        database.getSession(1);
+        database.deleteExpiredSessions(0, 10);
+    }
+}
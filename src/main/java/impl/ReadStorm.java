@@ -0,0 +1,100 @@
+package impl;
+
+import forum.databases.Database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// syntetyczny test przepustowości odczytów przy rosnącej liczbie wątków: dla każdej liczby wątków
+// baza jest otwierana z tyloma połączeniami do odczytu, a wątki przez określony czas czytają losowe posty,
+// komentarze i listy postów społeczności; jednocześnie jeden wątek cały czas głosuje,
+// aby pokazać, że w trybie WAL odczyty nie czekają na zapisy;
+// program wypisuje liczbę odczytów i zapisów na sekundę; uruchamiany przez zadanie gradle readStorm
+class ReadStorm {
+    private static final long durationMillis = 3000;
+    private static final int users = 100;
+    private static final int posts = 1000;
+    private static final int commentsPerPost = 5;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var directory = Files.createTempDirectory("forum-read-storm");
+        try {
+            var file = directory.resolve("forum.db").toString();
+            setup(new SQLiteDatabase(file, 1));
+
+            var processors = Runtime.getRuntime().availableProcessors();
+            for (var threads = 1; threads <= 2 * processors; threads *= 2) {
+                var database = new SQLiteDatabase(file, threads);
+                run(database, threads);
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (var file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // id użytkowników to 1..users, społeczności 1, postów 1..posts, a komentarzy 1..posts*commentsPerPost
+    private static void setup(SQLiteDatabase database) {
+        database.batch(() -> {
+            for (var i = 0; i < users; i++)
+                database.newUser("user" + i, Optional.empty(), 0, new byte[0], new byte[0]);
+            database.newCommunity("storm", "", 1, 0);
+            for (var i = 0; i < posts; i++) {
+                var post = database.newPost(1 + i % users, 1, "post" + i, "content", i);
+                for (var j = 0; j < commentsPerPost; j++)
+                    database.newComment(1 + j % users, post.id, OptionalLong.empty(), "comment", i);
+            }
+        });
+    }
+
+    private static void run(Database database, int threads) throws InterruptedException {
+        var reads = new LongAdder();
+        var writes = new LongAdder();
+        var deadline = System.currentTimeMillis() + durationMillis;
+
+        var workers = new ArrayList<Thread>();
+        for (var i = 0; i < threads; i++) {
+            workers.add(new Thread(() -> {
+                var random = ThreadLocalRandom.current();
+                while (System.currentTimeMillis() < deadline) {
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            database.getPost(1 + random.nextInt(posts));
+                            break;
+                        case 1:
+                            database.getComment(1 + random.nextInt(posts * commentsPerPost));
+                            break;
+                        default:
+                            database.getCommunityPosts(1, 0, Optional.empty(), 25);
+                    }
+                    reads.increment();
+                }
+            }));
+        }
+        var writer = new Thread(() -> {
+            var random = ThreadLocalRandom.current();
+            while (System.currentTimeMillis() < deadline) {
+                database.votePost(1 + random.nextInt(users), 1 + random.nextInt(posts), random.nextBoolean(), 0);
+                writes.increment();
+            }
+        });
+
+        workers.forEach(Thread::start);
+        writer.start();
+        for (var worker : workers)
+            worker.join();
+        writer.join();
+        var seconds = durationMillis / 1000.0;
+        System.out.printf("%d reader threads and connections: %.0f reads/s, %.0f writes/s%n",
+                threads, reads.sum() / seconds, writes.sum() / seconds);
+    }
+}
@@ -1,90 +1,126 @@
 package impl;
 
 import forum.databases.Database;
+import forum.databases.QueryCounter;
 import forum.entities.*;
 
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.OptionalLong;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 // baza danych SQLite;
-// zaletą tej implementacji jest jej prostota - baza danych jest zwykłym plikiem
+// zaletą tej implementacji jest jej prostota - baza danych jest zwykłym plikiem;
+// baza działa w trybie WAL, więc zapytania odczytujące dane są wykonywane równolegle
+// na puli połączeń do odczytu, a wszystkie zapisy przechodzą przez jedno połączenie do zapisu
+// (SQLite i tak pozwala tylko na jednego piszącego naraz);
+// każde połączenie trzyma ograniczony cache skompilowanych zapytań
 public class SQLiteDatabase implements Database {
-    private final Connection connection;
+    private final CachedConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final BlockingQueue<CachedConnection> readers;
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final Set<String> preparedSql = ConcurrentHashMap.newKeySet();
+    private final int statementCacheSize;
 
-    private static final String file = "forum.db";
+    private static final String defaultFile = "forum.db";
+    private static final int defaultStatementCacheSize = 64;
 
     public SQLiteDatabase() {
+        this(defaultFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SQLiteDatabase(String file, int readerCount) {
+        this(file, readerCount, defaultStatementCacheSize);
+    }
+
+    // statementCacheSize to liczba skompilowanych zapytań trzymanych przez każde połączenie (co najmniej 1)
+    SQLiteDatabase(String file, int readerCount, int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
         try {
-            connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+            writer = connect(file);
             init();
+            readers = new ArrayBlockingQueue<>(readerCount);
+            for (var i = 0; i < readerCount; i++)
+                readers.add(connect(file));
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    // stworzenie tabel na dane, jeśli wcześniej nie istniały
+    // otwarcie połączenia do pliku bazy danych;
+    // tryb WAL sprawia, że odczyty nie czekają na zapisy i na odwrót
+    private CachedConnection connect(String file) throws SQLException {
+        var connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+        try (var statement = connection.createStatement()) {
+            statement.execute("pragma journal_mode = wal");
+            statement.execute("pragma synchronous = normal");
+            statement.execute("pragma busy_timeout = 5000");
+        }
+        return new CachedConnection(connection);
+    }
+
+    // liczba zapytań, które zostały wzięte z cache'u
+    public long statementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    // liczba zapytań, które musiały zostać skompilowane
+    public long statementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    // doprowadzenie schematu bazy do najnowszej wersji (zobacz SQLiteMigrations)
     private void init() {
-        update("create table if not exists users " +
-                "(id integer primary key autoincrement, " +
-                "name text not null unique, " +
-                "email text default null, " +
-                "joined_time integer not null, " +
-                "password_hash blob not null, " +
-                "password_salt blob not null, " +
-                "points integer not null default 0)");
-
-        update("create table if not exists communities " +
-                "(id integer primary key autoincrement, " +
-                "name text not null unique, " +
-                "description text not null, " +
-                "owner integer not null references users on delete cascade, " +
-                "created_time integer not null)");
-
-        update("create table if not exists posts " +
-                "(id integer primary key autoincrement, " +
-                "title text not null, " +
-                "content text not null, " +
-                "sender integer not null references users on delete cascade, " +
-                "community integer not null references communities on delete cascade, " +
-                "sent_time integer not null, " +
-                "points integer not null default 0, " +
-                "edited_time integer default null)");
-
-        update("create table if not exists comments " +
-                "(id integer primary key autoincrement, " +
-                "content text not null, " +
-                "sender integer not null references users on delete cascade, " +
-                "post integer not null references posts on delete cascade, " +
-                "parent integer references comments on delete cascade, " +
-                "sent_time integer not null, " +
-                "points integer not null default 0, " +
-                "edited_time integer default null)");
-
-        update("create table if not exists subscribers " +
-                "(user integer not null references users on delete cascade, " +
-                "community integer not null references communities on delete cascade, " +
-                "subscribed_time integer not null, " +
-                "moderator integer not null default 0, " +
-                "primary key (user, community))");
-
-        update("create table if not exists post_votes " +
-                "(voter integer not null references users on delete cascade, " +
-                "post integer not null references posts on delete cascade, " +
-                "upvote integer not null, " +
-                "vote_time integer not null, " +
-                "primary key (voter, post))");
-
-        update("create table if not exists comment_votes " +
-                "(voter integer not null references users on delete cascade, " +
-                "comment integer not null references comments on delete cascade, " +
-                "upvote integer not null, " +
-                "vote_time integer not null, " +
-                "primary key (voter, comment))");
+        write(connection -> {
+            SQLiteMigrations.migrate(connection.connection);
+            return null;
+        });
+    }
+
+    // plany wykonania (EXPLAIN QUERY PLAN) wszystkich dotychczas skompilowanych zapytań odczytujących i usuwających;
+    // kluczem jest tekst zapytania, a wartością lista kroków planu; używane przez QueryPlanCheck
+    Map<String, List<String>> queryPlans() {
+        var plans = new TreeMap<String, List<String>>();
+        for (var sql : preparedSql) {
+            if (!sql.startsWith("select") && !sql.startsWith("with") && !sql.startsWith("delete"))
+                continue;
+            plans.put(sql, read(connection -> {
+                try (var statement = connection.connection.prepareStatement("explain query plan " + sql);
+                     var result = statement.executeQuery()) {
+                    var plan = new ArrayList<String>();
+                    while (result.next())
+                        plan.add(result.getString("detail"));
+                    return plan;
+                }
+            }));
+        }
+        return plans;
     }
 
+    // przeliczenie liczników głosów i subskrybentów od nowa (zobacz CounterBackfill)
+    void backfillCounters() {
+        transaction(connection -> {
+            for (var sql : SQLiteMigrations.backfillCounters())
+                connection.statement(sql).executeUpdate();
+            return null;
+        });
+    }
+
+    // liczby kolumn w tabelach;
+    // w złączeniach kolumny kolejnych tabel następują po sobie, więc są potrzebne do wyznaczania ich pozycji
+    private static final int userColumns = 7;
+    private static final int communityColumns = 6;
+    private static final int postColumns = 9;
+    private static final int commentColumns = 9;
+    private static final int relationColumns = 4; // subscribers, post_votes i comment_votes
+
     // metody konstruujące obiekty z pakietu forum.entities na podstawie rekordów w bazie danych
 
     private static User user(ResultSet result, int column) {
@@ -106,7 +142,7 @@ public class SQLiteDatabase implements Database {
             return new Community(result.getLong(column),
                     result.getString(column + 1),
                     result.getString(column + 2),
-                    user(result, column + 5),
+                    user(result, column + communityColumns),
                     result.getLong(column + 4));
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -118,8 +154,8 @@ public class SQLiteDatabase implements Database {
             return new Post(result.getLong(column),
                     result.getString(column + 1),
                     result.getString(column + 2),
-                    user(result, column + 8),
-                    community(result, column + 15),
+                    user(result, column + postColumns),
+                    community(result, column + postColumns + userColumns),
                     result.getLong(column + 5),
                     result.getLong(column + 6),
                     optionalLong(result, column + 7));
@@ -132,8 +168,8 @@ public class SQLiteDatabase implements Database {
         try {
             return new Comment(result.getLong(column),
                     result.getString(column + 1),
-                    user(result, column + 8),
-                    post(result, column + 15),
+                    user(result, column + commentColumns),
+                    post(result, column + commentColumns + userColumns),
                     optionalLong(result, column + 4),
                     result.getLong(column + 5),
                     result.getLong(column + 6),
@@ -143,10 +179,38 @@ public class SQLiteDatabase implements Database {
         }
     }
 
+    // skrócone dane na listy; kolumny są wybierane jawnie przez selectPostSummary i selectCommentSummary
+
+    private static PostSummary postSummary(ResultSet result) {
+        try {
+            return new PostSummary(result.getLong(1),
+                    result.getString(2),
+                    result.getString(3),
+                    result.getString(4),
+                    result.getLong(5),
+                    result.getLong(6));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static CommentSummary commentSummary(ResultSet result) {
+        try {
+            return new CommentSummary(result.getLong(1),
+                    result.getLong(2),
+                    result.getString(3),
+                    result.getString(4),
+                    result.getLong(5),
+                    result.getLong(6));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private static Subscriber subscriber(ResultSet result) {
         try {
-            return new Subscriber(user(result, 1 + 4),
-                    community(result, 1 + 11),
+            return new Subscriber(user(result, 1 + relationColumns),
+                    community(result, 1 + relationColumns + userColumns),
                     result.getLong(1 + 2),
                     result.getBoolean(1 + 3));
         } catch (SQLException e) {
@@ -156,8 +220,8 @@ public class SQLiteDatabase implements Database {
 
     private static PostVote postVote(ResultSet result) {
         try {
-            return new PostVote(user(result, 1 + 4),
-                    post(result, 1 + 11),
+            return new PostVote(user(result, 1 + relationColumns),
+                    post(result, 1 + relationColumns + userColumns),
                     result.getBoolean(1 + 2),
                     result.getLong(1 + 3));
         } catch (SQLException e) {
@@ -167,8 +231,8 @@ public class SQLiteDatabase implements Database {
 
     private static CommentVote commentVote(ResultSet result) {
         try {
-            return new CommentVote(user(result, 1 + 4),
-                    comment(result, 1 + 11),
+            return new CommentVote(user(result, 1 + relationColumns),
+                    comment(result, 1 + relationColumns + userColumns),
                     result.getBoolean(1 + 2),
                     result.getLong(1 + 3));
         } catch (SQLException e) {
@@ -189,6 +253,18 @@ public class SQLiteDatabase implements Database {
             "join users as comment_sender on comments.sender = comment_sender.id " +
             "join posts on comments.post = posts.id " + joinPost;
 
+    private static final String selectPostSummary =
+            "select posts.id, posts.title, post_sender.name, communities.name, posts.sent_time, posts.points " +
+            "from posts " +
+            "join users as post_sender on posts.sender = post_sender.id " +
+            "join communities on posts.community = communities.id ";
+
+    private static final String selectCommentSummary =
+            "select comments.id, comments.post, posts.title, comment_sender.name, comments.sent_time, comments.points " +
+            "from comments " +
+            "join users as comment_sender on comments.sender = comment_sender.id " +
+            "join posts on comments.post = posts.id ";
+
     private static final String joinSubscriber =
             "join users as user on subscribers.user = user.id " +
             "join communities on subscribers.community = communities.id " + joinCommunity;
@@ -201,6 +277,9 @@ public class SQLiteDatabase implements Database {
             "join users as voter on comment_votes.voter = voter.id " +
             "join comments on comment_votes.comment = comments.id " + joinComment;
 
+    // kursor pierwszej strony list uporządkowanych malejąco według (klucz, id)
+    private static final Cursor firstPage = new Cursor(Long.MAX_VALUE, Long.MAX_VALUE);
+
     @Override
     public User newUser(String name, Optional<String> email, long time, byte[] passwordHash, byte[] passwordSalt) {
         var id = insert(
@@ -208,100 +287,86 @@ public class SQLiteDatabase implements Database {
                 "(name, email, joined_time, password_hash, password_salt) " +
                 "values (?, ?, ?, ?, ?)",
                 name, email, time, passwordHash, passwordSalt);
-        var result = query("select * from users where id = ?", id);
-        next(result);
-        return user(result, 1);
+        return queryOne(r -> user(r, 1), "select * from users where id = ?", id).orElseThrow();
     }
 
     @Override
     public Optional<User> getUser(long id) {
-        var result = query("select * from users where id = ?", id);
-        return next(result) ? Optional.of(user(result, 1)) : Optional.empty();
+        return queryOne(r -> user(r, 1), "select * from users where id = ?", id);
     }
 
     @Override
     public Optional<User> getUserByName(String name) {
-        var result = query("select * from users where name = ?", name);
-        return next(result) ? Optional.of(user(result, 1)) : Optional.empty();
+        return queryOne(r -> user(r, 1), "select * from users where name = ?", name);
     }
 
     @Override
-    public List<Post> getUserPosts(long id) {
-        var result = query(
-                "select * from posts " + joinPost +
-                "where posts.sender = ? " +
-                "order by posts.sent_time desc",
-                id);
-        var list = new ArrayList<Post>();
-        while (next(result))
-            list.add(post(result, 1));
-        return list;
+    public List<PostSummary> getUserPosts(long id, Optional<Cursor> after, int limit) {
+        var cursor = after.orElse(firstPage);
+        return queryList(SQLiteDatabase::postSummary,
+                selectPostSummary +
+                "where posts.sender = ? and (posts.sent_time, posts.id) < (?, ?) " +
+                "order by posts.sent_time desc, posts.id desc " +
+                "limit ?",
+                id, cursor.key, cursor.id, limit);
     }
 
     @Override
-    public List<Comment> getUserComments(long id) {
-        var result = query(
-                "select * from comments " + joinComment +
-                "where comments.sender = ? " +
-                "order by comments.sent_time desc",
-                id);
-        var list = new ArrayList<Comment>();
-        while (next(result))
-            list.add(comment(result, 1));
-        return list;
+    public List<CommentSummary> getUserComments(long id, Optional<Cursor> after, int limit) {
+        var cursor = after.orElse(firstPage);
+        return queryList(SQLiteDatabase::commentSummary,
+                selectCommentSummary +
+                "where comments.sender = ? and (comments.sent_time, comments.id) < (?, ?) " +
+                "order by comments.sent_time desc, comments.id desc " +
+                "limit ?",
+                id, cursor.key, cursor.id, limit);
     }
 
     @Override
     public List<Subscriber> getUserSubscriptions(long id) {
-        var result = query(
+        return queryList(SQLiteDatabase::subscriber,
                 "select * from subscribers " + joinSubscriber +
                 "where subscribers.user = ? " +
                 "order by communities.name",
                 id);
-        var list = new ArrayList<Subscriber>();
-        while (next(result))
-            list.add(subscriber(result));
-        return list;
     }
 
     @Override
     public List<PostVote> getUserPostVotes(long id) {
-        var result = query(
+        return queryList(SQLiteDatabase::postVote,
                 "select * from post_votes " + joinPostVote +
                 "where post_votes.voter = ? " +
                 "order by post_votes.vote_time desc",
                 id);
-        var list = new ArrayList<PostVote>();
-        while (next(result))
-            list.add(postVote(result));
-        return list;
     }
 
     @Override
     public List<CommentVote> getUserCommentVotes(long id) {
-        var result = query(
+        return queryList(SQLiteDatabase::commentVote,
                 "select * from comment_votes " + joinCommentVote +
                 "where comment_votes.voter = ? " +
                 "order by comment_votes.vote_time desc",
                 id);
-        var list = new ArrayList<CommentVote>();
-        while (next(result))
-            list.add(commentVote(result));
-        return list;
     }
 
     @Override
-    public List<Post> getUserSubscriptionsPosts(long id, long newerThan) {
-        var result = query(
-                "select * from posts " + joinPost +
+    public List<Long> getUserSubscriptionIds(long id, long minSubscribers, long maxSubscribers) {
+        return queryList(SQLiteDatabase::number,
+                "select subscribers.community from subscribers " +
+                "join communities on subscribers.community = communities.id " +
+                "where subscribers.user = ? and communities.subscribers between ? and ?",
+                id, minSubscribers, maxSubscribers);
+    }
+
+    @Override
+    public List<PostSummary> getUserSubscriptionsPosts(long id, long newerThan, long maxSubscribers, int limit) {
+        return queryList(SQLiteDatabase::postSummary,
+                selectPostSummary +
                 "join subscribers on posts.community = subscribers.community " +
-                "where subscribers.user = ? and posts.sent_time > ? " +
-                "order by posts.sent_time desc",
-                id, newerThan);
-        var list = new ArrayList<Post>();
-        while (next(result))
-            list.add(post(result, 1));
-        return list;
+                "where subscribers.user = ? and posts.sent_time > ? and communities.subscribers <= ? " +
+                "order by posts.sent_time desc " +
+                "limit ?",
+                id, newerThan, maxSubscribers, limit);
     }
 
     @Override
@@ -340,12 +405,10 @@ public class SQLiteDatabase implements Database {
                 "(name, description, owner, created_time) " +
                 "values (?, ?, ?, ?)",
                 name, description, creatorId, time);
-        var result = query(
+        return queryOne(r -> community(r, 1),
                 "select * from communities " + joinCommunity +
                 "where communities.id = ?",
-                id);
-        next(result);
-        return community(result, 1);
+                id).orElseThrow();
     }
 
     @Override
@@ -358,68 +421,61 @@ public class SQLiteDatabase implements Database {
 
     @Override
     public Optional<Community> getCommunity(long id) {
-        var result = query(
+        return queryOne(r -> community(r, 1),
                 "select * from communities " + joinCommunity +
                 "where communities.id = ?",
                 id);
-        return next(result) ? Optional.of(community(result, 1)) : Optional.empty();
     }
 
     @Override
     public Optional<Community> getCommunityByName(String name) {
-        var result = query(
+        return queryOne(r -> community(r, 1),
                 "select * from communities " + joinCommunity +
                 "where communities.name = ?",
                 name);
-        return next(result) ? Optional.of(community(result, 1)) : Optional.empty();
     }
 
     @Override
     public Optional<Subscriber> getSubscriber(long userId, long communityId) {
-        var result = query(
+        return queryOne(SQLiteDatabase::subscriber,
                 "select * from subscribers " + joinSubscriber +
                 "where subscribers.user = ? and subscribers.community = ?",
                 userId, communityId);
-        return next(result) ? Optional.of(subscriber(result)) : Optional.empty();
     }
 
     @Override
-    public List<Community> getCommunities(long from, long to) {
-        var result = query(
+    public List<Community> getCommunities(Optional<String> afterName, int limit) {
+        return queryList(r -> community(r, 1),
                 "select * from communities " + joinCommunity +
+                "where communities.name > ? " +
                 "order by communities.name " +
-                "limit ? offset ?",
-                to - from, from);
-        var list = new ArrayList<Community>();
-        while (next(result))
-            list.add(community(result, 1));
-        return list;
+                "limit ?",
+                afterName.orElse(""), limit);
     }
 
     @Override
     public List<Subscriber> getCommunitySubscribers(long id) {
-        var result = query(
+        return queryList(SQLiteDatabase::subscriber,
                 "select * from subscribers " + joinSubscriber +
                 "where subscribers.community = ? " +
                 "order by subscribers.subscribed_time desc",
                 id);
-        var list = new ArrayList<Subscriber>();
-        while (next(result))
-            list.add(subscriber(result));
-        return list;
     }
 
     @Override
-    public List<Post> getCommunityPosts(long id, long newerThan, long olderThan) {
-        var result = query(
-                "select * from posts " + joinPost +
-                "where posts.community = ? and posts.sent_time > ? and posts.sent_time <= ? " +
-                "order by posts.sent_time desc",
-                id, newerThan, olderThan);
-        var list = new ArrayList<Post>();
-        while (next(result))
-            list.add(post(result, 1));
-        return list;
+    public long countCommunitySubscribers(long id) {
+        return queryOne(SQLiteDatabase::number, "select subscribers from communities where id = ?", id).orElse(0L);
+    }
+
+    @Override
+    public List<PostSummary> getCommunityPosts(long id, long newerThan, Optional<Cursor> after, int limit) {
+        var cursor = after.orElse(firstPage);
+        return queryList(SQLiteDatabase::postSummary,
+                selectPostSummary +
+                "where posts.community = ? and posts.sent_time > ? and (posts.sent_time, posts.id) < (?, ?) " +
+                "order by posts.sent_time desc, posts.id desc " +
+                "limit ?",
+                id, newerThan, cursor.key, cursor.id, limit);
     }
 
     @Override
@@ -465,88 +521,87 @@ public class SQLiteDatabase implements Database {
                 "(sender, community, title, content, sent_time) " +
                 "values (?, ?, ?, ?, ?)",
                 senderId, communityId, title, content, time);
-        var result = query(
+        return queryOne(r -> post(r, 1),
                 "select * from posts " + joinPost +
                 "where posts.id = ?",
-                id);
-        next(result);
-        return post(result, 1);
+                id).orElseThrow();
     }
 
     @Override
-    public void newPostVote(long voterId, long postId, boolean upvote, long time) {
-        insert("insert into post_votes " +
-                "(voter, post, upvote, vote_time) " +
-                "values (?, ?, ?, ?)",
-                voterId, postId, upvote, time);
+    public long votePost(long voterId, long postId, boolean upvote, long time) {
+        return vote("post_votes", "post", "posts", voterId, postId, upvote, time);
     }
 
     @Override
     public Optional<Post> getPost(long id) {
-        var result = query(
+        return queryOne(r -> post(r, 1),
                 "select * from posts " + joinPost +
                 "where posts.id = ?",
                 id);
-        return next(result) ? Optional.of(post(result, 1)) : Optional.empty();
     }
 
     @Override
     public Optional<PostVote> getPostVote(long voterId, long postId) {
-        var result = query(
+        return queryOne(SQLiteDatabase::postVote,
                 "select * from post_votes " + joinPostVote +
                 "where post_votes.voter = ? and post_votes.post = ?",
                 voterId, postId);
-        return next(result) ? Optional.of(postVote(result)) : Optional.empty();
     }
 
     @Override
-    public List<Comment> getPostComments(long id) {
-        var result = query(
+    public List<Comment> getPostRootComments(long id, CommentPage.Order order, Optional<Cursor> after, int limit) {
+        var key = orderKey(order);
+        var cursor = after.orElse(firstPage);
+        return queryList(r -> comment(r, 1),
                 "select * from comments " + joinComment +
-                "where comments.post = ? " +
-                "order by comments.sent_time desc",
-                id);
-        var list = new ArrayList<Comment>();
-        while (next(result))
-            list.add(comment(result, 1));
-        return list;
+                "where comments.post = ? and comments.parent is null " +
+                "and (comments." + key + ", comments.id) < (?, ?) " +
+                "order by comments." + key + " desc, comments.id desc " +
+                "limit ?",
+                id, cursor.key, cursor.id, limit);
+    }
+
+    // identyfikatory rodziców są przekazywane jako tablica JSON, aby treść zapytania nie zależała od ich liczby;
+    // dla każdego rodzica podzapytanie wybiera co najwyżej limitPerComment odpowiedzi z indeksu
+    @Override
+    public List<Comment> getCommentReplies(List<Long> ids, CommentPage.Order order, int limitPerComment) {
+        var key = orderKey(order);
+        var json = ids.stream().map(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+        return queryList(r -> comment(r, 1),
+                "select * from comments " + joinComment +
+                "where comments.id in (" +
+                "select replies.id from json_each(?) as parents " +
+                "join comments as replies on replies.id in (" +
+                "select id from comments where parent = parents.value " +
+                "order by " + key + " desc, id desc limit ?)) " +
+                "order by comments." + key + " desc, comments.id desc",
+                json, limitPerComment);
+    }
+
+    private static String orderKey(CommentPage.Order order) {
+        return order == CommentPage.Order.Top ? "points" : "sent_time";
     }
 
     @Override
     public List<PostVote> getPostVotes(long id) {
-        var result = query(
+        return queryList(SQLiteDatabase::postVote,
                 "select * from post_votes " + joinPostVote +
                 "where post_votes.post = ? " +
                 "order by post_votes.vote_time desc",
                 id);
-        var list = new ArrayList<PostVote>();
-        while (next(result))
-            list.add(postVote(result));
-        return list;
     }
 
     @Override
-    public void editPost(long id, String content, long time) {
-        update("update posts " +
-                "set content = ?, edited_time = ? " +
-                "where id = ?",
-                content, time, id);
+    public long countPostVotes(long id) {
+        return queryOne(SQLiteDatabase::number, "select votes from posts where id = ?", id).orElse(0L);
     }
 
     @Override
-    public void addPostPoints(long id, long points) {
+    public void editPost(long id, String content, long time) {
         update("update posts " +
-                "set points = points + ? " +
+                "set content = ?, edited_time = ? " +
                 "where id = ?",
-                points, id);
-    }
-
-    @Override
-    public void flipPostVote(long voterId, long postId, long time) {
-        update("update post_votes " +
-                "set upvote = not upvote, vote_time = ? " +
-                "where voter = ? and post = ?",
-                time, voterId, postId);
+                content, time, id);
     }
 
     @Override
@@ -555,10 +610,8 @@ public class SQLiteDatabase implements Database {
     }
 
     @Override
-    public void deletePostVote(long voterId, long postId) {
-        update("delete from post_votes " +
-                "where voter = ? and post = ?",
-                voterId, postId);
+    public long unvotePost(long voterId, long postId) {
+        return unvote("post_votes", "post", "posts", voterId, postId);
     }
 
     @Override
@@ -568,67 +621,65 @@ public class SQLiteDatabase implements Database {
                 "(sender, post, parent, content, sent_time) " +
                 "values (?, ?, ?, ?, ?)",
                 senderId, postId, parent, content, time);
-        var result = query(
+        return queryOne(r -> comment(r, 1),
                 "select * from comments " + joinComment +
                 "where comments.id = ?",
-                id);
-        next(result);
-        return comment(result, 1);
+                id).orElseThrow();
     }
 
     @Override
-    public void newCommentVote(long voterId, long commentId, boolean upvote, long time) {
-        insert("insert into comment_votes " +
-                "(voter, comment, upvote, vote_time) " +
-                "values (?, ?, ?, ?)",
-                voterId, commentId, upvote, time);
+    public long voteComment(long voterId, long commentId, boolean upvote, long time) {
+        return vote("comment_votes", "comment", "comments", voterId, commentId, upvote, time);
     }
 
     @Override
     public Optional<Comment> getComment(long id) {
-        var result = query(
+        return queryOne(r -> comment(r, 1),
                 "select * from comments " + joinComment +
                 "where comments.id = ?",
                 id);
-        return next(result) ? Optional.of(comment(result, 1)) : Optional.empty();
     }
 
     @Override
     public Optional<CommentVote> getCommentVote(long voterId, long commentId) {
-        var result = query(
+        return queryOne(SQLiteDatabase::commentVote,
                 "select * from comment_votes " + joinCommentVote +
                 "where comment_votes.voter = ? and comment_votes.comment = ?",
                 voterId, commentId);
-        return next(result) ? Optional.of(commentVote(result)) : Optional.empty();
     }
 
-    @Override
-    public List<Comment> getCommentDescendants(long id) {
-        var result = query(
+    // całe poddrzewo jest wczytywane jednym rekurencyjnym zapytaniem;
+    // rekurencja przechodzi drzewo wszerz, więc przy przekroczeniu limitu odcinane są najgłębsze komentarze,
+    // a każdy zwrócony komentarz ma rodzica wśród zwróconych (albo jest dzieckiem komentarza id);
+    // tabela descendants jest dołączana na końcu, aby nie zmieniać pozycji kolumn odczytywanych przez comment()
+    @Override
+    public List<Comment> getCommentDescendants(long id, int maxDepth, int limit) {
+        return queryList(r -> comment(r, 1),
+                "with recursive descendants (id, depth) as (" +
+                "select id, 1 from comments where parent = ? " +
+                "union all " +
+                "select comments.id, descendants.depth + 1 from descendants " +
+                "join comments on comments.parent = descendants.id " +
+                "where descendants.depth < ? " +
+                "limit ?) " +
                 "select * from comments " + joinComment +
-                "where comments.parent = ? " +
+                "join descendants on comments.id = descendants.id " +
                 "order by comments.sent_time desc",
-                id);
-        var list = new ArrayList<Comment>();
-        while (next(result))
-            list.add(comment(result, 1));
-        var length = list.size();
-        for (var i = 0; i < length; i++)
-            list.addAll(getCommentDescendants(list.get(i).id));
-        return list;
+                id, maxDepth, limit);
     }
 
     @Override
     public List<CommentVote> getCommentVotes(long id) {
-        var result = query(
+        return queryList(SQLiteDatabase::commentVote,
                 "select * from comment_votes " + joinCommentVote +
                 "where comment_votes.comment = ? " +
                 "order by comments.sent_time desc",
                 id);
-        var list = new ArrayList<CommentVote>();
-        while (next(result))
-            list.add(commentVote(result));
-        return list;
+    }
+
+    @Override
+    public long countCommentVotes(long id) {
+        return queryOne(SQLiteDatabase::number, "select votes from comments where id = ?", id).orElse(0L);
     }
 
     @Override
@@ -640,72 +691,217 @@ public class SQLiteDatabase implements Database {
     }
 
     @Override
-    public void addCommentPoints(long id, long points) {
-        update("update comments " +
-                "set points = points + ? " +
-                "where id = ?",
-                points, id);
+    public void deleteComment(long id) {
+        update("delete from comments where id = ?", id);
     }
 
     @Override
-    public void flipCommentVote(long voterId, long commentId, long time) {
-        update("update comment_votes " +
-                "set upvote = not upvote, vote_time = ? " +
-                "where voter = ? and comment = ?",
-                time, voterId, commentId);
+    public long unvoteComment(long voterId, long commentId) {
+        return unvote("comment_votes", "comment", "comments", voterId, commentId);
+    }
+
+    // głosy na posty i komentarze są zapisywane tak samo (różnią się tylko nazwami tabel);
+    // głos i zmiana punktów są wykonywane w jednej transakcji, a odczyt poprzedniego głosu odbywa się
+    // pod blokadą połączenia do zapisu, więc jednoczesne głosy tego samego użytkownika nie mogą się przeplatać;
+    // zwracana jest zmiana punktów (0, jeśli nic się nie zmieniło)
+
+    private long vote(String votes, String column, String targets, long voterId, long targetId, boolean upvote, long time) {
+        return transaction(connection -> {
+            var previous = queryOne(SQLiteDatabase::number,
+                    "select upvote from " + votes + " where voter = ? and " + column + " = ?",
+                    voterId, targetId);
+
+            long points;
+            if (previous.isEmpty()) {
+                insert("insert into " + votes + " " +
+                        "(voter, " + column + ", upvote, vote_time) " +
+                        "values (?, ?, ?, ?)",
+                        voterId, targetId, upvote, time);
+                points = upvote ? +1 : -1;
+            } else if ((previous.get() != 0) != upvote) {
+                update("update " + votes + " " +
+                        "set upvote = not upvote, vote_time = ? " +
+                        "where voter = ? and " + column + " = ?",
+                        time, voterId, targetId);
+                points = upvote ? +2 : -2;
+            } else
+                return 0L;
+
+            addPoints(targets, targetId, points);
+            return points;
+        });
+    }
+
+    private long unvote(String votes, String column, String targets, long voterId, long targetId) {
+        return transaction(connection -> {
+            var previous = queryOne(SQLiteDatabase::number,
+                    "select upvote from " + votes + " where voter = ? and " + column + " = ?",
+                    voterId, targetId);
+            if (previous.isEmpty())
+                return 0L;
+
+            update("delete from " + votes + " " +
+                    "where voter = ? and " + column + " = ?",
+                    voterId, targetId);
+            var points = previous.get() != 0 ? -1L : +1L;
+            addPoints(targets, targetId, points);
+            return points;
+        });
+    }
+
+    private void addPoints(String targets, long targetId, long points) {
+        update("update " + targets + " " +
+                "set points = points + ? " +
+                "where id = ?",
+                points, targetId);
     }
 
-    @Override
-    public void deleteComment(long id) {
-        update("delete from comments where id = ?", id);
+    // wykonanie kilku operacji (np. głosów) w jednej transakcji, czyli z jednym zatwierdzeniem zmian;
+    // używane przez GroupCommitDatabase
+    void batch(Runnable operations) {
+        transaction(connection -> {
+            operations.run();
+            return null;
+        });
     }
 
-    @Override
-    public void deleteCommentVote(long voterId, long commentId) {
-        update("delete from comment_votes " +
-                "where voter = ? and comment = ?",
-                voterId, commentId);
-    }
+    // sesje użytkowników zapisywane przez SQLiteSessionManager; nie są częścią interfejsu Database,
+    // ponieważ dotyczą serwera, a nie logiki forum
 
-    // pomocnicze metody wykonujące różne rodzaje zapytań SQL
+    Optional<StoredSession> getSession(long id) {
+        return queryOne(SQLiteDatabase::storedSession,
+                "select data, created_time, expires_time from sessions where id = ?", id);
+    }
 
-    private ResultSet query(String sql, Object... arguments) {
+    private static StoredSession storedSession(ResultSet result) {
         try {
-            return statement(sql, arguments).executeQuery();
+            return new StoredSession(result.getString(1), result.getLong(2), result.getLong(3));
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // istniejąca sesja zachowuje swój czas utworzenia
+    void saveSession(long id, String data, long createdTime, long expiresTime) {
+        update("insert into sessions " +
+                "(id, data, created_time, expires_time) " +
+                "values (?, ?, ?, ?) " +
+                "on conflict (id) do update set data = excluded.data, expires_time = excluded.expires_time",
+                id, data, createdTime, expiresTime);
+    }
+
+    // usunięcie co najwyżej limit sesji wygasłych przed time; zwraca liczbę usuniętych sesji,
+    // więc usuwanie wszystkich wygasłych sesji można podzielić na krótkie transakcje
+    int deleteExpiredSessions(long time, int limit) {
+        return write(connection -> connection.statement(
+                "delete from sessions where id in " +
+                "(select id from sessions where expires_time <= ? limit ?)",
+                time, limit).executeUpdate());
+    }
+
+    static class StoredSession {
+        final String data; // dane sesji (zobacz CookieSessionManager.encodeStore)
+        final long createdTime;
+        final long expiresTime;
+
+        private StoredSession(String data, long createdTime, long expiresTime) {
+            this.data = data;
+            this.createdTime = createdTime;
+            this.expiresTime = expiresTime;
+        }
+    }
+
+    // pomocnicze metody wykonujące różne rodzaje zapytań SQL;
+    // zapytania odczytujące dostają połączenie z puli, a wynik jest w całości czytany przed jego zwróceniem;
+    // same zapytania zostają w cache'u połączenia, ale ich wyniki są zawsze zamykane
+
+    private <T> Optional<T> queryOne(Function<ResultSet, T> mapper, String sql, Object... arguments) {
+        return read(connection -> {
+            try (var result = connection.statement(sql, arguments).executeQuery()) {
+                return result.next() ? Optional.of(mapper.apply(result)) : Optional.empty();
+            }
+        });
+    }
+
+    private <T> List<T> queryList(Function<ResultSet, T> mapper, String sql, Object... arguments) {
+        return read(connection -> {
+            try (var result = connection.statement(sql, arguments).executeQuery()) {
+                var list = new ArrayList<T>();
+                while (result.next())
+                    list.add(mapper.apply(result));
+                return list;
+            }
+        });
+    }
+
     private long insert(String sql, Object... arguments) {
-        try {
-            var statement = statement(sql, arguments);
+        return write(connection -> {
+            var statement = connection.statement(sql, arguments);
             statement.executeUpdate();
-            return statement.getGeneratedKeys().getLong(1);
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+            try (var keys = statement.getGeneratedKeys()) {
+                return keys.getLong(1);
+            }
+        });
     }
 
     private void update(String sql, Object... arguments) {
-        try {
-            statement(sql, arguments).executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        write(connection -> connection.statement(sql, arguments).executeUpdate());
+    }
+
+    // połączenie z cache'em skompilowanych zapytań (kluczem jest tekst zapytania);
+    // cache jest typu LRU - przy przepełnieniu zamykane jest najdawniej używane zapytanie;
+    // połączenie jest używane przez jeden wątek naraz, więc cache nie wymaga synchronizacji
+    private class CachedConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= statementCacheSize)
+                    return false;
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+                return true;
+            }
+        };
+
+        private CachedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        // pomocnicza metoda zwracająca (skompilowane wcześniej lub nowe) zapytanie SQL z argumentami;
+        // każde zwrócone zapytanie jest wykonywane, więc tu są liczone zapytania w QueryCounter
+        private PreparedStatement statement(String sql, Object... arguments) throws SQLException {
+            QueryCounter.record();
+            var statement = statements.get(sql);
+            if (statement != null)
+                statementCacheHits.increment();
+            else {
+                statementCacheMisses.increment();
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+                preparedSql.add(sql);
+            }
+
+            statement.clearParameters();
+            bind(statement, arguments);
+            return statement;
         }
     }
 
-    // pomocnicza metoda konstruująca zapytanie SQL z argumentami
+    // pomocnicza metoda wpisująca argumenty do zapytania SQL
     @SuppressWarnings("unchecked")
-    private PreparedStatement statement(String sql, Object... arguments) throws SQLException {
-        var statement = connection.prepareStatement(sql);
-
+    private static void bind(PreparedStatement statement, Object... arguments) throws SQLException {
         for (var i = 1; i <= arguments.length; i++) {
             var arg = arguments[i - 1];
             if (arg instanceof String)
                 statement.setString(i, (String) arg);
             else if (arg instanceof Long)
                 statement.setLong(i, (Long) arg);
+            else if (arg instanceof Integer)
+                statement.setInt(i, (Integer) arg);
             else if (arg instanceof Boolean)
                 statement.setBoolean(i, (Boolean) arg);
             else if (arg instanceof byte[])
@@ -714,21 +910,86 @@ public class SQLiteDatabase implements Database {
                 var optional = (Optional<String>) arg;
                 if (optional.isPresent())
                     statement.setString(i, optional.get());
+                else
+                    statement.setNull(i, Types.VARCHAR);
             } else if (arg instanceof OptionalLong) {
                 var optional = (OptionalLong) arg;
                 if (optional.isPresent())
                     statement.setLong(i, optional.getAsLong());
+                else
+                    statement.setNull(i, Types.INTEGER);
             }
         }
+    }
+
+    // pomocnicze metody przydzielające połączenia
+
+    private interface ConnectionFunction<T> {
+        T apply(CachedConnection connection) throws SQLException;
+    }
+
+    // wykonanie odczytu na połączeniu z puli;
+    // wątek trzymający połączenie do zapisu czyta przez nie, aby widzieć swoje niezatwierdzone zmiany
+    private <T> T read(ConnectionFunction<T> function) {
+        if (writerLock.isHeldByCurrentThread())
+            return write(function);
+
+        CachedConnection connection;
+        try {
+            connection = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        try {
+            return function.apply(connection);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            readers.add(connection);
+        }
+    }
+
+    // wykonanie kilku operacji w jednej transakcji na połączeniu do zapisu;
+    // zagnieżdżone wywołania (także przez insert() i update()) dołączają do zewnętrznej transakcji
+    private <T> T transaction(ConnectionFunction<T> function) {
+        return write(connection -> {
+            var jdbc = connection.connection;
+            if (!jdbc.getAutoCommit())
+                return function.apply(connection);
+
+            jdbc.setAutoCommit(false);
+            try {
+                var result = function.apply(connection);
+                jdbc.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                jdbc.rollback();
+                throw e;
+            } finally {
+                jdbc.setAutoCommit(true);
+            }
+        });
+    }
 
-        return statement;
+    // wykonanie zapisu na jedynym połączeniu do zapisu
+    private <T> T write(ConnectionFunction<T> function) {
+        writerLock.lock();
+        try {
+            return function.apply(writer);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            writerLock.unlock();
+        }
     }
 
     // pomocnicze metody do przeglądania wyników zapytań SQL
 
-    private static boolean next(ResultSet result) {
+    private static long number(ResultSet result) {
         try {
-            return result.next();
+            return result.getLong(1);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,169 @@
+package impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// wersjonowane migracje schematu bazy SQLite;
+// wersja schematu jest trzymana w "pragma user_version",
+// a przy otwarciu bazy wykonywane są (każda w osobnej transakcji) wszystkie migracje, których baza jeszcze nie ma;
+// nowe zmiany schematu należy dopisywać jako kolejne migracje na końcu listy, a nie modyfikować istniejące
+class SQLiteMigrations {
+    private static final List<List<String>> migrations = List.of(
+            // 1: tabele na dane;
+            // "if not exists", ponieważ bazy sprzed wprowadzenia migracji mają wersję 0, ale mają już tabele
+            List.of(
+                    "create table if not exists users " +
+                    "(id integer primary key autoincrement, " +
+                    "name text not null unique, " +
+                    "email text default null, " +
+                    "joined_time integer not null, " +
+                    "password_hash blob not null, " +
+                    "password_salt blob not null, " +
+                    "points integer not null default 0)",
+
+                    "create table if not exists communities " +
+                    "(id integer primary key autoincrement, " +
+                    "name text not null unique, " +
+                    "description text not null, " +
+                    "owner integer not null references users on delete cascade, " +
+                    "created_time integer not null)",
+
+                    "create table if not exists posts " +
+                    "(id integer primary key autoincrement, " +
+                    "title text not null, " +
+                    "content text not null, " +
+                    "sender integer not null references users on delete cascade, " +
+                    "community integer not null references communities on delete cascade, " +
+                    "sent_time integer not null, " +
+                    "points integer not null default 0, " +
+                    "edited_time integer default null)",
+
+                    "create table if not exists comments " +
+                    "(id integer primary key autoincrement, " +
+                    "content text not null, " +
+                    "sender integer not null references users on delete cascade, " +
+                    "post integer not null references posts on delete cascade, " +
+                    "parent integer references comments on delete cascade, " +
+                    "sent_time integer not null, " +
+                    "points integer not null default 0, " +
+                    "edited_time integer default null)",
+
+                    "create table if not exists subscribers " +
+                    "(user integer not null references users on delete cascade, " +
+                    "community integer not null references communities on delete cascade, " +
+                    "subscribed_time integer not null, " +
+                    "moderator integer not null default 0, " +
+                    "primary key (user, community))",
+
+                    "create table if not exists post_votes " +
+                    "(voter integer not null references users on delete cascade, " +
+                    "post integer not null references posts on delete cascade, " +
+                    "upvote integer not null, " +
+                    "vote_time integer not null, " +
+                    "primary key (voter, post))",
+
+                    "create table if not exists comment_votes " +
+                    "(voter integer not null references users on delete cascade, " +
+                    "comment integer not null references comments on delete cascade, " +
+                    "upvote integer not null, " +
+                    "vote_time integer not null, " +
+                    "primary key (voter, comment))"),
+
+            // 2: indeksy dla zapytań wyszukujących po kluczach obcych;
+            // drugą kolumną jest klucz sortowania, więc wyniki nie wymagają osobnego sortowania
+            List.of(
+                    "create index posts_community on posts (community, sent_time)",
+                    "create index posts_sender on posts (sender, sent_time)",
+                    "create index comments_post on comments (post, sent_time)",
+                    "create index comments_parent on comments (parent, sent_time)",
+                    "create index comments_sender on comments (sender, sent_time)",
+                    "create index subscribers_community on subscribers (community, subscribed_time)",
+                    "create index post_votes_post on post_votes (post, vote_time)",
+                    "create index comment_votes_comment on comment_votes (comment)"),
+
+            // 3: liczniki głosów i subskrybentów;
+            // są one aktualizowane przez wyzwalacze, czyli w tej samej transakcji co dodanie lub usunięcie głosu albo subskrypcji
+            concat(List.of(
+                    "alter table posts add column votes integer not null default 0",
+                    "alter table comments add column votes integer not null default 0",
+                    "alter table communities add column subscribers integer not null default 0",
+
+                    "create trigger post_votes_insert after insert on post_votes begin " +
+                    "update posts set votes = votes + 1 where id = new.post; end",
+                    "create trigger post_votes_delete after delete on post_votes begin " +
+                    "update posts set votes = votes - 1 where id = old.post; end",
+
+                    "create trigger comment_votes_insert after insert on comment_votes begin " +
+                    "update comments set votes = votes + 1 where id = new.comment; end",
+                    "create trigger comment_votes_delete after delete on comment_votes begin " +
+                    "update comments set votes = votes - 1 where id = old.comment; end",
+
+                    "create trigger subscribers_insert after insert on subscribers begin " +
+                    "update communities set subscribers = subscribers + 1 where id = new.community; end",
+                    "create trigger subscribers_delete after delete on subscribers begin " +
+                    "update communities set subscribers = subscribers - 1 where id = old.community; end"),
+                    backfillCounters()),
+
+            // 4: indeksy dla stronicowanych komentarzy posta (zobacz getPostRootComments i getCommentReplies);
+            // indeksy częściowe obejmują tylko komentarze najwyższego poziomu
+            List.of(
+                    "create index comments_roots_new on comments (post, sent_time) where parent is null",
+                    "create index comments_roots_top on comments (post, points) where parent is null",
+                    "create index comments_replies_top on comments (parent, points)"),
+
+            // 5: sesje użytkowników (zobacz SQLiteSessionManager);
+            // indeks po czasie wygaśnięcia pozwala usuwać wygasłe sesje bez przeglądania całej tabeli
+            List.of(
+                    "create table sessions " +
+                    "(id integer primary key, " +
+                    "data text not null, " +
+                    "created_time integer not null, " +
+                    "expires_time integer not null)",
+
+                    "create index sessions_expires on sessions (expires_time)"));
+
+    // przeliczenie liczników od nowa na podstawie istniejących rekordów;
+    // używane przez migrację wprowadzającą liczniki oraz przez CounterBackfill
+    static List<String> backfillCounters() {
+        return List.of(
+                "update posts set votes = " +
+                "(select count(*) from post_votes where post_votes.post = posts.id)",
+                "update comments set votes = " +
+                "(select count(*) from comment_votes where comment_votes.comment = comments.id)",
+                "update communities set subscribers = " +
+                "(select count(*) from subscribers where subscribers.community = communities.id)");
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        var list = new ArrayList<>(first);
+        list.addAll(second);
+        return list;
+    }
+
+    // doprowadzenie schematu bazy do najnowszej wersji
+    static void migrate(Connection connection) throws SQLException {
+        for (var version = version(connection); version < migrations.size(); version++) {
+            connection.setAutoCommit(false);
+            try (var statement = connection.createStatement()) {
+                for (var sql : migrations.get(version))
+                    statement.execute(sql);
+                statement.execute("pragma user_version = " + (version + 1));
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int version(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement();
+             var result = statement.executeQuery("pragma user_version")) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package impl;
+
+import forum.services.Clock;
+import forum.web.Request;
+import forum.web.Response;
+import forum.web.Session;
+import forum.web.SessionManager;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// menedżer sesji zapisujący je w bazie SQLite (tabela sessions), więc restart serwera nikogo nie wylogowuje;
+// przed bazą jest pamięć podręczna sesji, dzięki której getSession() zwykle nie wykonuje zapytania;
+// saveSession() zapisuje sesję tylko wtedy, gdy zmieniły się jej dane albo trzeba przedłużyć jej ważność
+// (co najwyżej raz na pół idleTtlSeconds), a sesje bez danych (niezalogowanych użytkowników) nie są zapisywane wcale;
+// sesja wygasa idleTtlSeconds po ostatnim przedłużeniu albo absoluteTtlSeconds po utworzeniu,
+// a wygasłe sesje co sweepIntervalSeconds są usuwane z bazy w transakcjach po sweepBatchSize;
+// przy przekroczeniu maxCached z pamięci podręcznej usuwane są przypadkowe sesje (nadal są w bazie)
+public class SQLiteSessionManager implements SessionManager {
+    private final SQLiteDatabase database;
+    private final Clock clock;
+    private final long idleTtlSeconds;
+    private final long absoluteTtlSeconds;
+    private final int maxCached;
+    private final int sweepBatchSize;
+    private final Map<Long, Entry> cache = new ConcurrentHashMap<>();
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder skippedWrites = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+
+    public SQLiteSessionManager(SQLiteDatabase database, Clock clock, long idleTtlSeconds, long absoluteTtlSeconds,
+                                int maxCached, long sweepIntervalSeconds, int sweepBatchSize) {
+        this.database = database;
+        this.clock = clock;
+        this.idleTtlSeconds = idleTtlSeconds;
+        this.absoluteTtlSeconds = absoluteTtlSeconds;
+        this.maxCached = maxCached;
+        this.sweepBatchSize = sweepBatchSize;
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // liczba sesji wczytanych z bazy
+    public long loads() {
+        return loads.sum();
+    }
+
+    // liczba zapisów sesji do bazy
+    public long writes() {
+        return writes.sum();
+    }
+
+    // liczba wywołań saveSession(), które nie musiały niczego zapisywać
+    public long skippedWrites() {
+        return skippedWrites.sum();
+    }
+
+    // liczba wygasłych sesji usuniętych z bazy
+    public long deleted() {
+        return deleted.sum();
+    }
+
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    @Override
+    public Session getSession(Request request) {
+        var now = clock.time();
+        if (request.cookies.containsKey("session")) { // odczytanie identyfikatora sesji z ciastka
+            try {
+                var id = Long.parseLong(request.cookies.get("session"));
+                var entry = cache.get(id);
+                if (entry == null)
+                    entry = load(id);
+                if (entry != null && now < entry.expiresTime)
+                    return entry.session;
+                if (entry != null)
+                    cache.remove(id, entry);
+            } catch (NumberFormatException ignored) { }
+        }
+
+        // identyfikator jest losowany z 2^64 możliwości, więc nie jest sprawdzany w bazie
+        Entry entry;
+        do {
+            entry = new Entry(new Session(random.get().nextLong()), null, now, expiresTime(now, now));
+        } while (cache.putIfAbsent(entry.session.id, entry) != null);
+        trim();
+        return entry.session;
+    }
+
+    @Override
+    public void saveSession(Response response, Session session) {
+        response.newCookies.put("session", Long.toString(session.id)); // zapisanie identyfikatora sesji do ciastka
+
+        var now = clock.time();
+        var entry = cache.get(session.id);
+        if (entry == null)
+            entry = reload(session, now);
+        var data = CookieSessionManager.encodeStore(session.store);
+        synchronized (entry) { // jednoczesne zapytania w tej samej sesji
+            var unchanged = data.equals(entry.persisted) || (entry.persisted == null && data.isEmpty());
+            if (unchanged && entry.expiresTime - now > idleTtlSeconds / 2) {
+                skippedWrites.increment();
+                return;
+            }
+
+            var expiresTime = expiresTime(entry.createdTime, now);
+            if (unchanged && entry.persisted == null) {
+                // pustej sesji nie trzeba zapisywać, wystarczy przedłużyć ją w pamięci
+                entry.expiresTime = expiresTime;
+                skippedWrites.increment();
+                return;
+            }
+            database.saveSession(session.id, data, entry.createdTime, expiresTime);
+            entry.persisted = data;
+            entry.expiresTime = expiresTime;
+            writes.increment();
+        }
+    }
+
+    private long expiresTime(long createdTime, long now) {
+        return Math.min(now + idleTtlSeconds, createdTime + absoluteTtlSeconds);
+    }
+
+    // sesja mogła zostać usunięta z pamięci podręcznej w trakcie zapytania; jej czas utworzenia i zapisane dane
+    // są wtedy wczytywane z bazy, aby zapis nie przedłużył sesji poza absoluteTtlSeconds
+    private Entry reload(Session session, long now) {
+        var stored = database.getSession(session.id);
+        Entry entry;
+        if (stored.isPresent()) {
+            loads.increment();
+            entry = new Entry(session, stored.get().data, stored.get().createdTime, stored.get().expiresTime);
+        } else {
+            entry = new Entry(session, null, now, expiresTime(now, now));
+        }
+        var previous = cache.putIfAbsent(session.id, entry);
+        trim();
+        return previous != null ? previous : entry;
+    }
+
+    private Entry load(long id) {
+        var stored = database.getSession(id);
+        if (stored.isEmpty())
+            return null;
+        loads.increment();
+        var session = new Session(id);
+        CookieSessionManager.decodeStore(stored.get().data, session.store);
+        var entry = new Entry(session, stored.get().data, stored.get().createdTime, stored.get().expiresTime);
+        var previous = cache.putIfAbsent(id, entry); // inny wątek mógł w tym czasie wczytać tę samą sesję
+        trim();
+        return previous != null ? previous : entry;
+    }
+
+    // usunięcie części sesji z pamięci podręcznej; kolejność przeglądania ConcurrentHashMap zależy od
+    // skrótów identyfikatorów, które są losowe, więc usuwane sesje są przypadkowe
+    private void trim() {
+        if (cache.size() <= maxCached)
+            return;
+        var excess = cache.size() - maxCached * 9 / 10;
+        var iterator = cache.values().iterator();
+        while (excess-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void sweep() {
+        var now = clock.time();
+        cache.values().removeIf(entry -> entry.expiresTime <= now);
+        try {
+            int count;
+            do {
+                count = database.deleteExpiredSessions(now, sweepBatchSize);
+                deleted.add(count);
+            } while (count == sweepBatchSize);
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // następna próba przy kolejnym przeglądzie
+        }
+    }
+
+    private static class Entry {
+        private final Session session;
+        private final long createdTime;
+        private String persisted; // dane zapisane w bazie (null, jeśli sesji nie ma w bazie), chronione przez this
+        private volatile long expiresTime; // w bazie, a dla sesji spoza bazy tylko w pamięci
+
+        private Entry(Session session, String persisted, long createdTime, long expiresTime) {
+            this.session = session;
+            this.persisted = persisted;
+            this.createdTime = createdTime;
+            this.expiresTime = expiresTime;
+        }
+    }
+}
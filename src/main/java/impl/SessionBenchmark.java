@@ -0,0 +1,73 @@
+package impl;
+
+import forum.web.Content;
+import forum.web.Request;
+import forum.web.Response;
+import forum.web.SessionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// syntetyczny test przepustowości menedżerów sesji: wiele wątków obsługuje zapytania
+// z losowymi istniejącymi sesjami zalogowanych użytkowników (getSession() i saveSession(), tak jak ForumApp)
+// w SimpleSessionManager ze wspólną blokadą, w ConcurrentSessionManager i w CookieSessionManager
+// (bez szyfrowania i z nim, gdzie głównym kosztem jest kodowanie i sprawdzanie ciastka);
+// program wypisuje liczbę zapytań na sekundę i czas jednego zapytania dla każdej liczby wątków;
+// uruchamiany przez zadanie gradle sessionBenchmark
+class SessionBenchmark {
+    private static final int[] threadCounts = {1, 4, 16, 64};
+    private static final int requestsPerThread = 100000;
+    private static final int sessions = 10000;
+
+    public static void main(String[] args) throws InterruptedException {
+        var secret = "benchmark".getBytes(StandardCharsets.UTF_8);
+        for (var threads : threadCounts) {
+            report("SimpleSessionManager", threads, run(new SimpleSessionManager(), threads));
+            var concurrent = new ConcurrentSessionManager(new SystemClock(), 3600, 86400, 2 * sessions, 60);
+            report("ConcurrentSessionManager", threads, run(concurrent, threads));
+            concurrent.close();
+            report("CookieSessionManager", threads,
+                    run(new CookieSessionManager(secret, new SystemClock(), 3600, 24 * 3600, 4096, false), threads));
+            report("CookieSessionManager (encrypted)", threads,
+                    run(new CookieSessionManager(secret, new SystemClock(), 3600, 24 * 3600, 4096, true), threads));
+        }
+    }
+
+    private static void report(String name, int threads, double requestsPerSecond) {
+        System.out.printf("%d threads, %s: %.0f requests/s, %.0f ns per request and thread%n",
+                threads, name, requestsPerSecond, threads * 1e9 / requestsPerSecond);
+    }
+
+    // zapytania w sekundzie
+    private static double run(SessionManager manager, int threads) throws InterruptedException {
+        var cookies = new ArrayList<Map<String, String>>();
+        for (var i = 0; i < sessions; i++) {
+            var session = manager.getSession(new Request(Request.Method.Get, "/", Map.of(), Map.of()));
+            session.store.put("user", Integer.toString(i));
+            var response = new Response(Response.Status.Ok, Content.of(""));
+            manager.saveSession(response, session);
+            cookies.add(response.newCookies);
+        }
+
+        var workers = new ArrayList<Thread>();
+        for (var i = 0; i < threads; i++) {
+            workers.add(new Thread(() -> {
+                var random = ThreadLocalRandom.current();
+                for (var j = 0; j < requestsPerThread; j++) {
+                    var request = new Request(Request.Method.Get, "/", Map.of(), cookies.get(random.nextInt(sessions)));
+                    var session = manager.getSession(request);
+                    manager.saveSession(new Response(Response.Status.Ok, Content.of("")), session);
+                }
+            }));
+        }
+
+        var start = System.nanoTime();
+        workers.forEach(Thread::start);
+        for (var worker : workers)
+            worker.join();
+        var seconds = (System.nanoTime() - start) / 1e9;
+        return threads * requestsPerThread / seconds;
+    }
+}
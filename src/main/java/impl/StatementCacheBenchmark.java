@@ -0,0 +1,71 @@
+package impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+
+// porównanie czasu getPost i getComment z cache'em skompilowanych zapytań i bez niego;
+// "bez cache'u" oznacza cache mieszczący jedno zapytanie, więc naprzemienne getPost i getComment
+// za każdym razem kompilują swoje zapytanie od nowa (tak jak przed wprowadzeniem cache'u);
+// program wypisuje czas jednego odczytu oraz liczniki trafień i chybień cache'u;
+// uruchamiany przez zadanie gradle statementCacheBenchmark
+class StatementCacheBenchmark {
+    private static final int posts = 1000;
+    private static final int warmupReads = 20000;
+    private static final int reads = 200000;
+
+    public static void main(String[] args) throws IOException {
+        var directory = Files.createTempDirectory("forum-statement-cache");
+        try {
+            var file = directory.resolve("forum.db").toString();
+            setup(new SQLiteDatabase(file, 1));
+
+            run("without statement cache", new SQLiteDatabase(file, 1, 1));
+            run("with statement cache", new SQLiteDatabase(file, 1));
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (var file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // jeden użytkownik i jedna społeczność, a każdy post ma jeden komentarz o tym samym id
+    private static void setup(SQLiteDatabase database) {
+        database.batch(() -> {
+            database.newUser("user", Optional.empty(), 0, new byte[0], new byte[0]);
+            database.newCommunity("benchmark", "", 1, 0);
+            for (var i = 0; i < posts; i++) {
+                var post = database.newPost(1, 1, "post" + i, "content", i);
+                database.newComment(1, post.id, OptionalLong.empty(), "comment", i);
+            }
+        });
+    }
+
+    private static void run(String name, SQLiteDatabase database) {
+        read(database, warmupReads);
+        var hits = database.statementCacheHits();
+        var misses = database.statementCacheMisses();
+
+        var start = System.nanoTime();
+        read(database, reads);
+        var nanos = System.nanoTime() - start;
+        System.out.printf("%s: %.1f us per read, %d cache hits, %d cache misses%n", name, nanos / 1e3 / reads,
+                database.statementCacheHits() - hits, database.statementCacheMisses() - misses);
+    }
+
+    private static void read(SQLiteDatabase database, int count) {
+        var random = ThreadLocalRandom.current();
+        for (var i = 0; i < count; i++) {
+            var id = 1 + random.nextInt(posts);
+            if (i % 2 == 0)
+                database.getPost(id);
+            else
+                database.getComment(id);
+        }
+    }
+}
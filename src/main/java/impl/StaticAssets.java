@@ -0,0 +1,82 @@
+package impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// pliki statyczne z zasobów projektu (/static), np. arkusz stylów wspólny dla wszystkich stron;
+// każdy plik jest wczytywany i kompresowany gzipem (z najwyższym poziomem kompresji) tylko raz, przy starcie,
+// więc serwer wysyła gotowe bajty; adres pliku zawiera sumę kontrolną jego zawartości,
+// dzięki czemu przeglądarki mogą go trzymać bezterminowo, a zmieniony plik dostaje nowy adres
+public class StaticAssets {
+    private final Map<String, Asset> assets = new HashMap<>(); // nazwa pliku -> plik
+
+    public static final String pathPrefix = "/static/";
+
+    public StaticAssets(String... names) {
+        for (var name : names)
+            assets.put(name, load(name));
+    }
+
+    // adresy plików (z wersją) do użycia w szablonach
+    public Map<String, String> paths() {
+        var paths = new HashMap<String, String>();
+        assets.forEach((name, asset) -> paths.put(name, pathPrefix + name + "?v=" + asset.version));
+        return paths;
+    }
+
+    Optional<Asset> get(String name) {
+        return Optional.ofNullable(assets.get(name));
+    }
+
+    private static Asset load(String name) {
+        try (var stream = StaticAssets.class.getResourceAsStream("/static/" + name)) {
+            if (stream == null)
+                throw new RuntimeException("missing static asset: " + name);
+            var content = stream.readAllBytes();
+
+            // GZIPOutputStream nie przyjmuje poziomu kompresji, więc jest on ustawiany w podklasie
+            var gzipped = new ByteArrayOutputStream();
+            try (var gzip = new GZIPOutputStream(gzipped) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                gzip.write(content);
+            }
+
+            var crc = new CRC32();
+            crc.update(content);
+            return new Asset(content, gzipped.toByteArray(), contentType(name), Long.toHexString(crc.getValue()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String contentType(String name) {
+        if (name.endsWith(".css"))
+            return "text/css";
+        if (name.endsWith(".js"))
+            return "text/javascript";
+        return "application/octet-stream";
+    }
+
+    static class Asset {
+        final byte[] content;
+        final byte[] gzipped;
+        final String contentType;
+        final String version;
+
+        private Asset(byte[] content, byte[] gzipped, String contentType, String version) {
+            this.content = content;
+            this.gzipped = gzipped;
+            this.contentType = contentType;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package impl;
+
+import forum.databases.Database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+// syntetyczny test przepustowości głosowania: wiele wątków oddaje losowe głosy na kilka postów,
+// najpierw z osobną transakcją na każdy głos, a potem z zapisywaniem grupami (GroupCommitDatabase);
+// program tworzy bazę danych w pliku tymczasowym i wypisuje liczbę głosów na sekundę w obu trybach;
+// uruchamiany przez zadanie gradle voteStorm
+class VoteStorm {
+    private static final int threads = 32;
+    private static final int votesPerThread = 500;
+    private static final int voters = 1000;
+    private static final int posts = 10;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var directory = Files.createTempDirectory("forum-vote-storm");
+        try {
+            var sqlite = new SQLiteDatabase(directory.resolve("forum.db").toString(), 1);
+            var postIds = setup(sqlite);
+
+            var perVote = run(sqlite, postIds);
+            System.out.printf("one transaction per vote: %.0f votes/s%n", perVote);
+
+            var groupCommit = new GroupCommitDatabase(sqlite, 1024, 256);
+            var batched = run(groupCommit, postIds);
+            groupCommit.close();
+            System.out.printf("group commit: %.0f votes/s (%.1f votes per transaction)%n",
+                    batched, (double) groupCommit.votes() / groupCommit.batches());
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (var file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static long[] setup(Database database) {
+        var owner = database.newUser("owner", Optional.empty(), 0, new byte[0], new byte[0]);
+        var community = database.newCommunity("storm", "", owner.id, 0);
+        for (var i = 0; i < voters; i++)
+            database.newUser("voter" + i, Optional.empty(), 0, new byte[0], new byte[0]);
+        var postIds = new long[posts];
+        for (var i = 0; i < posts; i++)
+            postIds[i] = database.newPost(owner.id, community.id, "post" + i, "", 0).id;
+        return postIds;
+    }
+
+    // głosy w sekundzie; id głosujących to 2..voters+1 (1 to właściciel społeczności)
+    private static double run(Database database, long[] postIds) throws InterruptedException {
+        var workers = new ArrayList<Thread>();
+        for (var i = 0; i < threads; i++) {
+            workers.add(new Thread(() -> {
+                var random = ThreadLocalRandom.current();
+                for (var j = 0; j < votesPerThread; j++) {
+                    var voterId = 2 + random.nextInt(voters);
+                    var postId = postIds[random.nextInt(postIds.length)];
+                    if (random.nextInt(4) == 0)
+                        database.unvotePost(voterId, postId);
+                    else
+                        database.votePost(voterId, postId, random.nextBoolean(), 0);
+                }
+            }));
+        }
+
+        var start = System.nanoTime();
+        workers.forEach(Thread::start);
+        for (var worker : workers)
+            worker.join();
+        var seconds = (System.nanoTime() - start) / 1e9;
+        return threads * votesPerThread / seconds;
+    }
+}
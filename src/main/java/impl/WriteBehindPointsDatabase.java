@@ -0,0 +1,112 @@
+package impl;
+
+import forum.databases.Database;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// dekorator bazy danych odkładający zmiany punktów użytkowników (write-behind);
+// addUserPoints tylko dodaje zmianę do sumy użytkownika w pamięci (przez ConcurrentHashMap.compute, które blokuje
+// jedynie wpis tego użytkownika), a co flushIntervalMillis zebrane zmiany są zapisywane w jednej transakcji
+// po jednej aktualizacji na użytkownika;
+// przy zapisie wpisy są kolejno wyjmowane z mapy przez remove, więc zmiany dodane później trafiają do nowego wpisu
+// i żadna zmiana nie ginie, a dodawanie nie ma wspólnej blokady z zapisem ani z innymi użytkownikami;
+// punkty użytkowników w bazie są więc opóźnione o co najwyżej flushIntervalMillis;
+// dekorator powinien być nad CachingDatabase, aby zapis unieważniał użytkowników w pamięci podręcznej
+public class WriteBehindPointsDatabase extends DelegatingDatabase {
+    private final SQLiteDatabase sqlite;
+    private final ScheduledExecutorService flusher;
+    private final LongAdder pendingDeltas = new LongAdder();
+    private final LongAdder flushedDeltas = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>(); // id użytkownika -> suma zmian
+
+    public WriteBehindPointsDatabase(Database database, SQLiteDatabase sqlite, long flushIntervalMillis) {
+        super(database);
+        this.sqlite = sqlite;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "points-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // liczba zmian punktów, które nie zostały jeszcze zapisane w bazie
+    public long pendingDeltas() {
+        return pendingDeltas.sum();
+    }
+
+    // liczba zmian punktów zapisanych w bazie
+    public long flushedDeltas() {
+        return flushedDeltas.sum();
+    }
+
+    // liczba nieudanych zapisów (ich zmiany czekają na następny zapis, więc pendingDeltas rośnie)
+    public long failedFlushes() {
+        return failedFlushes.sum();
+    }
+
+    // zatrzymanie okresowego zapisu i zapisanie pozostałych zmian
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @Override
+    public void addUserPoints(long id, long points) {
+        pending.compute(id, (i, p) -> (p != null ? p : new Pending()).add(points, 1));
+        pendingDeltas.increment();
+    }
+
+    // synchronized, ponieważ close() może się zbiec z ostatnim okresowym zapisem
+    synchronized void flush() {
+        var flushing = new HashMap<Long, Pending>();
+        for (var id : pending.keySet()) {
+            var points = pending.remove(id);
+            if (points != null)
+                flushing.put(id, points);
+        }
+        if (flushing.isEmpty())
+            return;
+
+        try {
+            sqlite.batch(() -> flushing.forEach((id, points) -> {
+                if (points.points != 0)
+                    database.addUserPoints(id, points.points);
+            }));
+        } catch (RuntimeException e) {
+            // transakcja została wycofana, więc zmiany wracają do mapy i zostaną zapisane następnym razem
+            flushing.forEach((id, points) ->
+                    pending.compute(id, (i, p) -> p != null ? p.add(points.points, points.count) : points));
+            failedFlushes.increment();
+            e.printStackTrace();
+            return;
+        }
+        var deltas = flushing.values().stream().mapToLong(points -> points.count).sum();
+        pendingDeltas.add(-deltas);
+        flushedDeltas.add(deltas);
+    }
+
+    // suma zmian punktów jednego użytkownika i ich liczba; zmieniana tylko wewnątrz compute dla jego wpisu
+    private static class Pending {
+        private long points;
+        private long count;
+
+        private Pending add(long points, long count) {
+            this.points += points;
+            this.count += count;
+            return this;
+        }
+    }
+}
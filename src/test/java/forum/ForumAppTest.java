@@ -1,6 +1,7 @@
 package forum;
 
 import forum.logic.Forum;
+import forum.services.Clock;
 import forum.services.Emailer;
 import forum.web.Server;
 import forum.web.SessionManager;
@@ -17,7 +18,8 @@ public class ForumAppTest {
         var server = mock(Server.class);
         var sessionManager = mock(SessionManager.class);
         var templateProcessor = mock(TemplateProcessor.class);
-        var app = new ForumApp(forum, emailer, server, sessionManager, templateProcessor);
+        var app = new ForumApp(forum, emailer, server, sessionManager, templateProcessor, Runnable::run,
+                new PageCache(mock(Clock.class), 0, 0));
 
         app.run();
 
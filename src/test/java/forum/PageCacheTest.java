@@ -0,0 +1,117 @@
+package forum;
+
+import forum.web.Content;
+import forum.web.Response;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageCacheTest {
+    private long time = 100;
+    private final PageCache cache = new PageCache(() -> time, 2, 10);
+
+    private String store(String key, String content, List<String> tags, long generation) throws IOException {
+        var response = new Response(Response.Status.Ok, Content.of(content), Optional.of(key));
+        var writer = new StringWriter();
+        cache.store(key, response, tags, generation).content.write(writer);
+        return writer.toString();
+    }
+
+    private Optional<String> get(String key) {
+        return cache.get(key).map(r -> r.content.text());
+    }
+
+    @Test
+    public void testGet() throws IOException {
+        var written = store("post?post=1", "page", List.of("post:1"), cache.generation());
+
+        var result1 = cache.get("post?post=1");
+        var result2 = cache.get("post?post=2");
+
+        assertEquals("page", written);
+        assertEquals(Optional.of("page"), result1.map(r -> r.content.text()));
+        assertEquals(Optional.of("post?post=1"), result1.flatMap(r -> r.etag));
+        assertEquals(Optional.empty(), result2);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testExpired() throws IOException {
+        store("post?post=1", "page", List.of("post:1"), cache.generation());
+
+        time += 10;
+        var result = get("post?post=1");
+
+        assertEquals(Optional.empty(), result);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        store("post?post=1", "page1", List.of("post:1"), cache.generation());
+        store("community?name=c", "page2", List.of("community:1"), cache.generation());
+
+        cache.invalidate(List.of("post:1"));
+
+        assertEquals(Optional.empty(), get("post?post=1"));
+        assertEquals(Optional.of("page2"), get("community?name=c"));
+    }
+
+    @Test
+    public void testInvalidatedWhileGenerating() throws IOException {
+        var generation = cache.generation();
+        cache.invalidate(List.of("post:1"));
+        store("post?post=1", "page", List.of("post:1"), generation);
+
+        assertEquals(Optional.empty(), get("post?post=1"));
+    }
+
+    @Test
+    public void testOtherTagInvalidatedWhileGenerating() throws IOException {
+        var generation = cache.generation();
+        cache.invalidate(List.of("post:2"));
+        store("post?post=1", "page", List.of("post:1"), generation);
+
+        assertEquals(Optional.of("page"), get("post?post=1"));
+    }
+
+    @Test
+    public void testForgottenInvalidations() throws IOException {
+        var generation = cache.generation();
+        cache.invalidate(List.of("post:2", "post:3", "post:4"));
+        store("post?post=1", "page1", List.of("post:1"), generation);
+        store("post?post=5", "page2", List.of("post:5"), cache.generation());
+
+        assertEquals(Optional.empty(), get("post?post=1"));
+        assertEquals(Optional.of("page2"), get("post?post=5"));
+    }
+
+    @Test
+    public void testReplace() throws IOException {
+        store("post?post=1", "page1", List.of("post:1"), cache.generation());
+        store("post?post=1", "page2", List.of("post:1"), cache.generation());
+
+        assertEquals(Optional.of("page2"), get("post?post=1"));
+        cache.invalidate(List.of("post:1"));
+        assertEquals(Optional.empty(), get("post?post=1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMaxEntries() throws IOException {
+        store("a", "page1", List.of(), cache.generation());
+        store("b", "page2", List.of(), cache.generation());
+        get("a");
+        store("c", "page3", List.of(), cache.generation());
+
+        assertEquals(2, cache.size());
+        assertEquals(Optional.of("page1"), get("a"));
+        assertEquals(Optional.empty(), get("b"));
+    }
+}
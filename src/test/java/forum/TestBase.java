@@ -66,6 +66,26 @@ public abstract class TestBase {
         return mockPost(mockUser(), mockCommunity());
     }
 
+    protected PostSummary mockPostSummary(Community community, long sentTime, long points) {
+        return PostSummary.of(mockPost(community, sentTime, points));
+    }
+
+    protected PostSummary mockPostSummary(long sentTime, long points) {
+        return PostSummary.of(mockPost(sentTime, points));
+    }
+
+    protected PostSummary mockPostSummary(User sender) {
+        return PostSummary.of(mockPost(sender));
+    }
+
+    protected PostSummary mockPostSummary(Community community) {
+        return PostSummary.of(mockPost(community));
+    }
+
+    protected PostSummary mockPostSummary() {
+        return PostSummary.of(mockPost());
+    }
+
     protected Comment mockComment(User sender, Post post, OptionalLong parentId) {
         var id = newCommentId++;
         var content = "content";
@@ -91,6 +111,10 @@ public abstract class TestBase {
         return mockComment(mockUser(), mockPost(), OptionalLong.empty());
     }
 
+    protected CommentSummary mockCommentSummary(User sender) {
+        return CommentSummary.of(mockComment(sender));
+    }
+
     protected Subscriber mockSubscriber(User user, Community community, boolean moderator) {
         var subscribedTime = 10L;
         return new Subscriber(user, community, subscribedTime, moderator);
@@ -0,0 +1,73 @@
+package forum;
+
+import forum.entities.CommentPage;
+import forum.entities.CommentTree;
+import forum.entities.Post;
+import forum.views.ErrorView;
+import forum.views.PostView;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ViewDigestTest extends TestBase {
+    private final Post post = mockPost();
+
+    private PostView view(Post post, List<CommentTree> comments) {
+        return new PostView(post, new CommentPage(comments, Optional.empty()), CommentPage.Order.Top,
+                1, true, false, false, Optional.empty());
+    }
+
+    private Post withPoints(Post post, long points) {
+        return new Post(post.id, post.title, post.content, post.sender, post.community, post.sentTime, points,
+                post.editedTime);
+    }
+
+    @Test
+    public void testEqualData() {
+        var comment = mockComment(post);
+
+        var digest1 = ViewDigest.of("post", view(post, List.of(new CommentTree(comment, List.of()))));
+        var digest2 = ViewDigest.of("post", view(withPoints(post, post.points),
+                List.of(new CommentTree(comment, List.of()))));
+
+        assertEquals(digest1, digest2);
+        assertEquals(43, digest1.length());
+    }
+
+    @Test
+    public void testChangedData() {
+        var comment = mockComment(post);
+        var reply = mockComment(post, OptionalLong.of(comment.id));
+        var digest = ViewDigest.of("post", view(post, List.of(new CommentTree(comment, List.of()))));
+
+        assertNotEquals(digest, ViewDigest.of("other", view(post, List.of(new CommentTree(comment, List.of())))));
+        assertNotEquals(digest, ViewDigest.of("post", view(withPoints(post, post.points + 1),
+                List.of(new CommentTree(comment, List.of())))));
+        assertNotEquals(digest, ViewDigest.of("post", view(post,
+                List.of(new CommentTree(comment, List.of(new CommentTree(reply, List.of())))))));
+        assertNotEquals(digest, ViewDigest.of("post", view(post, List.of())));
+    }
+
+    @Test
+    public void testSeparatorsInText() {
+        var digest1 = ViewDigest.of("error", new ErrorView("a, details=b", "c"));
+        var digest2 = ViewDigest.of("error", new ErrorView("a", "b, details=c"));
+        var digest3 = ViewDigest.of("error", new ErrorView("ab", ""));
+        var digest4 = ViewDigest.of("error", new ErrorView("a", "b"));
+
+        assertNotEquals(digest1, digest2);
+        assertNotEquals(digest3, digest4);
+    }
+
+    @Test
+    public void testEmptyValues() {
+        assertNotEquals(ViewDigest.of("error", new ErrorView("", null)),
+                ViewDigest.of("error", new ErrorView(null, "")));
+        assertNotEquals(ViewDigest.of("error", new ErrorView("", "")),
+                ViewDigest.of("error", new ErrorView(null, null)));
+    }
+}
@@ -1,6 +1,8 @@
 package forum.controllers;
 
 import forum.entities.Community;
+import forum.entities.Cursor;
+import forum.entities.Listing;
 import forum.forms.CommunityCreateForm;
 import forum.exceptions.CommunityCreateException;
 import forum.views.*;
@@ -23,13 +25,13 @@ public class CommunityControllersTest extends ControllersTestBase {
         var controller = controller("communityList");
         var community1 = mockCommunity();
         var community2 = mockCommunity();
-        var list = List.of(community1, community2);
-        requestParameters.put("page", "1");
-        when(communities.getCommunities(1)).thenReturn(list);
+        var list = new Listing<>(List.of(community1, community2), Optional.of(community2.name));
+        requestParameters.put("after", "community0");
+        when(communities.getCommunities(Optional.of("community0"))).thenReturn(list);
 
         var result = controller.control(forum, request, responses);
 
-        assertEquals(new View("community-list", new CommunityListView(1, list)), result);
+        assertEquals(new View("community-list", new CommunityListView(false, list)), result);
     }
 
     @Test
@@ -111,7 +113,7 @@ public class CommunityControllersTest extends ControllersTestBase {
     public void testCommunity() {
         var controller = controller("community");
         var community = mockCommunity();
-        var popularPosts = List.of(mockPost(), mockPost(), mockPost());
+        var popularPosts = List.of(mockPostSummary(), mockPostSummary(), mockPostSummary());
         var subscribers = 10L;
         requestParameters.put("name", community.name);
         when(communities.getByName(community.name)).thenReturn(Optional.of(community));
@@ -129,7 +131,7 @@ public class CommunityControllersTest extends ControllersTestBase {
         var user = login(mockUser());
         var community = mockCommunity();
         var subscriber = mockSubscriber(user, community);
-        var popularPosts = List.of(mockPost(), mockPost(), mockPost());
+        var popularPosts = List.of(mockPostSummary(), mockPostSummary(), mockPostSummary());
         var subscribers = 10L;
         requestParameters.put("name", community.name);
         when(communities.getByName(community.name)).thenReturn(Optional.of(community));
@@ -156,22 +158,40 @@ public class CommunityControllersTest extends ControllersTestBase {
     public void testCommunityPosts() {
         var controller = controller("communityPosts");
         var community = mockCommunity();
-        var list = List.of(mockPost(community), mockPost(community));
+        var list = new Listing<>(List.of(mockPostSummary(community), mockPostSummary(community)), Optional.empty());
         requestParameters.put("name", community.name);
-        requestParameters.put("day", "1");
         when(communities.getByName(community.name)).thenReturn(Optional.of(community));
-        when(communities.getPosts(community, 1)).thenReturn(list);
+        when(communities.getPosts(community, Optional.empty())).thenReturn(list);
 
         var result = controller.control(forum, request, responses);
 
-        assertEquals(new View("community-posts", new CommunityPostsView(community, 1, list)), result);
+        assertEquals(new View("community-posts", new CommunityPostsView(community, true, list)), result);
+    }
+
+    @Test
+    public void testCommunityPostsPage() {
+        var controller = controller("communityPosts");
+        var community = mockCommunity();
+        var cursor = new Cursor(10L, 5L);
+        var list = new Listing<>(List.of(mockPostSummary(community)), Optional.of("3.4"));
+        requestParameters.put("name", community.name);
+        requestParameters.put("after", cursor.encode());
+        when(communities.getByName(community.name)).thenReturn(Optional.of(community));
+        when(communities.getPosts(community, Optional.of(cursor))).thenReturn(list);
+
+        var result1 = controller.control(forum, request, responses);
+
+        requestParameters.put("after", "x");
+        var result2 = controller.control(forum, request, responses);
+
+        assertEquals(new View("community-posts", new CommunityPostsView(community, false, list)), result1);
+        assertEquals(new BadRequest("invalid-parameter:after"), result2);
     }
 
     @Test
     public void testCommunityPostsNotFound() {
         var controller = controller("communityPosts");
         requestParameters.put("name", "test");
-        requestParameters.put("day", "1");
 
         var result = controller.control(forum, request, responses);
 
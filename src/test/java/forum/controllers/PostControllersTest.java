@@ -1,5 +1,7 @@
 package forum.controllers;
 
+import forum.entities.CommentPage;
+import forum.entities.Cursor;
 import forum.entities.CommentTree;
 import forum.forms.PostSendForm;
 import forum.views.PostView;
@@ -21,13 +23,46 @@ public class PostControllersTest extends ControllersTestBase {
     public void testPost() {
         var controller = controller("post");
         var post = setup(mockPost());
-        var comments = List.of(new CommentTree(mockComment(post), List.of()));
-        when(posts.getComments(post)).thenReturn(comments);
+        var comments = new CommentPage(List.of(new CommentTree(mockComment(post), List.of())), Optional.empty());
+        when(posts.getComments(post, CommentPage.Order.New, Optional.empty())).thenReturn(comments);
         when(posts.countVotes(post)).thenReturn(10L);
 
         var result = controller.control(forum, request, responses);
 
-        assertEquals(new View("post", new PostView(post, comments, 10L, false, false, false, Optional.empty())), result);
+        assertEquals(new View("post", new PostView(post, comments, CommentPage.Order.New, 10L, false, false, false, Optional.empty())), result);
+    }
+
+    @Test
+    public void testPostPage() {
+        var controller = controller("post");
+        var post = setup(mockPost());
+        var cursor = new Cursor(10L, 5L);
+        var comments = new CommentPage(List.of(new CommentTree(mockComment(post), List.of())), Optional.of("3.4"));
+        requestParameters.put("order", "top");
+        requestParameters.put("after", cursor.encode());
+        when(posts.getComments(post, CommentPage.Order.Top, Optional.of(cursor))).thenReturn(comments);
+        when(posts.countVotes(post)).thenReturn(10L);
+
+        var result = controller.control(forum, request, responses);
+
+        assertEquals(new View("post", new PostView(post, comments, CommentPage.Order.Top, 10L, false, false, false, Optional.empty())), result);
+    }
+
+    @Test
+    public void testPostInvalidPage() {
+        var controller = controller("post");
+        setup(mockPost());
+        requestParameters.put("order", "old");
+
+        var result1 = controller.control(forum, request, responses);
+
+        requestParameters.put("order", "new");
+        requestParameters.put("after", "x.1");
+
+        var result2 = controller.control(forum, request, responses);
+
+        assertEquals(new BadRequest("invalid-parameter:order"), result1);
+        assertEquals(new BadRequest("invalid-parameter:after"), result2);
     }
 
     @Test
@@ -36,14 +71,14 @@ public class PostControllersTest extends ControllersTestBase {
         var user = login(mockUser());
         var post = setup(mockPost());
         var vote = mockPostVote(user, post);
-        var comments = List.of(new CommentTree(mockComment(post), List.of()));
-        when(posts.getComments(post)).thenReturn(comments);
+        var comments = new CommentPage(List.of(new CommentTree(mockComment(post), List.of())), Optional.empty());
+        when(posts.getComments(post, CommentPage.Order.New, Optional.empty())).thenReturn(comments);
         when(posts.countVotes(post)).thenReturn(10L);
         when(posts.getVote(user, post)).thenReturn(Optional.of(vote));
 
         var result = controller.control(forum, request, responses);
 
-        assertEquals(new View("post", new PostView(post, comments, 10L, true, false, false, Optional.of(vote))), result);
+        assertEquals(new View("post", new PostView(post, comments, CommentPage.Order.New, 10L, true, false, false, Optional.of(vote))), result);
     }
 
     @Test
@@ -51,13 +86,13 @@ public class PostControllersTest extends ControllersTestBase {
         var controller = controller("post");
         var user = login(mockUser());
         var post = setup(mockPost(user));
-        var comments = List.of(new CommentTree(mockComment(post), List.of()));
-        when(posts.getComments(post)).thenReturn(comments);
+        var comments = new CommentPage(List.of(new CommentTree(mockComment(post), List.of())), Optional.empty());
+        when(posts.getComments(post, CommentPage.Order.New, Optional.empty())).thenReturn(comments);
         when(posts.countVotes(post)).thenReturn(10L);
 
         var result = controller.control(forum, request, responses);
 
-        assertEquals(new View("post", new PostView(post, comments, 10L, true, true, false, Optional.empty())), result);
+        assertEquals(new View("post", new PostView(post, comments, CommentPage.Order.New, 10L, true, true, false, Optional.empty())), result);
     }
 
     @Test
@@ -67,14 +102,14 @@ public class PostControllersTest extends ControllersTestBase {
         var community = mockCommunity();
         var subscriber = mockSubscriber(user, community, true);
         var post = setup(mockPost(community));
-        var comments = List.of(new CommentTree(mockComment(post), List.of()));
-        when(posts.getComments(post)).thenReturn(comments);
+        var comments = new CommentPage(List.of(new CommentTree(mockComment(post), List.of())), Optional.empty());
+        when(posts.getComments(post, CommentPage.Order.New, Optional.empty())).thenReturn(comments);
         when(posts.countVotes(post)).thenReturn(10L);
         when(communities.getSubscriber(user, community)).thenReturn(Optional.of(subscriber));
 
         var result = controller.control(forum, request, responses);
 
-        assertEquals(new View("post", new PostView(post, comments, 10L, true, false, true, Optional.empty())), result);
+        assertEquals(new View("post", new PostView(post, comments, CommentPage.Order.New, 10L, true, false, true, Optional.empty())), result);
     }
 
     @Test
@@ -0,0 +1,102 @@
+package forum.controllers;
+
+import forum.databases.QueryCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestContextTest {
+    @Test
+    public void testLoad() {
+        var request = new RequestContext(Map.of(), Map.of());
+        var calls = new AtomicInteger();
+
+        var result1 = request.load("a", () -> "a" + calls.incrementAndGet());
+        var result2 = request.load("a", () -> "a" + calls.incrementAndGet());
+        var result3 = request.load("b", () -> "b" + calls.incrementAndGet());
+
+        assertEquals("a1", result1);
+        assertEquals("a1", result2);
+        assertEquals("b2", result3);
+    }
+
+    @Test
+    public void testLoadInRequestThread() {
+        var tasks = new ArrayList<Runnable>();
+        var request = new RequestContext(Map.of(), Map.of(), tasks::add);
+        var thread = Thread.currentThread();
+
+        var result = request.load("a", () -> Thread.currentThread() == thread);
+
+        assertTrue(result);
+        assertEquals(0, tasks.size());
+    }
+
+    @Test
+    public void testPrefetchedLoad() {
+        var tasks = new ArrayList<Runnable>();
+        var request = new RequestContext(Map.of(), Map.of(), tasks::add);
+
+        var prefetched = request.prefetch("a", () -> "a1");
+        tasks.forEach(Runnable::run);
+        var result = request.load("a", () -> "a2");
+
+        assertEquals(1, tasks.size());
+        assertEquals("a1", prefetched.get());
+        assertEquals("a1", result);
+    }
+
+    @Test
+    public void testQueries() throws InterruptedException {
+        var tasks = new ArrayList<Runnable>();
+        var request = new RequestContext(Map.of(), Map.of(), tasks::add);
+        Supplier<String> twoQueries = () -> {
+            QueryCounter.record();
+            QueryCounter.record();
+            return "";
+        };
+
+        request.load("a", twoQueries);
+        request.load("a", twoQueries);
+        request.prefetch("b", twoQueries);
+        var loader = new Thread(() -> tasks.forEach(Runnable::run));
+        loader.start();
+        loader.join();
+        request.countQueries(() -> {
+            QueryCounter.record();
+            return "";
+        });
+        QueryCounter.record();
+
+        assertEquals(5, request.queries());
+    }
+
+    @Test
+    public void testPrefetch() {
+        var tasks = new ArrayList<Runnable>();
+        var request = new RequestContext(Map.of(), Map.of(), tasks::add);
+
+        var result1 = request.prefetch("a", () -> "a");
+        var result2 = request.prefetch("b", () -> "b");
+        var started = tasks.size();
+        tasks.forEach(Runnable::run);
+
+        assertEquals(2, started);
+        assertEquals("a", result1.get());
+        assertEquals("b", result2.get());
+    }
+
+    @Test
+    public void testLoadException() {
+        var request = new RequestContext(Map.of(), Map.of());
+
+        assertThrows(IllegalStateException.class, () -> request.load("a", () -> {
+            throw new IllegalStateException();
+        }));
+    }
+}
@@ -1,5 +1,7 @@
 package forum.controllers;
 
+import forum.entities.Cursor;
+import forum.entities.Listing;
 import forum.entities.User;
 import forum.forms.UserRegisterForm;
 import forum.exceptions.UserRegisterException;
@@ -25,7 +27,7 @@ public class UserControllersTest extends ControllersTestBase {
         var subscription1 = mockSubscriber(user);
         var subscription2 = mockSubscriber(user);
         var subscriptions = List.of(subscription1, subscription2);
-        var feed = List.of(mockPost(), mockPost());
+        var feed = List.of(mockPostSummary(), mockPostSummary());
         when(users.getSubscriptions(user)).thenReturn(subscriptions);
         when(users.getFeed(user)).thenReturn(feed);
 
@@ -227,14 +229,14 @@ public class UserControllersTest extends ControllersTestBase {
     public void testUser() {
         var controller = controller("user");
         var user = mockUser();
-        var posts = List.of(mockPost(user), mockPost(user));
-        var comments = List.of(mockComment(user), mockComment(user));
+        var posts = new Listing<>(List.of(mockPostSummary(user), mockPostSummary(user)), Optional.empty());
+        var comments = new Listing<>(List.of(mockCommentSummary(user), mockCommentSummary(user)), Optional.empty());
         var postVotes = List.of(mockPostVote(user), mockPostVote(user));
         var commentVotes = List.of(mockCommentVote(user), mockCommentVote(user));
         requestParameters.put("name", user.name);
         when(users.getByName(user.name)).thenReturn(Optional.of(user));
-        when(users.getPosts(user)).thenReturn(posts);
-        when(users.getComments(user)).thenReturn(comments);
+        when(users.getPosts(user, Optional.empty())).thenReturn(posts);
+        when(users.getComments(user, Optional.empty())).thenReturn(comments);
         when(users.getPostVotes(user)).thenReturn(postVotes);
         when(users.getCommentVotes(user)).thenReturn(commentVotes);
 
@@ -247,14 +249,14 @@ public class UserControllersTest extends ControllersTestBase {
     public void testUserSelf() {
         var controller = controller("user");
         var user = login(mockUser());
-        var posts = List.of(mockPost(user), mockPost(user));
-        var comments = List.of(mockComment(user), mockComment(user));
+        var posts = new Listing<>(List.of(mockPostSummary(user), mockPostSummary(user)), Optional.empty());
+        var comments = new Listing<>(List.of(mockCommentSummary(user), mockCommentSummary(user)), Optional.empty());
         var postVotes = List.of(mockPostVote(user), mockPostVote(user));
         var commentVotes = List.of(mockCommentVote(user), mockCommentVote(user));
         requestParameters.put("name", user.name);
         when(users.getByName(user.name)).thenReturn(Optional.of(user));
-        when(users.getPosts(user)).thenReturn(posts);
-        when(users.getComments(user)).thenReturn(comments);
+        when(users.getPosts(user, Optional.empty())).thenReturn(posts);
+        when(users.getComments(user, Optional.empty())).thenReturn(comments);
         when(users.getPostVotes(user)).thenReturn(postVotes);
         when(users.getCommentVotes(user)).thenReturn(commentVotes);
 
@@ -263,6 +265,28 @@ public class UserControllersTest extends ControllersTestBase {
         assertEquals(new View("user", new UserView(user, true, posts, comments, postVotes, commentVotes)), result);
     }
 
+    @Test
+    public void testUserPage() {
+        var controller = controller("user");
+        var user = mockUser();
+        var cursor = new Cursor(10L, 5L);
+        var posts = new Listing<>(List.of(mockPostSummary(user)), Optional.empty());
+        var comments = new Listing<>(List.of(mockCommentSummary(user)), Optional.of("3.4"));
+        requestParameters.put("name", user.name);
+        requestParameters.put("comments-after", cursor.encode());
+        when(users.getByName(user.name)).thenReturn(Optional.of(user));
+        when(users.getPosts(user, Optional.empty())).thenReturn(posts);
+        when(users.getComments(user, Optional.of(cursor))).thenReturn(comments);
+
+        var result1 = controller.control(forum, request, responses);
+
+        requestParameters.put("posts-after", "1.x");
+        var result2 = controller.control(forum, request, responses);
+
+        assertEquals(new View("user", new UserView(user, false, posts, comments, List.of(), List.of())), result1);
+        assertEquals(new BadRequest("invalid-parameter:posts-after"), result2);
+    }
+
     @Test
     public void testUserNotFound() {
         var controller = controller("user");
@@ -64,7 +64,7 @@ public class CommentsTest extends LogicTestBase {
         var child2 = mockComment(post, OptionalLong.of(comment.id));
         var child3 = mockComment(post, OptionalLong.of(child1.id));
         var descendants = List.of(child1, child2, child3);
-        when(database.getCommentDescendants(comment.id)).thenReturn(descendants);
+        when(database.getCommentDescendants(comment.id, Comments.maxTreeDepth, Comments.maxTreeSize)).thenReturn(descendants);
 
         var expected = new CommentTree(comment, new ArrayList<>());
         expected.children.add(new CommentTree(child1, new ArrayList<>()));
@@ -79,9 +79,7 @@ public class CommentsTest extends LogicTestBase {
     @Test
     public void testCountVotes() {
         var comment = mockComment();
-        var vote1 = mockCommentVote(comment);
-        var vote2 = mockCommentVote(comment);
-        when(database.getCommentVotes(comment.id)).thenReturn(List.of(vote1, vote2));
+        when(database.countCommentVotes(comment.id)).thenReturn(2L);
 
         var result = comments.countVotes(comment);
 
@@ -140,35 +138,31 @@ public class CommentsTest extends LogicTestBase {
         time = 10;
         var voter = mockUser();
         var comment = mockComment();
+        when(database.voteComment(voter.id, comment.id, true, time)).thenReturn(+1L);
 
         comments.upvote(voter, comment);
 
-        verify(database).newCommentVote(voter.id, comment.id, true, time);
-        verify(database).addCommentPoints(comment.id, +1);
+        verify(database).voteComment(voter.id, comment.id, true, time);
         verify(users).addPoints(comment.sender, +1);
     }
 
     @Test
     public void testUpvoteAgain() {
         var vote = mockCommentVote(true);
-        when(database.getCommentVote(vote.voter.id, vote.comment.id)).thenReturn(Optional.of(vote));
+        when(database.voteComment(vote.voter.id, vote.comment.id, true, time)).thenReturn(0L);
 
         comments.upvote(vote.voter, vote.comment);
 
-        verify(database, never()).newCommentVote(anyLong(), anyLong(), anyBoolean(), anyLong());
-        verify(database, never()).addCommentPoints(anyLong(), anyLong());
         verify(users, never()).addPoints(any(), anyLong());
     }
 
     @Test
     public void testUpvoteFlip() {
         var vote = mockCommentVote(false);
-        when(database.getCommentVote(vote.voter.id, vote.comment.id)).thenReturn(Optional.of(vote));
+        when(database.voteComment(vote.voter.id, vote.comment.id, true, time)).thenReturn(+2L);
 
         comments.upvote(vote.voter, vote.comment);
 
-        verify(database).flipCommentVote(vote.voter.id, vote.comment.id, time);
-        verify(database).addCommentPoints(vote.comment.id, +2);
         verify(users).addPoints(vote.comment.sender, +2);
     }
 
@@ -177,57 +171,53 @@ public class CommentsTest extends LogicTestBase {
         time = 10;
         var voter = mockUser();
         var comment = mockComment();
+        when(database.voteComment(voter.id, comment.id, false, time)).thenReturn(-1L);
 
         comments.downvote(voter, comment);
 
-        verify(database).newCommentVote(voter.id, comment.id, false, time);
-        verify(database).addCommentPoints(comment.id, -1);
+        verify(database).voteComment(voter.id, comment.id, false, time);
         verify(users).addPoints(comment.sender, -1);
     }
 
     @Test
     public void testDownvoteAgain() {
         var vote = mockCommentVote(false);
-        when(database.getCommentVote(vote.voter.id, vote.comment.id)).thenReturn(Optional.of(vote));
+        when(database.voteComment(vote.voter.id, vote.comment.id, false, time)).thenReturn(0L);
 
         comments.downvote(vote.voter, vote.comment);
 
-        verify(database, never()).newCommentVote(anyLong(), anyLong(), anyBoolean(), anyLong());
-        verify(database, never()).addCommentPoints(anyLong(), anyLong());
         verify(users, never()).addPoints(any(), anyLong());
     }
 
     @Test
     public void testDownvoteFlip() {
         var vote = mockCommentVote(true);
-        when(database.getCommentVote(vote.voter.id, vote.comment.id)).thenReturn(Optional.of(vote));
+        when(database.voteComment(vote.voter.id, vote.comment.id, false, time)).thenReturn(-2L);
 
         comments.downvote(vote.voter, vote.comment);
 
-        verify(database).flipCommentVote(vote.voter.id, vote.comment.id, time);
-        verify(database).addCommentPoints(vote.comment.id, -2);
         verify(users).addPoints(vote.comment.sender, -2);
     }
 
     @Test
     public void testUndoUpvote() {
         var vote = mockCommentVote(true);
+        when(database.unvoteComment(vote.voter.id, vote.comment.id)).thenReturn(-1L);
 
         comments.unvote(vote);
 
-        verify(database).deleteCommentVote(vote.voter.id, vote.comment.id);
-        verify(database).addCommentPoints(vote.comment.id, -1);
+        verify(database).unvoteComment(vote.voter.id, vote.comment.id);
         verify(users).addPoints(vote.comment.sender, -1);
     }
 
     @Test
     public void testUndoDownvote() {
         var vote = mockCommentVote(false);
+        when(database.unvoteComment(vote.voter.id, vote.comment.id)).thenReturn(+1L);
 
         comments.unvote(vote);
 
-        verify(database).deleteCommentVote(vote.voter.id, vote.comment.id);
-        verify(database).addCommentPoints(vote.comment.id, +1);
+        verify(database).unvoteComment(vote.voter.id, vote.comment.id);
         verify(users).addPoints(vote.comment.sender, +1);
     }
 
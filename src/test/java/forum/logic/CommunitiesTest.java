@@ -1,7 +1,8 @@
 package forum.logic;
 
 import forum.entities.Community;
-import forum.entities.Post;
+import forum.entities.Cursor;
+import forum.entities.PostSummary;
 import forum.forms.CommunityCreateForm;
 import forum.exceptions.CommunityCreateException;
 import org.junit.jupiter.api.Test;
@@ -17,7 +18,9 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class CommunitiesTest extends LogicTestBase {
-    private final Communities communities = new Communities(database, clock, validator, emailer);
+    private final PostRanking ranking = new PostRanking(database, clock);
+    private final HomeFeeds feeds = mock(HomeFeeds.class);
+    private final Communities communities = new Communities(database, clock, validator, emailer, ranking, feeds);
 
     @Test
     public void testGet() {
@@ -60,48 +63,56 @@ public class CommunitiesTest extends LogicTestBase {
         var pageSize = Communities.communityListPageSize;
         var list1 = new ArrayList<Community>();
         var list2 = new ArrayList<Community>();
-        for (var i = 0; i < pageSize; i++) {
+        for (var i = 0; i <= pageSize; i++)
             list1.add(mockCommunity());
+        for (var i = 0; i < pageSize; i++)
             list2.add(mockCommunity());
-        }
+        var last = list1.get(pageSize - 1);
 
-        when(database.getCommunities(0, pageSize)).thenReturn(list1);
-        when(database.getCommunities(pageSize, 2 * pageSize)).thenReturn(list2);
+        when(database.getCommunities(Optional.empty(), pageSize + 1)).thenReturn(list1);
+        when(database.getCommunities(Optional.of(last.name), pageSize + 1)).thenReturn(list2);
 
-        var result1 = communities.getCommunities(0);
-        var result2 = communities.getCommunities(1);
+        var result1 = communities.getCommunities(Optional.empty());
+        var result2 = communities.getCommunities(Optional.of(last.name));
 
-        assertThat(result1).containsExactlyElementsOf(list1);
-        assertThat(result2).containsExactlyElementsOf(list2);
+        assertThat(result1.items).containsExactlyElementsOf(list1.subList(0, pageSize));
+        assertThat(result1.next).hasValue(last.name);
+        assertThat(result2.items).containsExactlyElementsOf(list2);
+        assertThat(result2.next).isEmpty();
     }
 
-    private void implGetCommunityPosts(Community community, List<Post> posts) {
-        Answer<List<Post>> answer = inv -> {
+    private void implGetCommunityPosts(Community community, List<PostSummary> posts) {
+        Answer<List<PostSummary>> answer = inv -> {
             var newerThan = (long) inv.getArgument(1);
-            var olderThan = (long) inv.getArgument(2);
-            Predicate<Post> predicate = p -> p.sentTime > newerThan && p.sentTime <= olderThan;
-            return posts.stream().filter(predicate).collect(Collectors.toList());
+            Optional<Cursor> after = inv.getArgument(2);
+            var limit = (int) inv.getArgument(3);
+            var cursor = after.orElse(new Cursor(Long.MAX_VALUE, Long.MAX_VALUE));
+            Predicate<PostSummary> predicate = p -> p.sentTime > newerThan &&
+                    (p.sentTime < cursor.key || p.sentTime == cursor.key && p.id < cursor.id);
+            Comparator<PostSummary> order = Comparator.comparingLong((PostSummary p) -> p.sentTime).thenComparingLong(p -> p.id);
+            return posts.stream().filter(predicate).sorted(order.reversed()).limit(limit).collect(Collectors.toList());
         };
 
-        when(database.getCommunityPosts(eq(community.id), anyLong(), anyLong())).then(answer);
+        when(database.getCommunityPosts(eq(community.id), anyLong(), any(), anyInt())).then(answer);
     }
 
     @Test
     public void testGetPosts() {
-        time = 48 * 3600;
         var community = mockCommunity();
-        var post1 = mockPost(community, 10 * 3600, 0);
-        var post2 = mockPost(community, 20 * 3600, 0);
-        var post3 = mockPost(community, 30 * 3600, 0);
-        var post4 = mockPost(community, 40 * 3600, 0);
-        var posts = List.of(post1, post2, post3, post4);
+        var pageSize = Communities.communityPostsPageSize;
+        var posts = new ArrayList<PostSummary>();
+        for (var i = 0; i < pageSize + 5; i++)
+            posts.add(mockPostSummary(community, 1 + i / 2, 0));
         implGetCommunityPosts(community, posts);
+        var expected = new ArrayList<>(posts);
+        Collections.reverse(expected);
 
-        var result1 = communities.getPosts(community, 0);
-        var result2 = communities.getPosts(community, 1);
+        var result1 = communities.getPosts(community, Optional.empty());
+        var result2 = communities.getPosts(community, result1.next.flatMap(Cursor::parse));
 
-        assertThat(result1).containsExactly(post3, post4);
-        assertThat(result2).containsExactly(post1, post2);
+        assertThat(result1.items).containsExactlyElementsOf(expected.subList(0, pageSize));
+        assertThat(result2.items).containsExactlyElementsOf(expected.subList(pageSize, expected.size()));
+        assertThat(result2.next).isEmpty();
     }
 
     @Test
@@ -111,17 +122,17 @@ public class CommunitiesTest extends LogicTestBase {
         var minPoints = -100;
         var maxPoints = 10000;
 
-        var posts = new ArrayList<Post>();
+        var posts = new ArrayList<PostSummary>();
         var random = new Random(0);
         for (var i = 0; i < Communities.popularPostsMaxCount + 1; i++) {
             var sentTime = 1 + random.nextInt((int)time);
             var points = minPoints + random.nextInt(maxPoints - minPoints);
-            posts.add(mockPost(community, sentTime, points));
+            posts.add(mockPostSummary(community, sentTime, points));
         }
 
         implGetCommunityPosts(community, posts);
 
-        ToDoubleFunction<Post> scoreFunction = p -> -Communities.postScore(p.points, time - p.sentTime);
+        ToDoubleFunction<PostSummary> scoreFunction = p -> -Communities.postScore(p.points, time - p.sentTime);
         var expected = new ArrayList<>(posts);
         expected.sort(Comparator.comparingDouble(scoreFunction));
         expected.remove(expected.size() - 1);
@@ -181,6 +192,7 @@ public class CommunitiesTest extends LogicTestBase {
         communities.subscribe(user, community);
 
         verify(database).newSubscriber(user.id, community.id, time);
+        verify(feeds).invalidate(user);
     }
 
     @Test
@@ -201,6 +213,7 @@ public class CommunitiesTest extends LogicTestBase {
         communities.unsubscribe(subscriber);
 
         verify(database).deleteSubscriber(subscriber.user.id, subscriber.community.id);
+        verify(feeds).invalidate(subscriber.user);
     }
 
     @Test
@@ -217,9 +230,7 @@ public class CommunitiesTest extends LogicTestBase {
     @Test
     public void testCountSubscribers() {
         var community = mockCommunity();
-        var subscriber1 = mockSubscriber(community);
-        var subscriber2 = mockSubscriber(community);
-        when(database.getCommunitySubscribers(community.id)).thenReturn(List.of(subscriber1, subscriber2));
+        when(database.countCommunitySubscribers(community.id)).thenReturn(2L);
 
         var result = communities.countSubscribers(community);
 
@@ -302,10 +313,14 @@ public class CommunitiesTest extends LogicTestBase {
     @Test
     public void testDelete() {
         var community = mockCommunity();
+        ranking.top(community.id, 10);
 
         communities.delete(community);
+        ranking.top(community.id, 10);
 
         verify(database).deleteCommunity(community.id);
+        verify(feeds).removeCommunity(community.id);
+        verify(database, times(2)).getCommunityPosts(eq(community.id), anyLong(), any(), anyInt());
         verify(emailer).emailAdmin("community-deleted:" + community.name);
         verify(emailer).emailUser(community.owner, "community-deleted:" + community.name);
     }
@@ -0,0 +1,151 @@
+package forum.logic;
+
+import forum.entities.PostSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class HomeFeedsTest extends LogicTestBase {
+    private final PostRanking ranking = mock(PostRanking.class);
+    private final HomeFeeds feeds = new HomeFeeds(database, clock, ranking);
+
+    @Test
+    public void testGet() {
+        time = 100;
+        var user = mockUser();
+        var small = mockCommunity();
+        var large = mockCommunity();
+        var post1 = mockPostSummary(small, 10, 10);
+        var post2 = mockPostSummary(large, 20, 10);
+        when(database.getUserSubscriptionIds(user.id, 0, HomeFeeds.fanOutMaxSubscribers))
+                .thenReturn(List.of(small.id));
+        when(database.getUserSubscriptionIds(user.id, HomeFeeds.fanOutMaxSubscribers + 1, Long.MAX_VALUE))
+                .thenReturn(List.of(large.id));
+        when(database.getUserSubscriptionsPosts(eq(user.id), anyLong(), eq(HomeFeeds.fanOutMaxSubscribers), anyInt()))
+                .thenReturn(List.of(post1));
+        when(ranking.top(eq(large.id), anyInt())).thenReturn(List.of(post2));
+
+        var result1 = feeds.get(user);
+        var result2 = feeds.get(user);
+
+        assertThat(result1).containsExactly(post1, post2);
+        assertThat(result2).containsExactly(post1, post2);
+        verify(database, times(1)).getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testFanOut() {
+        time = 100;
+        var user = mockUser();
+        var community = mockCommunity();
+        var post1 = mockPost(community, 10, 10);
+        var post2 = mockPost(community, 20, 10);
+        var other = mockPost(30, 10);
+        when(database.getUserSubscriptionIds(user.id, 0, HomeFeeds.fanOutMaxSubscribers))
+                .thenReturn(List.of(community.id));
+        when(database.getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt()))
+                .thenReturn(List.of(PostSummary.of(post1)));
+        feeds.get(user);
+
+        feeds.add(post2);
+        feeds.add(other);
+        var result1 = feeds.get(user);
+
+        feeds.remove(post1);
+        var result2 = feeds.get(user);
+
+        assertThat(result1).containsExactly(PostSummary.of(post1), PostSummary.of(post2));
+        assertThat(result2).containsExactly(PostSummary.of(post2));
+        verify(database, times(1)).getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testRingSize() {
+        time = 100;
+        var user = mockUser();
+        var community = mockCommunity();
+        when(database.getUserSubscriptionIds(user.id, 0, HomeFeeds.fanOutMaxSubscribers))
+                .thenReturn(List.of(community.id));
+        feeds.get(user);
+
+        var first = mockPost(community, 1, 10);
+        feeds.add(first);
+        for (var i = 0; i < HomeFeeds.ringSize; i++)
+            feeds.add(mockPost(community, 2, 10));
+        var result = feeds.get(user);
+
+        assertThat(result).hasSize(HomeFeeds.ringSize);
+        assertThat(result).doesNotContain(PostSummary.of(first));
+    }
+
+    @Test
+    public void testInvalidateAndRefresh() {
+        time = 100;
+        var user = mockUser();
+        feeds.get(user);
+
+        feeds.invalidate(user);
+        feeds.get(user);
+
+        time += HomeFeeds.refreshIntervalSeconds;
+        feeds.get(user);
+
+        verify(database, times(3)).getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testRemovedWhileLoading() {
+        time = 100;
+        var user = mockUser();
+        var community = mockCommunity();
+        var post1 = mockPost(community, 10, 10);
+        var post2 = mockPost(community, 20, 10);
+        when(database.getUserSubscriptionIds(user.id, 0, HomeFeeds.fanOutMaxSubscribers))
+                .thenReturn(List.of(community.id));
+        when(database.getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            feeds.remove(post1);
+            return List.of(PostSummary.of(post1), PostSummary.of(post2));
+        });
+
+        var result = feeds.get(user);
+
+        assertThat(result).containsExactly(PostSummary.of(post2));
+    }
+
+    @Test
+    public void testLoadException() {
+        time = 100;
+        var user = mockUser();
+        when(database.getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt()))
+                .thenThrow(new IllegalStateException())
+                .thenReturn(List.of());
+
+        assertThrows(IllegalStateException.class, () -> feeds.get(user));
+        feeds.get(user);
+
+        verify(database, times(2)).getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testRemoveCommunity() {
+        time = 100;
+        var user = mockUser();
+        var other = mockUser();
+        var community = mockCommunity();
+        when(database.getUserSubscriptionIds(user.id, 0, HomeFeeds.fanOutMaxSubscribers))
+                .thenReturn(List.of(community.id));
+        feeds.get(user);
+        feeds.get(other);
+
+        feeds.removeCommunity(community.id);
+        feeds.get(user);
+        feeds.get(other);
+
+        verify(database, times(2)).getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt());
+        verify(database, times(1)).getUserSubscriptionsPosts(eq(other.id), anyLong(), anyLong(), anyInt());
+    }
+}
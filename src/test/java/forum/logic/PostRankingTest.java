@@ -0,0 +1,156 @@
+package forum.logic;
+
+import forum.entities.PostSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PostRankingTest extends LogicTestBase {
+    private final PostRanking ranking = new PostRanking(database, clock);
+
+    @Test
+    public void testTop() {
+        time = 100 * 3600;
+        var community = mockCommunity();
+        var post1 = mockPostSummary(community, 90 * 3600, 10);
+        var post2 = mockPostSummary(community, 80 * 3600, 1000);
+        var post3 = mockPostSummary(community, 99 * 3600, 1);
+        var post4 = mockPostSummary(community, 10 * 3600, 100);
+        when(database.getCommunityPosts(eq(community.id), anyLong(), any(), anyInt()))
+                .thenReturn(List.of(post1, post2, post3, post4));
+
+        var result1 = ranking.top(community.id, 10);
+        var result2 = ranking.top(community.id, 2);
+
+        assertThat(result1).containsExactly(post2, post1, post3, post4);
+        assertThat(result2).containsExactly(post2, post1);
+        verify(database, times(1)).getCommunityPosts(eq(community.id), anyLong(), any(), anyInt());
+    }
+
+    @Test
+    public void testUpdates() {
+        time = 100 * 3600;
+        var community = mockCommunity();
+        var post1 = mockPost(community, 90 * 3600, 10);
+        var post2 = mockPost(community, 95 * 3600, 10);
+        var post3 = mockPost(community, 99 * 3600, 10);
+        when(database.getCommunityPosts(eq(community.id), anyLong(), any(), anyInt()))
+                .thenReturn(List.of(PostSummary.of(post1), PostSummary.of(post2)));
+        ranking.top(community.id, 10);
+
+        ranking.add(post3);
+        ranking.addPoints(post1, 1000);
+        ranking.remove(post2);
+        var result = ranking.top(community.id, 10);
+
+        var upvoted = new PostSummary(post1.id, post1.title, post1.sender.name, community.name, post1.sentTime, 1010);
+        assertThat(result).containsExactly(upvoted, PostSummary.of(post3));
+    }
+
+    @Test
+    public void testUpdatesNotLoaded() {
+        var post = mockPost();
+
+        ranking.add(post);
+        ranking.addPoints(post, 1);
+        ranking.remove(post);
+
+        verifyNoInteractions(database);
+    }
+
+    @Test
+    public void testRefresh() {
+        time = 24 * 3600 * Communities.popularPostsMaxAgeDays;
+        var community = mockCommunity();
+        var post1 = mockPostSummary(community, 1, 10);
+        var post2 = mockPostSummary(community, 2, 10);
+        when(database.getCommunityPosts(eq(community.id), anyLong(), any(), anyInt()))
+                .thenReturn(List.of(post1, post2));
+        ranking.top(community.id, 10);
+
+        time += 1;
+        var result1 = ranking.top(community.id, 10);
+
+        time += PostRanking.refreshIntervalSeconds;
+        ranking.top(community.id, 10);
+
+        assertThat(result1).containsExactly(post2);
+        verify(database, times(2)).getCommunityPosts(eq(community.id), anyLong(), any(), anyInt());
+    }
+
+    @Test
+    public void testRemovedWhileLoading() {
+        time = 100 * 3600;
+        var community = mockCommunity();
+        var post1 = mockPost(community, 90 * 3600, 10);
+        var post2 = mockPost(community, 95 * 3600, 10);
+        when(database.getCommunityPosts(eq(community.id), anyLong(), any(), anyInt())).thenAnswer(invocation -> {
+            ranking.remove(post2);
+            return List.of(PostSummary.of(post1), PostSummary.of(post2));
+        });
+
+        var result = ranking.top(community.id, 10);
+
+        assertThat(result).containsExactly(PostSummary.of(post1));
+    }
+
+    @Test
+    public void testPointsWhileLoading() {
+        time = 100 * 3600;
+        var community = mockCommunity();
+        var post1 = mockPost(community, 99 * 3600, 10);
+        var post2 = mockPost(community, 98 * 3600, 10);
+        var firstPage = new ArrayList<PostSummary>();
+        firstPage.add(PostSummary.of(post1));
+        for (var i = 1; i < PostRanking.loadPageSize; i++)
+            firstPage.add(mockPostSummary(community, 90 * 3600, 1));
+        var upvoted2 = new PostSummary(post2.id, post2.title, post2.sender.name, community.name, post2.sentTime, 15);
+        when(database.getCommunityPosts(eq(community.id), anyLong(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    ranking.addPoints(post2, 5);
+                    return firstPage;
+                })
+                .thenAnswer(invocation -> {
+                    ranking.addPoints(post1, 100);
+                    ranking.addPoints(post2, 100);
+                    return List.of(upvoted2);
+                });
+
+        var result = ranking.top(community.id, 2);
+
+        var expected1 = new PostSummary(post1.id, post1.title, post1.sender.name, community.name, post1.sentTime, 110);
+        var expected2 = new PostSummary(post2.id, post2.title, post2.sender.name, community.name, post2.sentTime, 115);
+        assertThat(result).containsExactly(expected1, expected2);
+    }
+
+    @Test
+    public void testLoadException() {
+        var community = mockCommunity();
+        var post = mockPostSummary(community, 1, 10);
+        when(database.getCommunityPosts(eq(community.id), anyLong(), any(), anyInt()))
+                .thenThrow(new IllegalStateException())
+                .thenReturn(List.of(post));
+
+        assertThrows(IllegalStateException.class, () -> ranking.top(community.id, 10));
+        var result = ranking.top(community.id, 10);
+
+        assertThat(result).containsExactly(post);
+    }
+
+    @Test
+    public void testRemoveCommunity() {
+        var community = mockCommunity();
+        when(database.getCommunityPosts(eq(community.id), anyLong(), any(), anyInt())).thenReturn(List.of());
+        ranking.top(community.id, 10);
+
+        ranking.removeCommunity(community.id);
+        ranking.top(community.id, 10);
+
+        verify(database, times(2)).getCommunityPosts(eq(community.id), anyLong(), any(), anyInt());
+    }
+}
@@ -1,5 +1,8 @@
 package forum.logic;
 
+import forum.entities.Comment;
+import forum.entities.CommentPage;
+import forum.entities.Cursor;
 import forum.entities.CommentTree;
 import forum.entities.Post;
 import forum.forms.PostSendForm;
@@ -9,6 +12,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -16,7 +20,9 @@ import static org.mockito.Mockito.*;
 
 public class PostsTest extends LogicTestBase {
     private final Users users = mock(Users.class);
-    private final Posts posts = new Posts(database, clock, emailer, users);
+    private final PostRanking ranking = mock(PostRanking.class);
+    private final HomeFeeds feeds = mock(HomeFeeds.class);
+    private final Posts posts = new Posts(database, clock, emailer, users, ranking, feeds);
 
     @Test
     public void testGet() {
@@ -50,7 +56,6 @@ public class PostsTest extends LogicTestBase {
         var comment3 = mockComment(post, OptionalLong.of(comment1.id));
         var comment4 = mockComment(post, OptionalLong.of(comment2.id));
         var comment5 = mockComment(post, OptionalLong.of(comment2.id));
-        var comments = List.of(comment1, comment2, comment3, comment4, comment5);
 
         var expected = new ArrayList<CommentTree>();
         expected.add(new CommentTree(comment1, new ArrayList<>()));
@@ -59,19 +64,63 @@ public class PostsTest extends LogicTestBase {
         expected.get(1).children.add(new CommentTree(comment4, new ArrayList<>()));
         expected.get(1).children.add(new CommentTree(comment5, new ArrayList<>()));
 
-        when(database.getPostComments(post.id)).thenReturn(comments);
+        when(database.getPostRootComments(post.id, CommentPage.Order.New, Optional.empty(), Posts.commentPageSize + 1))
+                .thenReturn(List.of(comment1, comment2));
+        when(database.getCommentReplies(List.of(comment1.id, comment2.id), CommentPage.Order.New, Posts.repliesPerComment + 1))
+                .thenReturn(List.of(comment3, comment4, comment5));
 
-        var result = posts.getComments(post);
+        var result = posts.getComments(post, CommentPage.Order.New, Optional.empty());
 
-        assertThat(result).containsExactlyElementsOf(expected);
+        assertEquals(new CommentPage(expected, Optional.empty()), result);
+    }
+
+    @Test
+    public void testGetCommentsTruncated() {
+        var post = mockPost();
+        var cursor = new Cursor(10L, 5L);
+        var roots = new ArrayList<Comment>();
+        for (var i = 0; i <= Posts.commentPageSize; i++)
+            roots.add(mockComment(post));
+        var first = roots.get(0);
+        var replies = new ArrayList<Comment>();
+        for (var i = 0; i <= Posts.repliesPerComment; i++)
+            replies.add(mockComment(post, OptionalLong.of(first.id)));
+        var reply = replies.get(0);
+        var deepReply = mockComment(post, OptionalLong.of(reply.id));
+        var deeperReply = mockComment(post, OptionalLong.of(deepReply.id));
+
+        var pageRoots = roots.subList(0, Posts.commentPageSize);
+        var rootIds = pageRoots.stream().map(x -> x.id).collect(Collectors.toList());
+        var loadedReplies = replies.subList(0, Posts.repliesPerComment);
+        var replyIds = loadedReplies.stream().map(x -> x.id).collect(Collectors.toList());
+        when(database.getPostRootComments(post.id, CommentPage.Order.Top, Optional.of(cursor), Posts.commentPageSize + 1))
+                .thenReturn(roots);
+        when(database.getCommentReplies(rootIds, CommentPage.Order.Top, Posts.repliesPerComment + 1))
+                .thenReturn(replies);
+        when(database.getCommentReplies(replyIds, CommentPage.Order.Top, Posts.repliesPerComment + 1))
+                .thenReturn(List.of(deepReply));
+        when(database.getCommentReplies(List.of(deepReply.id), CommentPage.Order.Top, 1))
+                .thenReturn(List.of(deeperReply));
+
+        var result = posts.getComments(post, CommentPage.Order.Top, Optional.of(cursor));
+
+        var last = pageRoots.get(Posts.commentPageSize - 1);
+        assertThat(result.next).contains(last.points + "." + last.id);
+        assertThat(result.comments).hasSize(Posts.commentPageSize);
+        var tree = result.comments.get(0);
+        assertTrue(tree.truncated);
+        assertThat(tree.children).hasSize(Posts.repliesPerComment);
+        assertFalse(tree.children.get(0).truncated);
+        assertThat(tree.children.get(0).children).hasSize(1);
+        assertTrue(tree.children.get(0).children.get(0).truncated);
+        assertThat(tree.children.get(0).children.get(0).children).isEmpty();
+        assertFalse(result.comments.get(1).truncated);
     }
 
     @Test
     public void testCountVotes() {
         var post = mockPost();
-        var vote1 = mockPostVote(post);
-        var vote2 = mockPostVote(post);
-        when(database.getPostVotes(post.id)).thenReturn(List.of(vote1, vote2));
+        when(database.countPostVotes(post.id)).thenReturn(2L);
 
         var result = posts.countVotes(post);
 
@@ -93,6 +142,8 @@ public class PostsTest extends LogicTestBase {
         var result = posts.send(sender, form);
 
         verify(database).newPost(sender.id, community.id, title, content, time);
+        verify(ranking).add(post);
+        verify(feeds).add(post);
         assertEquals(post, result);
     }
 
@@ -111,35 +162,34 @@ public class PostsTest extends LogicTestBase {
         time = 10;
         var voter = mockUser();
         var post = mockPost();
+        when(database.votePost(voter.id, post.id, true, time)).thenReturn(+1L);
 
         posts.upvote(voter, post);
 
-        verify(database).newPostVote(voter.id, post.id, true, time);
-        verify(database).addPostPoints(post.id, +1);
+        verify(database).votePost(voter.id, post.id, true, time);
+        verify(ranking).addPoints(post, +1);
         verify(users).addPoints(post.sender, +1);
     }
 
     @Test
     public void testUpvoteAgain() {
         var vote = mockPostVote(true);
-        when(database.getPostVote(vote.voter.id, vote.post.id)).thenReturn(Optional.of(vote));
+        when(database.votePost(vote.voter.id, vote.post.id, true, time)).thenReturn(0L);
 
         posts.upvote(vote.voter, vote.post);
 
-        verify(database, never()).newPostVote(anyLong(), anyLong(), anyBoolean(), anyLong());
-        verify(database, never()).addPostPoints(anyLong(), anyLong());
+        verify(ranking, never()).addPoints(any(), anyLong());
         verify(users, never()).addPoints(any(), anyLong());
     }
 
     @Test
     public void testUpvoteFlip() {
         var vote = mockPostVote(false);
-        when(database.getPostVote(vote.voter.id, vote.post.id)).thenReturn(Optional.of(vote));
+        when(database.votePost(vote.voter.id, vote.post.id, true, time)).thenReturn(+2L);
 
         posts.upvote(vote.voter, vote.post);
 
-        verify(database).flipPostVote(vote.voter.id, vote.post.id, time);
-        verify(database).addPostPoints(vote.post.id, +2);
+        verify(ranking).addPoints(vote.post, +2);
         verify(users).addPoints(vote.post.sender, +2);
     }
 
@@ -148,57 +198,58 @@ public class PostsTest extends LogicTestBase {
         time = 10;
         var voter = mockUser();
         var post = mockPost();
+        when(database.votePost(voter.id, post.id, false, time)).thenReturn(-1L);
 
         posts.downvote(voter, post);
 
-        verify(database).newPostVote(voter.id, post.id, false, time);
-        verify(database).addPostPoints(post.id, -1);
+        verify(database).votePost(voter.id, post.id, false, time);
+        verify(ranking).addPoints(post, -1);
         verify(users).addPoints(post.sender, -1);
     }
 
     @Test
     public void testDownvoteAgain() {
         var vote = mockPostVote(false);
-        when(database.getPostVote(vote.voter.id, vote.post.id)).thenReturn(Optional.of(vote));
+        when(database.votePost(vote.voter.id, vote.post.id, false, time)).thenReturn(0L);
 
         posts.downvote(vote.voter, vote.post);
 
-        verify(database, never()).newPostVote(anyLong(), anyLong(), anyBoolean(), anyLong());
-        verify(database, never()).addPostPoints(anyLong(), anyLong());
+        verify(ranking, never()).addPoints(any(), anyLong());
         verify(users, never()).addPoints(any(), anyLong());
     }
 
     @Test
     public void testDownvoteFlip() {
         var vote = mockPostVote(true);
-        when(database.getPostVote(vote.voter.id, vote.post.id)).thenReturn(Optional.of(vote));
+        when(database.votePost(vote.voter.id, vote.post.id, false, time)).thenReturn(-2L);
 
         posts.downvote(vote.voter, vote.post);
 
-        verify(database).flipPostVote(vote.voter.id, vote.post.id, time);
-        verify(database).addPostPoints(vote.post.id, -2);
+        verify(ranking).addPoints(vote.post, -2);
         verify(users).addPoints(vote.post.sender, -2);
     }
 
     @Test
     public void testUndoUpvote() {
         var vote = mockPostVote(true);
+        when(database.unvotePost(vote.voter.id, vote.post.id)).thenReturn(-1L);
 
         posts.unvote(vote);
 
-        verify(database).deletePostVote(vote.voter.id, vote.post.id);
-        verify(database).addPostPoints(vote.post.id, -1);
+        verify(database).unvotePost(vote.voter.id, vote.post.id);
+        verify(ranking).addPoints(vote.post, -1);
         verify(users).addPoints(vote.post.sender, -1);
     }
 
     @Test
     public void testUndoDownvote() {
         var vote = mockPostVote(false);
+        when(database.unvotePost(vote.voter.id, vote.post.id)).thenReturn(+1L);
 
         posts.unvote(vote);
 
-        verify(database).deletePostVote(vote.voter.id, vote.post.id);
-        verify(database).addPostPoints(vote.post.id, +1);
+        verify(database).unvotePost(vote.voter.id, vote.post.id);
+        verify(ranking).addPoints(vote.post, +1);
         verify(users).addPoints(vote.post.sender, +1);
     }
 
@@ -209,6 +260,8 @@ public class PostsTest extends LogicTestBase {
         posts.delete(post, false);
 
         verify(database).deletePost(post.id);
+        verify(ranking).remove(post);
+        verify(feeds).remove(post);
     }
 
     @Test
@@ -218,6 +271,8 @@ public class PostsTest extends LogicTestBase {
         posts.delete(post, true);
 
         verify(database).deletePost(post.id);
+        verify(ranking).remove(post);
+        verify(feeds).remove(post);
         verify(emailer).emailUser(post.sender, "post-deleted:" + post.id);
     }
 }
@@ -1,6 +1,9 @@
 package forum.logic;
 
-import forum.entities.Post;
+import forum.entities.CommentSummary;
+import forum.entities.Cursor;
+import forum.entities.Listing;
+import forum.entities.PostSummary;
 import forum.entities.User;
 import forum.forms.UserRegisterForm;
 import forum.exceptions.UserRegisterException;
@@ -18,7 +21,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class UsersTest extends LogicTestBase {
-    private final Users users = new Users(database, clock, validator, authenticator, emailer);
+    private final HomeFeeds feeds = new HomeFeeds(database, clock, new PostRanking(database, clock));
+    private final Users users = new Users(database, clock, validator, authenticator, emailer, feeds);
 
     @Test
     public void testGet() {
@@ -47,25 +51,41 @@ public class UsersTest extends LogicTestBase {
     @Test
     public void testGetPosts() {
         var user = mockUser();
-        var post1 = mockPost(user);
-        var post2 = mockPost(user);
-        when(database.getUserPosts(user.id)).thenReturn(List.of(post1, post2));
+        var post1 = mockPostSummary(user);
+        var post2 = mockPostSummary(user);
+        when(database.getUserPosts(user.id, Optional.empty(), Users.userPageSize + 1)).thenReturn(List.of(post1, post2));
 
-        var result = users.getPosts(user);
+        var result = users.getPosts(user, Optional.empty());
 
-        assertThat(result).containsExactly(post1, post2);
+        assertThat(result).isEqualTo(new Listing<>(List.of(post1, post2), Optional.empty()));
     }
 
     @Test
     public void testGetComments() {
         var user = mockUser();
-        var comment1 = mockComment(user);
-        var comment2 = mockComment(user);
-        when(database.getUserComments(user.id)).thenReturn(List.of(comment1, comment2));
+        var comment1 = mockCommentSummary(user);
+        var comment2 = mockCommentSummary(user);
+        when(database.getUserComments(user.id, Optional.empty(), Users.userPageSize + 1)).thenReturn(List.of(comment1, comment2));
 
-        var result = users.getComments(user);
+        var result = users.getComments(user, Optional.empty());
 
-        assertThat(result).containsExactly(comment1, comment2);
+        assertThat(result).isEqualTo(new Listing<>(List.of(comment1, comment2), Optional.empty()));
+    }
+
+    @Test
+    public void testGetCommentsPage() {
+        var user = mockUser();
+        var cursor = new Cursor(10L, 5L);
+        var comments = new ArrayList<CommentSummary>();
+        for (var i = 0; i <= Users.userPageSize; i++)
+            comments.add(mockCommentSummary(user));
+        var last = comments.get(Users.userPageSize - 1);
+        when(database.getUserComments(user.id, Optional.of(cursor), Users.userPageSize + 1)).thenReturn(comments);
+
+        var result = users.getComments(user, Optional.of(cursor));
+
+        assertThat(result.items).containsExactlyElementsOf(comments.subList(0, Users.userPageSize));
+        assertThat(result.next).hasValue(last.sentTime + "." + last.id);
     }
 
     @Test
@@ -104,14 +124,14 @@ public class UsersTest extends LogicTestBase {
         assertThat(result).containsExactly(vote1, vote2);
     }
 
-    private void implGetUserSubscriptionsPosts(User user, List<Post> posts) {
-        Answer<List<Post>> answer = inv -> {
+    private void implGetUserSubscriptionsPosts(User user, List<PostSummary> posts) {
+        Answer<List<PostSummary>> answer = inv -> {
             var newerThan = (long) inv.getArgument(1);
-            Predicate<Post> predicate = p -> p.sentTime > newerThan;
+            Predicate<PostSummary> predicate = p -> p.sentTime > newerThan;
             return posts.stream().filter(predicate).collect(Collectors.toList());
         };
 
-        when(database.getUserSubscriptionsPosts(eq(user.id), anyLong())).then(answer);
+        when(database.getUserSubscriptionsPosts(eq(user.id), anyLong(), anyLong(), anyInt())).then(answer);
     }
 
     @Test
@@ -121,17 +141,17 @@ public class UsersTest extends LogicTestBase {
         var minPoints = -100;
         var maxPoints = 10000;
 
-        var posts = new ArrayList<Post>();
+        var posts = new ArrayList<PostSummary>();
         var random = new Random(0);
         for (var i = 0; i < Users.feedMaxCount + 1; i++) {
             var sentTime = 1 + random.nextInt((int)time);
             var points = minPoints + random.nextInt(maxPoints - minPoints);
-            posts.add(mockPost(sentTime, points));
+            posts.add(mockPostSummary(sentTime, points));
         }
 
         implGetUserSubscriptionsPosts(user, posts);
 
-        ToDoubleFunction<Post> scoreFunction = p -> -Communities.postScore(p.points, time - p.sentTime);
+        ToDoubleFunction<PostSummary> scoreFunction = p -> -Communities.postScore(p.points, time - p.sentTime);
         var expected = new ArrayList<>(posts);
         expected.sort(Comparator.comparingDouble(scoreFunction));
         expected.remove(expected.size() - 1);
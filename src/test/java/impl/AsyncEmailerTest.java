@@ -0,0 +1,139 @@
+package impl;
+
+import forum.entities.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncEmailerTest {
+    private Path directory;
+    private Path emails;
+    private Path outbox;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("forum-test");
+        emails = directory.resolve("emails.txt");
+        outbox = directory.resolve("emails-outbox.txt");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private AsyncEmailer newEmailer(int queueSize) {
+        return new AsyncEmailer(emails.toString(), outbox.toString(), queueSize, 10);
+    }
+
+    private static User user(String name, Optional<String> email) {
+        return new User(1, name, email, 0, new byte[0], new byte[0], 0);
+    }
+
+    private static List<String> lines(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    private static String message(String line) {
+        return line.substring(line.lastIndexOf('\t') + 1);
+    }
+
+    @Test
+    public void testSend() throws IOException {
+        var emailer = newEmailer(100);
+
+        emailer.emailUser(user("user", Optional.of("user@example.com")), "hello\nworld");
+        emailer.emailUser(user("other", Optional.empty()), "nobody");
+        emailer.emailAdmin("error");
+        emailer.close();
+
+        var lines = lines(emails);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith("\tuser@example.com\thello world"));
+        assertTrue(lines.get(1).endsWith("\tadmin\terror"));
+        assertEquals(List.of(), lines(outbox));
+        assertEquals(2, emailer.sent());
+    }
+
+    @Test
+    public void testDurableBeforeReturn() throws IOException {
+        var emailer = newEmailer(100);
+
+        emailer.emailAdmin("message");
+
+        var written = new ArrayList<String>();
+        written.addAll(lines(outbox));
+        written.addAll(lines(emails));
+        assertTrue(written.stream().anyMatch(line -> message(line).equals("message")));
+        emailer.close();
+    }
+
+    @Test
+    public void testOutboxReplayed() throws IOException {
+        Files.write(outbox, List.of("2020-01-01 00:00:00\tadmin\tleft"), StandardCharsets.UTF_8);
+
+        var emailer = newEmailer(100);
+        emailer.emailAdmin("new");
+        emailer.close();
+
+        var lines = lines(emails);
+        assertEquals(List.of("left", "new"), List.of(message(lines.get(0)), message(lines.get(1))));
+        assertEquals(List.of(), lines(outbox));
+        assertEquals(2, emailer.sent());
+    }
+
+    @Test
+    public void testConcurrentSends() throws IOException, InterruptedException {
+        var emailer = newEmailer(4);
+
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 8; i++) {
+            var thread = i;
+            threads.add(new Thread(() -> {
+                for (var j = 0; j < 100; j++)
+                    emailer.emailAdmin(thread + "-" + j);
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads)
+            thread.join();
+        emailer.close();
+
+        var lines = lines(emails);
+        assertEquals(800, lines.size());
+        assertEquals(800, lines.stream().map(AsyncEmailerTest::message).distinct().count());
+        assertEquals(800, emailer.sent());
+        assertTrue(emailer.batches() <= emailer.sent());
+        assertEquals(0, emailer.queued());
+    }
+
+    @Test
+    public void testSendAfterClose() throws IOException {
+        var emailer = newEmailer(100);
+
+        emailer.emailAdmin("before");
+        emailer.close();
+        emailer.emailAdmin("after");
+        emailer.emailUser(user("user", Optional.of("user@example.com")), "after");
+
+        var messages = new ArrayList<String>();
+        lines(emails).forEach(line -> messages.add(message(line)));
+        assertEquals(List.of("before", "after", "after"), messages);
+        assertEquals(List.of(), lines(outbox));
+        assertEquals(3, emailer.sent());
+    }
+}
@@ -0,0 +1,154 @@
+package impl;
+
+import forum.entities.User;
+import forum.services.Emailer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoalescingEmailerTest {
+    private final List<String> sent = new ArrayList<>();
+    private final Emailer recording = new Emailer() {
+        @Override
+        public void emailUser(User user, String message) {
+            synchronized (sent) {
+                sent.add(user.id + ":" + message);
+            }
+        }
+
+        @Override
+        public void emailAdmin(String message) {
+            synchronized (sent) {
+                sent.add("admin:" + message);
+            }
+        }
+    };
+
+    private static User user(long id) {
+        return new User(id, "user" + id, Optional.of("user" + id + "@example.com"), 0, new byte[0], new byte[0], 0);
+    }
+
+    private CoalescingEmailer newEmailer(long windowMillis) {
+        return new CoalescingEmailer(recording, Set.of("reply", "comment"), windowMillis);
+    }
+
+    private List<String> sent() {
+        synchronized (sent) {
+            return new ArrayList<>(sent);
+        }
+    }
+
+    @Test
+    public void testDigest() {
+        var emailer = newEmailer(3600 * 1000);
+
+        emailer.emailUser(user(1), "reply:12");
+        emailer.emailUser(user(1), "comment:3");
+        emailer.emailUser(user(1), "reply:12");
+        emailer.emailUser(user(1), "reply:12");
+        assertEquals(List.of(), sent());
+        emailer.close();
+
+        assertEquals(List.of("1:digest:reply:12*3,comment:3*1"), sent());
+        assertEquals(4, emailer.eventsIn());
+        assertEquals(1, emailer.messagesOut());
+    }
+
+    @Test
+    public void testSingleMessageUnchanged() {
+        var emailer = newEmailer(3600 * 1000);
+
+        emailer.emailUser(user(1), "reply:12");
+        emailer.close();
+
+        assertEquals(List.of("1:reply:12"), sent());
+    }
+
+    @Test
+    public void testSeparateUsers() {
+        var emailer = newEmailer(3600 * 1000);
+
+        emailer.emailUser(user(1), "reply:12");
+        emailer.emailUser(user(2), "reply:12");
+        emailer.emailUser(user(2), "reply:13");
+        emailer.close();
+
+        var sent = sent();
+        assertEquals(2, sent.size());
+        assertTrue(sent.contains("1:reply:12"));
+        assertTrue(sent.contains("2:digest:reply:12*1,reply:13*1"));
+    }
+
+    @Test
+    public void testOtherMessagesNotDelayed() {
+        var emailer = newEmailer(3600 * 1000);
+
+        emailer.emailUser(user(1), "welcome");
+        emailer.emailAdmin("error");
+        emailer.emailUser(new User(2, "user2", Optional.empty(), 0, new byte[0], new byte[0], 0), "reply:12");
+
+        assertEquals(List.of("1:welcome", "admin:error"), sent());
+        assertEquals(3, emailer.eventsIn());
+        assertEquals(2, emailer.messagesOut());
+        assertEquals(1, emailer.skipped());
+        emailer.close();
+    }
+
+    @Test
+    public void testWindow() throws InterruptedException {
+        var emailer = newEmailer(50);
+
+        emailer.emailUser(user(1), "reply:12");
+        emailer.emailUser(user(1), "reply:12");
+        for (var i = 0; i < 100 && sent().isEmpty(); i++)
+            Thread.sleep(50);
+
+        assertEquals(List.of("1:digest:reply:12*2"), sent());
+        emailer.emailUser(user(1), "reply:13");
+        emailer.close();
+        assertEquals(List.of("1:digest:reply:12*2", "1:reply:13"), sent());
+    }
+
+    @Test
+    public void testAfterClose() {
+        var emailer = newEmailer(3600 * 1000);
+        emailer.close();
+
+        emailer.emailUser(user(1), "reply:12");
+
+        assertEquals(List.of("1:reply:12"), sent());
+    }
+
+    @Test
+    public void testConcurrentEvents() throws InterruptedException {
+        var emailer = newEmailer(5);
+
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (var j = 0; j < 100; j++)
+                    emailer.emailUser(user(1), "reply:12");
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads)
+            thread.join();
+        emailer.close();
+
+        var events = 0;
+        for (var message : sent()) {
+            if (message.equals("1:reply:12"))
+                events += 1;
+            else
+                events += Integer.parseInt(message.substring("1:digest:reply:12*".length()));
+        }
+        assertEquals(800, events);
+        assertEquals(800, emailer.eventsIn());
+        assertEquals(sent().size(), emailer.messagesOut());
+    }
+}
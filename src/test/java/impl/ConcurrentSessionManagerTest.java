@@ -0,0 +1,158 @@
+package impl;
+
+import forum.web.Request;
+import forum.web.Response;
+import forum.web.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentSessionManagerTest {
+    private final AtomicLong time = new AtomicLong(1000);
+    private ConcurrentSessionManager manager = newManager(100, 1000, 10, 3600);
+
+    private ConcurrentSessionManager newManager(long idleTtl, long absoluteTtl, int maxSessions, long sweepInterval) {
+        return new ConcurrentSessionManager(time::get, idleTtl, absoluteTtl, maxSessions, sweepInterval);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        manager.close();
+    }
+
+    private static Request request(Session session) {
+        return new Request(Request.Method.Get, "/", Map.of(), Map.of("session", Long.toString(session.id)));
+    }
+
+    private static Request request() {
+        return new Request(Request.Method.Get, "/", Map.of(), Map.of());
+    }
+
+    @Test
+    public void testSession() {
+        var session = manager.getSession(request());
+        session.store.put("user", "1");
+        var response = new Response(Response.Status.Ok, null);
+        manager.saveSession(response, session);
+
+        assertEquals(Long.toString(session.id), response.newCookies.get("session"));
+        var next = manager.getSession(request(session));
+        assertSame(session, next);
+        assertEquals("1", next.store.get("user"));
+        assertEquals(1, manager.created());
+    }
+
+    @Test
+    public void testUnknownSession() {
+        var session = manager.getSession(request());
+
+        var badId = manager.getSession(new Request(Request.Method.Get, "/", Map.of(), Map.of("session", "abc")));
+        var unknown = manager.getSession(new Request(Request.Method.Get, "/", Map.of(),
+                Map.of("session", Long.toString(session.id + 1))));
+
+        assertNotEquals(session.id, badId.id);
+        assertNotEquals(session.id, unknown.id);
+        assertEquals(3, manager.size());
+    }
+
+    @Test
+    public void testIdleExpiry() {
+        var session = manager.getSession(request());
+
+        time.addAndGet(99);
+        assertSame(session, manager.getSession(request(session)));
+        time.addAndGet(99);
+        assertSame(session, manager.getSession(request(session)));
+        time.addAndGet(100);
+        var next = manager.getSession(request(session));
+
+        assertNotEquals(session.id, next.id);
+        assertEquals(1, manager.expired());
+        assertEquals(1, manager.size());
+    }
+
+    @Test
+    public void testAbsoluteExpiry() {
+        var session = manager.getSession(request());
+
+        for (var i = 0; i < 10; i++) {
+            time.addAndGet(99);
+            assertSame(session, manager.getSession(request(session)));
+        }
+        time.addAndGet(99);
+        var next = manager.getSession(request(session));
+
+        assertNotEquals(session.id, next.id);
+        assertEquals(1, manager.expired());
+    }
+
+    @Test
+    public void testSweep() throws InterruptedException {
+        manager.close();
+        manager = newManager(100, 1000, 10, 1);
+        manager.getSession(request());
+        manager.getSession(request());
+        time.addAndGet(50);
+        var active = manager.getSession(request());
+
+        time.addAndGet(60);
+        for (var i = 0; i < 100 && manager.size() > 1; i++)
+            Thread.sleep(50);
+
+        assertEquals(1, manager.size());
+        assertEquals(2, manager.expired());
+        assertSame(active, manager.getSession(request(active)));
+    }
+
+    @Test
+    public void testEviction() {
+        var sessions = new ArrayList<Session>();
+        for (var i = 0; i < 10; i++) {
+            sessions.add(manager.getSession(request()));
+            time.incrementAndGet();
+        }
+        manager.getSession(request(sessions.get(0)));
+
+        var extra = manager.getSession(request());
+
+        assertEquals(9, manager.size());
+        assertEquals(2, manager.evicted());
+        assertSame(sessions.get(0), manager.getSession(request(sessions.get(0))));
+        assertSame(extra, manager.getSession(request(extra)));
+        assertNotEquals(sessions.get(1).id, manager.getSession(request(sessions.get(1))).id);
+    }
+
+    @Test
+    public void testConcurrentSessions() throws InterruptedException {
+        manager.close();
+        manager = newManager(100, 1000, 100000, 3600);
+        var ids = new HashSet<Long>();
+
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (var j = 0; j < 1000; j++) {
+                    var session = manager.getSession(request());
+                    assertSame(session, manager.getSession(request(session)));
+                    synchronized (ids) {
+                        ids.add(session.id);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads)
+            thread.join();
+
+        assertEquals(8000, ids.size());
+        assertEquals(8000, manager.size());
+        assertEquals(8000, manager.created());
+    }
+}
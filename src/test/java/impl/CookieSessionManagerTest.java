@@ -0,0 +1,160 @@
+package impl;
+
+import forum.web.Request;
+import forum.web.Response;
+import forum.web.Session;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CookieSessionManagerTest {
+    private static final byte[] secret = "secret".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong time = new AtomicLong(1000);
+
+    private CookieSessionManager newManager(byte[] secret, boolean encrypt) {
+        return new CookieSessionManager(secret, time::get, 100, 1000, 4096, encrypt);
+    }
+
+    private static String save(CookieSessionManager manager, Session session) {
+        var response = new Response(Response.Status.Ok, null);
+        manager.saveSession(response, session);
+        return response.newCookies.get("session");
+    }
+
+    private static Session load(CookieSessionManager manager, String cookie) {
+        return manager.getSession(new Request(Request.Method.Get, "/", Map.of(), Map.of("session", cookie)));
+    }
+
+    private static Session newSession(CookieSessionManager manager) {
+        var session = manager.getSession(new Request(Request.Method.Get, "/", Map.of(), Map.of()));
+        session.store.put("user", "12");
+        session.store.put("note", "a=b&c");
+        return session;
+    }
+
+    private static void assertRejected(Session session, Session loaded) {
+        assertNotEquals(session.id, loaded.id);
+        assertNull(loaded.store.get("user"));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        var manager = newManager(secret, false);
+        var session = newSession(manager);
+
+        var loaded = load(manager, save(manager, session));
+
+        assertEquals(session.id, loaded.id);
+        assertEquals("12", loaded.store.get("user"));
+        assertEquals("a=b&c", loaded.store.get("note"));
+    }
+
+    @Test
+    public void testEncryptedRoundTrip() {
+        var manager = newManager(secret, true);
+        var session = newSession(manager);
+
+        var cookie = save(manager, session);
+        var loaded = load(manager, cookie);
+
+        assertEquals(session.id, loaded.id);
+        assertEquals("12", loaded.store.get("user"));
+        assertEquals("a=b&c", loaded.store.get("note"));
+        var bytes = new String(Base64.getUrlDecoder().decode(cookie), StandardCharsets.ISO_8859_1);
+        assertFalse(bytes.contains("user"));
+        assertNotEquals(cookie, save(manager, session));
+    }
+
+    @Test
+    public void testTampered() {
+        for (var encrypt : new boolean[] {false, true}) {
+            var manager = newManager(secret, encrypt);
+            var session = newSession(manager);
+            var bytes = Base64.getUrlDecoder().decode(save(manager, session));
+
+            for (var i = 0; i < bytes.length; i++) {
+                var tampered = bytes.clone();
+                tampered[i] ^= 1;
+                assertRejected(session, load(manager, Base64.getUrlEncoder().withoutPadding().encodeToString(tampered)));
+            }
+        }
+    }
+
+    @Test
+    public void testOtherSecret() {
+        var manager = newManager(secret, false);
+        var session = newSession(manager);
+
+        var loaded = load(newManager("other".getBytes(StandardCharsets.UTF_8), false), save(manager, session));
+
+        assertRejected(session, loaded);
+    }
+
+    @Test
+    public void testTruncated() {
+        for (var encrypt : new boolean[] {false, true}) {
+            var manager = newManager(secret, encrypt);
+            var session = newSession(manager);
+            var cookie = save(manager, session);
+
+            for (var length = 0; length < cookie.length(); length++)
+                assertRejected(session, load(manager, cookie.substring(0, length)));
+        }
+    }
+
+    @Test
+    public void testGarbage() {
+        var manager = newManager(secret, true);
+
+        for (var cookie : new String[] {"", "12345", "not base64!", "%%%", "AAAA",
+                Base64.getUrlEncoder().encodeToString(new byte[200])}) {
+            var session = load(manager, cookie);
+            assertTrue(session.store.isEmpty());
+        }
+    }
+
+    @Test
+    public void testIdleExpiry() {
+        var manager = newManager(secret, false);
+        var session = newSession(manager);
+        var cookie = save(manager, session);
+
+        time.addAndGet(99);
+        assertEquals(session.id, load(manager, cookie).id);
+        time.addAndGet(1);
+        assertRejected(session, load(manager, cookie));
+    }
+
+    @Test
+    public void testAbsoluteExpiry() {
+        var manager = newManager(secret, false);
+        var session = newSession(manager);
+        var cookie = save(manager, session);
+
+        for (var i = 0; i < 10; i++) {
+            time.addAndGet(99);
+            var loaded = load(manager, cookie);
+            assertEquals(session.id, loaded.id);
+            cookie = save(manager, loaded);
+        }
+        time.addAndGet(99);
+
+        assertRejected(session, load(manager, cookie));
+    }
+
+    @Test
+    public void testOversize() {
+        var manager = newManager(secret, false);
+        var session = newSession(manager);
+        session.store.put("data", "x".repeat(4096));
+
+        assertThrows(RuntimeException.class, () -> save(manager, session));
+        assertTrue(load(manager, "A".repeat(4097)).store.isEmpty());
+    }
+}
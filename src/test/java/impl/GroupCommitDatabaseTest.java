@@ -0,0 +1,136 @@
+package impl;
+
+import forum.entities.Post;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupCommitDatabaseTest {
+    private static final long failingVoter = 1000;
+
+    private Path directory;
+    private SQLiteDatabase sqlite;
+    private GroupCommitDatabase database;
+    private Post post;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("forum-test");
+        sqlite = new SQLiteDatabase(directory.resolve("forum.db").toString(), 2) {
+            @Override
+            public long votePost(long voterId, long postId, boolean upvote, long time) {
+                if (voterId == failingVoter)
+                    throw new IllegalStateException();
+                return super.votePost(voterId, postId, upvote, time);
+            }
+        };
+        database = new GroupCommitDatabase(sqlite, 100, 10);
+        var user = sqlite.newUser("user", Optional.empty(), 0, new byte[0], new byte[0]);
+        var community = sqlite.newCommunity("community", "", user.id, 0);
+        post = sqlite.newPost(user.id, community.id, "title", "content", 0);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        database.close();
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private long postPoints() {
+        return sqlite.getPost(post.id).orElseThrow().points;
+    }
+
+    private long newVoter(int number) {
+        return sqlite.newUser("voter" + number, Optional.empty(), 0, new byte[0], new byte[0]).id;
+    }
+
+    @Test
+    public void testVotes() {
+        var points = postPoints();
+        var voter = newVoter(1);
+
+        assertEquals(+1, database.votePost(voter, post.id, true, 10));
+        assertEquals(0, database.votePost(voter, post.id, true, 20));
+        assertEquals(-2, database.votePost(voter, post.id, false, 30));
+        assertEquals(+1, database.unvotePost(voter, post.id));
+
+        assertEquals(points, postPoints());
+        assertEquals(4, database.votes());
+        assertEquals(4, database.batches());
+    }
+
+    @Test
+    public void testVoteAfterClose() {
+        var points = postPoints();
+        var voter = newVoter(1);
+        database.close();
+
+        assertEquals(+1, database.votePost(voter, post.id, true, 10));
+
+        assertEquals(points + 1, postPoints());
+        assertEquals(1, database.votes());
+    }
+
+    @Test
+    public void testConcurrentVotes() throws InterruptedException {
+        var points = postPoints();
+        var voters = new ArrayList<Long>();
+        for (var i = 0; i < 50; i++)
+            voters.add(newVoter(i));
+        var total = new AtomicLong();
+
+        var threads = new ArrayList<Thread>();
+        for (var voter : voters)
+            threads.add(new Thread(() -> total.addAndGet(database.votePost(voter, post.id, true, 10))));
+        threads.forEach(Thread::start);
+        for (var thread : threads)
+            thread.join();
+
+        assertEquals(50, total.get());
+        assertEquals(points + 50, postPoints());
+        assertEquals(50, sqlite.countPostVotes(post.id));
+        assertEquals(50, database.votes());
+        assertTrue(database.batches() <= database.votes());
+    }
+
+    @Test
+    public void testFailedVote() throws InterruptedException {
+        var points = postPoints();
+        var voters = new ArrayList<Long>();
+        for (var i = 0; i < 10; i++)
+            voters.add(newVoter(i));
+        voters.add(failingVoter);
+        var failures = new AtomicLong();
+
+        var threads = new ArrayList<Thread>();
+        for (var voter : voters) {
+            threads.add(new Thread(() -> {
+                try {
+                    database.votePost(voter, post.id, true, 10);
+                } catch (IllegalStateException e) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads)
+            thread.join();
+
+        assertEquals(1, failures.get());
+        assertEquals(points + 10, postPoints());
+        assertEquals(10, sqlite.countPostVotes(post.id));
+    }
+}
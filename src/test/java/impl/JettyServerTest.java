@@ -0,0 +1,30 @@
+package impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JettyServerTest {
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(JettyServer.acceptsGzip("gzip"));
+        assertTrue(JettyServer.acceptsGzip("deflate, gzip, br"));
+        assertTrue(JettyServer.acceptsGzip("br;q=1.0, gzip;q=0.8, *;q=0.1"));
+        assertTrue(JettyServer.acceptsGzip("GZIP; Q=0.5"));
+        assertTrue(JettyServer.acceptsGzip("x-gzip"));
+        assertTrue(JettyServer.acceptsGzip("*"));
+    }
+
+    @Test
+    public void testRejectsGzip() {
+        assertFalse(JettyServer.acceptsGzip(null));
+        assertFalse(JettyServer.acceptsGzip(""));
+        assertFalse(JettyServer.acceptsGzip("identity"));
+        assertFalse(JettyServer.acceptsGzip("gzip;q=0"));
+        assertFalse(JettyServer.acceptsGzip("gzip;q=0.000, deflate"));
+        assertFalse(JettyServer.acceptsGzip("*;q=1, gzip;q=0"));
+        assertFalse(JettyServer.acceptsGzip("br, *;q=0"));
+        assertFalse(JettyServer.acceptsGzip("gzip;q=abc"));
+        assertFalse(JettyServer.acceptsGzip("nogzip"));
+    }
+}
@@ -0,0 +1,127 @@
+package impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LruCacheTest {
+    private final LruCache<Long, String> cache = new LruCache<>(10);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Optional<String> load(long key) {
+        loads.incrementAndGet();
+        return Optional.of("value" + key);
+    }
+
+    @Test
+    public void testGet() {
+        var result1 = cache.get(1L, this::load);
+        var result2 = cache.get(1L, this::load);
+
+        assertEquals(Optional.of("value1"), result1);
+        assertEquals(Optional.of("value1"), result2);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testMissingNotStored() {
+        cache.get(1L, k -> Optional.empty());
+        var result = cache.get(1L, this::load);
+
+        assertEquals(Optional.of("value1"), result);
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        cache.invalidate(1L);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testInvalidatedWhileLoading() {
+        var result = cache.get(1L, k -> {
+            cache.invalidate(1L);
+            return Optional.of("old");
+        });
+        var next = cache.get(1L, this::load);
+
+        assertEquals(Optional.of("old"), result);
+        assertEquals(Optional.of("value1"), next);
+    }
+
+    @Test
+    public void testOtherKeyInvalidatedWhileLoading() {
+        cache.get(1L, k -> {
+            cache.invalidate(2L);
+            return Optional.of("value1");
+        });
+        cache.get(1L, this::load);
+
+        assertEquals(0, loads.get());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testLoadException() {
+        assertThrows(IllegalStateException.class, () -> cache.get(1L, k -> {
+            throw new IllegalStateException();
+        }));
+        var result = cache.get(1L, this::load);
+
+        assertEquals(Optional.of("value1"), result);
+    }
+
+    @Test
+    public void testCapacity() {
+        for (var i = 0L; i < 10; i++)
+            cache.get(i, this::load);
+        cache.get(0L, this::load);
+
+        cache.get(10L, this::load);
+
+        assertEquals(9, cache.size());
+        assertEquals(11, loads.get());
+        cache.get(0L, this::load);
+        assertEquals(11, loads.get());
+    }
+
+    @Test
+    public void testConcurrentLoadsCoalesced() throws InterruptedException {
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var first = new Thread(() -> cache.get(1L, k -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return load(k);
+        }));
+        first.start();
+        loading.await();
+
+        var results = new String[1];
+        var second = new Thread(() -> results[0] = cache.get(1L, this::load).orElseThrow());
+        second.start();
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals("value1", results[0]);
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,160 @@
+package impl;
+
+import forum.entities.Comment;
+import forum.entities.Post;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SQLiteDatabaseTest {
+    private Path directory;
+    private SQLiteDatabase database;
+    private Post post;
+    private Comment comment;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("forum-test");
+        database = new SQLiteDatabase(directory.resolve("forum.db").toString(), 2);
+        var user = database.newUser("user", Optional.empty(), 0, new byte[0], new byte[0]);
+        var community = database.newCommunity("community", "", user.id, 0);
+        post = database.newPost(user.id, community.id, "title", "content", 0);
+        comment = database.newComment(user.id, post.id, OptionalLong.empty(), "content", 0);
+        for (var i = 1; i <= 3; i++)
+            database.newUser("voter" + i, Optional.empty(), 0, new byte[0], new byte[0]);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private long postPoints() {
+        return database.getPost(post.id).orElseThrow().points;
+    }
+
+    private long commentPoints() {
+        return database.getComment(comment.id).orElseThrow().points;
+    }
+
+    private long voter(int number) {
+        return database.getUserByName("voter" + number).orElseThrow().id;
+    }
+
+    @Test
+    public void testVotePost() {
+        var points = postPoints();
+
+        assertEquals(+1, database.votePost(voter(1), post.id, true, 10));
+        assertEquals(-1, database.votePost(voter(2), post.id, false, 10));
+        assertEquals(+1, database.votePost(voter(3), post.id, true, 10));
+
+        assertEquals(points + 1, postPoints());
+        assertEquals(3, database.countPostVotes(post.id));
+        assertTrue(database.getPostVote(voter(2), post.id).isPresent());
+    }
+
+    @Test
+    public void testVotePostSame() {
+        var points = postPoints();
+        database.votePost(voter(1), post.id, true, 10);
+
+        assertEquals(0, database.votePost(voter(1), post.id, true, 20));
+
+        assertEquals(points + 1, postPoints());
+        assertEquals(1, database.countPostVotes(post.id));
+        assertEquals(10, database.getPostVote(voter(1), post.id).orElseThrow().voteTime);
+    }
+
+    @Test
+    public void testVotePostFlip() {
+        var points = postPoints();
+        database.votePost(voter(1), post.id, true, 10);
+
+        assertEquals(-2, database.votePost(voter(1), post.id, false, 20));
+        assertEquals(points - 1, postPoints());
+        assertEquals(+2, database.votePost(voter(1), post.id, true, 30));
+        assertEquals(points + 1, postPoints());
+
+        assertEquals(1, database.countPostVotes(post.id));
+        assertEquals(30, database.getPostVote(voter(1), post.id).orElseThrow().voteTime);
+    }
+
+    @Test
+    public void testUnvotePost() {
+        var points = postPoints();
+        database.votePost(voter(1), post.id, true, 10);
+        database.votePost(voter(2), post.id, false, 10);
+
+        assertEquals(-1, database.unvotePost(voter(1), post.id));
+        assertEquals(+1, database.unvotePost(voter(2), post.id));
+        assertEquals(0, database.unvotePost(voter(3), post.id));
+
+        assertEquals(points, postPoints());
+        assertEquals(0, database.countPostVotes(post.id));
+        assertTrue(database.getPostVote(voter(1), post.id).isEmpty());
+    }
+
+    @Test
+    public void testVoteComment() {
+        var points = commentPoints();
+
+        assertEquals(+1, database.voteComment(voter(1), comment.id, true, 10));
+        assertEquals(0, database.voteComment(voter(1), comment.id, true, 20));
+        assertEquals(-2, database.voteComment(voter(1), comment.id, false, 30));
+        assertEquals(-1, database.voteComment(voter(2), comment.id, false, 40));
+
+        assertEquals(points - 2, commentPoints());
+        assertEquals(2, database.countCommentVotes(comment.id));
+    }
+
+    @Test
+    public void testUnvoteComment() {
+        var points = commentPoints();
+        database.voteComment(voter(1), comment.id, false, 10);
+
+        assertEquals(+1, database.unvoteComment(voter(1), comment.id));
+        assertEquals(0, database.unvoteComment(voter(1), comment.id));
+
+        assertEquals(points, commentPoints());
+        assertEquals(0, database.countCommentVotes(comment.id));
+    }
+
+    @Test
+    public void testBatch() {
+        var points = postPoints();
+
+        database.batch(() -> {
+            database.votePost(voter(1), post.id, true, 10);
+            database.votePost(voter(2), post.id, true, 10);
+        });
+
+        assertEquals(points + 2, postPoints());
+        assertEquals(2, database.countPostVotes(post.id));
+    }
+
+    @Test
+    public void testBatchRollback() {
+        var points = postPoints();
+
+        assertThrows(IllegalStateException.class, () -> database.batch(() -> {
+            database.votePost(voter(1), post.id, true, 10);
+            throw new IllegalStateException();
+        }));
+
+        assertEquals(points, postPoints());
+        assertEquals(0, database.countPostVotes(post.id));
+    }
+}
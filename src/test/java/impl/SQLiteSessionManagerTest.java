@@ -0,0 +1,183 @@
+package impl;
+
+import forum.web.Request;
+import forum.web.Response;
+import forum.web.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SQLiteSessionManagerTest {
+    private final AtomicLong time = new AtomicLong(1000);
+    private Path directory;
+    private SQLiteDatabase database;
+    private SQLiteSessionManager manager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("forum-test");
+        database = new SQLiteDatabase(directory.resolve("forum.db").toString(), 2);
+        manager = newManager(100, 3600);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        manager.close();
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private SQLiteSessionManager newManager(int maxCached, long sweepInterval) {
+        return new SQLiteSessionManager(database, time::get, 100, 1000, maxCached, sweepInterval, 10);
+    }
+
+    private static Request request(Session session) {
+        return new Request(Request.Method.Get, "/", Map.of(), Map.of("session", Long.toString(session.id)));
+    }
+
+    private static Request request() {
+        return new Request(Request.Method.Get, "/", Map.of(), Map.of());
+    }
+
+    private void save(Session session) {
+        var response = new Response(Response.Status.Ok, null);
+        manager.saveSession(response, session);
+        assertEquals(Long.toString(session.id), response.newCookies.get("session"));
+    }
+
+    private Session loggedIn() {
+        var session = manager.getSession(request());
+        session.store.put("user", "12");
+        save(session);
+        return session;
+    }
+
+    @Test
+    public void testEmptySessionNotSaved() {
+        var session = manager.getSession(request());
+        save(session);
+
+        assertTrue(database.getSession(session.id).isEmpty());
+        assertEquals(0, manager.writes());
+        assertEquals(1, manager.skippedWrites());
+        assertSame(session, manager.getSession(request(session)));
+    }
+
+    @Test
+    public void testRestart() {
+        var session = loggedIn();
+        manager.close();
+
+        manager = newManager(100, 3600);
+        var loaded = manager.getSession(request(session));
+
+        assertEquals(session.id, loaded.id);
+        assertEquals("12", loaded.store.get("user"));
+        assertEquals(1, manager.loads());
+    }
+
+    @Test
+    public void testUnchangedNotSaved() {
+        var session = loggedIn();
+
+        time.addAndGet(10);
+        save(manager.getSession(request(session)));
+        assertEquals(1, manager.writes());
+        assertEquals(1, manager.skippedWrites());
+
+        session.store.put("user", "13");
+        save(session);
+        assertEquals(2, manager.writes());
+        assertEquals("user=13", database.getSession(session.id).orElseThrow().data);
+    }
+
+    @Test
+    public void testExtended() {
+        var session = loggedIn();
+        assertEquals(1100, database.getSession(session.id).orElseThrow().expiresTime);
+
+        time.addAndGet(60);
+        save(manager.getSession(request(session)));
+
+        assertEquals(2, manager.writes());
+        assertEquals(1160, database.getSession(session.id).orElseThrow().expiresTime);
+        assertEquals(1000, database.getSession(session.id).orElseThrow().createdTime);
+    }
+
+    @Test
+    public void testIdleExpiry() {
+        var session = loggedIn();
+
+        time.addAndGet(100);
+        var next = manager.getSession(request(session));
+
+        assertNotEquals(session.id, next.id);
+        assertNull(next.store.get("user"));
+    }
+
+    @Test
+    public void testAbsoluteExpiry() {
+        var session = loggedIn();
+
+        for (var i = 0; i < 10; i++) {
+            time.addAndGet(99);
+            var loaded = manager.getSession(request(session));
+            assertEquals(session.id, loaded.id);
+            save(loaded);
+        }
+        time.addAndGet(99);
+
+        assertNotEquals(session.id, manager.getSession(request(session)).id);
+    }
+
+    @Test
+    public void testCreatedTimeKeptAfterTrim() {
+        manager.close();
+        manager = newManager(1, 3600);
+        var session = loggedIn();
+        for (var i = 0; i < 9; i++) {
+            time.addAndGet(99);
+            save(manager.getSession(request(session)));
+        }
+
+        time.set(1950);
+        var loaded = manager.getSession(request(session));
+        manager.getSession(request());
+        loaded.store.put("user", "13");
+        save(loaded);
+
+        var stored = database.getSession(session.id).orElseThrow();
+        assertEquals(1000, stored.createdTime);
+        assertEquals(2000, stored.expiresTime);
+        time.set(2000);
+        assertNotEquals(session.id, manager.getSession(request(session)).id);
+    }
+
+    @Test
+    public void testSweep() throws InterruptedException {
+        manager.close();
+        manager = newManager(100, 1);
+        var expired = loggedIn();
+        time.addAndGet(50);
+        var active = loggedIn();
+
+        time.addAndGet(60);
+        for (var i = 0; i < 100 && database.getSession(expired.id).isPresent(); i++)
+            Thread.sleep(50);
+
+        assertTrue(database.getSession(expired.id).isEmpty());
+        assertTrue(database.getSession(active.id).isPresent());
+        assertEquals(1, manager.deleted());
+    }
+}
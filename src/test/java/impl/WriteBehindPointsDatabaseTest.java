@@ -0,0 +1,136 @@
+package impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindPointsDatabaseTest {
+    private Path directory;
+    private SQLiteDatabase sqlite;
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private WriteBehindPointsDatabase database;
+    private long user1;
+    private long user2;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("forum-test");
+        sqlite = new SQLiteDatabase(directory.resolve("forum.db").toString(), 2);
+        var failingDatabase = new DelegatingDatabase(sqlite) {
+            @Override
+            public void addUserPoints(long id, long points) {
+                super.addUserPoints(id, points);
+                if (failing.get())
+                    throw new IllegalStateException();
+            }
+        };
+        database = new WriteBehindPointsDatabase(failingDatabase, sqlite, 3600 * 1000);
+        user1 = sqlite.newUser("user1", Optional.empty(), 0, new byte[0], new byte[0]).id;
+        user2 = sqlite.newUser("user2", Optional.empty(), 0, new byte[0], new byte[0]).id;
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        database.close();
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private long points(long id) {
+        return sqlite.getUser(id).orElseThrow().points;
+    }
+
+    @Test
+    public void testFlush() {
+        var points1 = points(user1);
+        var points2 = points(user2);
+
+        database.addUserPoints(user1, 1);
+        database.addUserPoints(user1, 2);
+        database.addUserPoints(user2, -1);
+
+        assertEquals(points1, points(user1));
+        assertEquals(3, database.pendingDeltas());
+        database.flush();
+        assertEquals(points1 + 3, points(user1));
+        assertEquals(points2 - 1, points(user2));
+        assertEquals(0, database.pendingDeltas());
+        assertEquals(3, database.flushedDeltas());
+    }
+
+    @Test
+    public void testClose() {
+        var points = points(user1);
+
+        database.addUserPoints(user1, 5);
+        database.close();
+
+        assertEquals(points + 5, points(user1));
+    }
+
+    @Test
+    public void testFailedFlush() {
+        var points = points(user1);
+        database.addUserPoints(user1, 1);
+        database.addUserPoints(user2, 1);
+
+        failing.set(true);
+        database.flush();
+        database.addUserPoints(user1, 1);
+        assertEquals(points, points(user1));
+        assertEquals(3, database.pendingDeltas());
+        assertEquals(1, database.failedFlushes());
+
+        failing.set(false);
+        database.flush();
+        assertEquals(points + 2, points(user1));
+        assertEquals(0, database.pendingDeltas());
+        assertEquals(3, database.flushedDeltas());
+        assertEquals(1, database.failedFlushes());
+    }
+
+    @Test
+    public void testConcurrentFlushes() throws InterruptedException {
+        var points1 = points(user1);
+        var points2 = points(user2);
+        var done = new AtomicBoolean();
+        var flusher = new Thread(() -> {
+            while (!done.get())
+                database.flush();
+        });
+        flusher.start();
+
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (var j = 0; j < 1000; j++) {
+                    database.addUserPoints(user1, 1);
+                    database.addUserPoints(user2, -1);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads)
+            thread.join();
+        done.set(true);
+        flusher.join();
+        database.flush();
+
+        assertEquals(points1 + 8000, points(user1));
+        assertEquals(points2 - 8000, points(user2));
+        assertEquals(16000, database.flushedDeltas());
+        assertEquals(0, database.pendingDeltas());
+    }
+}